@@ -6,12 +6,14 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.openfeign.EnableFeignClients;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.client.RestTemplate;
 
 // 开启feign客户端,指定feign位置并指定全局生效的配置类
 @EnableFeignClients(basePackages = "com.hmall.api.client",defaultConfiguration = DefaultFeignConfig.class)
 @SpringBootApplication
 @MapperScan("com.hmall.cart.mapper")
+@EnableScheduling
 public class CartApplication {
 
     public static void main(String[] args) {
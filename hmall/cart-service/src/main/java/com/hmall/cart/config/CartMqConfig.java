@@ -0,0 +1,29 @@
+package com.hmall.cart.config;
+
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class CartMqConfig {
+
+    /**
+     * 批量消费消息的监听容器，监听方法的参数为消息列表，方法正常返回后整批确认
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory batchContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory,
+            CartProperties properties) {
+        CartProperties.Clean clean = properties.getClean();
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(clean.getBatchSize());
+        factory.setReceiveTimeout(clean.getReceiveTimeout().toMillis());
+        factory.setPrefetchCount(Math.max(clean.getBatchSize(), 250));
+        return factory;
+    }
+}
@@ -1,12 +1,115 @@
 package com.hmall.cart.config;
 
+import com.hmall.cart.store.CartStoreMode;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+
 @Data
 @Component
 @ConfigurationProperties(prefix = "hm.cart")
 public class CartProperties {
     private Integer maxAmount;
+    /**
+     * 购物车的存储方式，默认直接读写数据库
+     */
+    private CartStoreMode storeMode = CartStoreMode.DB;
+    /**
+     * 数据库存储方式下，用户购物车条目数量的缓存配置
+     */
+    private CountCache countCache = new CountCache();
+    /**
+     * 内存存储方式下的异步写回配置
+     */
+    private WriteBehind writeBehind = new WriteBehind();
+    /**
+     * 本地商品快照副本
+     */
+    private ItemReplica itemReplica = new ItemReplica();
+    /**
+     * 下单后清理购物车的消息消费配置
+     */
+    private Clean clean = new Clean();
+
+    @Data
+    public static class CountCache {
+        /**
+         * 最多缓存的用户数量
+         */
+        private Long size = 100000L;
+        /**
+         * 缓存时长。缓存只是本实例的估计值，判断已满和新增条目时都会用COUNT查询确认
+         */
+        private Duration ttl = Duration.ofMinutes(5);
+    }
+
+    @Data
+    public static class WriteBehind {
+        /**
+         * 每条写回语句最多包含的购物车条目数量
+         */
+        private Integer batchSize = 500;
+        /**
+         * 内存中最多保存的用户购物车数量，超出后淘汰最久未访问的，再次访问时从数据库加载
+         */
+        private Long cacheSize = 100000L;
+        /**
+         * 用户购物车在内存中的保留时长，超过该时长未访问则淘汰
+         */
+        private Duration cacheTtl = Duration.ofMinutes(30);
+        /**
+         * 是否允许使用进程内存的键值存储，只能用于单实例部署，多实例部署时各实例的购物车互不可见
+         */
+        private Boolean allowLocalState = false;
+    }
+
+    @Data
+    public static class ItemReplica {
+        /**
+         * 是否启用本地商品快照副本，关闭时每次查询购物车都远程查询商品
+         */
+        private Boolean enabled = true;
+        /**
+         * 最多保存的商品数量，超出后淘汰最少使用的
+         */
+        private Long size = 100000L;
+        /**
+         * 快照的最长保存时长，防止丢失变更消息后一直使用旧数据
+         */
+        private Duration ttl = Duration.ofMinutes(30);
+        /**
+         * 刷新时每次远程查询的商品数量
+         */
+        private Integer batchSize = 200;
+    }
+
+    @Data
+    public static class Clean {
+        /**
+         * 每批最多消费的消息数量，一批消息的删除合并为一条语句
+         */
+        private Integer batchSize = 100;
+        /**
+         * 凑批的最长等待时长，超时后不足一批也立即处理
+         */
+        private Duration receiveTimeout = Duration.ofMillis(100);
+        /**
+         * 本地记录已处理订单的数量，用于快速去重，未命中时以数据库中的清理记录为准
+         */
+        private Long dedupeSize = 100000L;
+        /**
+         * 本地记录已处理订单的时长
+         */
+        private Duration dedupeTtl = Duration.ofMinutes(30);
+        /**
+         * 数据库中清理记录的保留时长，期间重复投递的消息在所有实例上都会被忽略
+         */
+        private Duration recordTtl = Duration.ofDays(7);
+        /**
+         * 每次删除过期清理记录的最大数量
+         */
+        private Integer purgeBatchSize = 1000;
+    }
 }
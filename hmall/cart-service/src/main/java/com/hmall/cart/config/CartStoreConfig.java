@@ -0,0 +1,42 @@
+package com.hmall.cart.config;
+
+import com.hmall.cart.mapper.CartMapper;
+import com.hmall.cart.store.CartStateStore;
+import com.hmall.cart.store.CartStore;
+import com.hmall.cart.store.CartStoreMode;
+import com.hmall.cart.store.DbCartStore;
+import com.hmall.cart.store.LocalCartStateStore;
+import com.hmall.cart.store.WriteBehindCartStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class CartStoreConfig {
+
+    /**
+     * 默认的购物车键值存储实现，声明其它CartStateStore类型的Bean即可替换
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public CartStateStore cartStateStore(CartProperties properties) {
+        CartProperties.WriteBehind writeBehind = properties.getWriteBehind();
+        return new LocalCartStateStore(writeBehind.getCacheSize(), writeBehind.getCacheTtl());
+    }
+
+    @Bean
+    public CartStore cartStore(CartProperties properties, CartMapper cartMapper, ObjectProvider<CartStateStore> stateStore) {
+        if (properties.getStoreMode() == CartStoreMode.MEMORY) {
+            CartProperties.WriteBehind writeBehind = properties.getWriteBehind();
+            CartStateStore store = stateStore.getObject();
+            // 进程内存的键值存储只在本实例可见，多实例部署时其它实例的修改和购物车清理都不会反映到本实例
+            if (store instanceof LocalCartStateStore && !writeBehind.getAllowLocalState()) {
+                throw new IllegalStateException("memory模式需要声明共享的CartStateStore，" +
+                        "单实例部署可设置hm.cart.write-behind.allow-local-state=true");
+            }
+            return new WriteBehindCartStore(cartMapper, store, writeBehind);
+        }
+        return new DbCartStore(cartMapper, properties.getCountCache());
+    }
+}
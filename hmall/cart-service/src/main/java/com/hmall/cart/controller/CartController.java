@@ -1,6 +1,7 @@
 package com.hmall.cart.controller;
 
 import com.hmall.cart.domain.dto.CartFormDTO;
+import com.hmall.cart.domain.dto.CartNumDTO;
 import com.hmall.cart.domain.po.Cart;
 import com.hmall.cart.domain.vo.CartVO;
 import com.hmall.cart.service.ICartService;
@@ -27,16 +28,35 @@ public class CartController {
         cartService.addItem2Cart(cartFormDTO);
     }
 
+    @ApiOperation("批量添加商品到购物车")
+    @PostMapping("/batch")
+    public void addItems2Cart(@RequestBody List<CartFormDTO> forms){
+        cartService.addItems2Cart(forms);
+    }
+
+    @ApiOperation("批量修改购物车商品数量")
+    @PutMapping("/batch")
+    public void updateCartNums(@RequestBody List<CartNumDTO> nums){
+        cartService.updateCartNums(nums);
+    }
+
+    @ApiOperation("根据购物车条目id批量删除")
+    @ApiImplicitParam(name = "ids", value = "购物车条目id集合")
+    @DeleteMapping("/batch")
+    public void deleteCartItemsByCartIds(@RequestParam("ids") List<Long> ids){
+        cartService.removeCartItems(ids);
+    }
+
     @ApiOperation("更新购物车数据")
     @PutMapping
     public void updateCart(@RequestBody Cart cart){
-        cartService.updateById(cart);
+        cartService.updateCart(cart);
     }
 
     @ApiOperation("删除购物车中商品")
     @DeleteMapping("{id}")
     public void deleteCartItem(@Param ("购物车条目id")@PathVariable("id") Long id){
-        cartService.removeById(id);
+        cartService.removeCartItem(id);
     }
 
     @ApiOperation("查询购物车列表")
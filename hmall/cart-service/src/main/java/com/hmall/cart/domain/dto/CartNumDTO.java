@@ -0,0 +1,14 @@
+package com.hmall.cart.domain.dto;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+
+@Data
+@ApiModel(description = "修改购物车商品数量表单实体")
+public class CartNumDTO {
+    @ApiModelProperty("购物车条目id")
+    private Long id;
+    @ApiModelProperty("购买数量")
+    private Integer num;
+}
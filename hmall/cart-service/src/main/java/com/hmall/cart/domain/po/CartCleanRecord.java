@@ -0,0 +1,36 @@
+package com.hmall.cart.domain.po;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.experimental.Accessors;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * <p>
+ * 购物车清理记录表，记录已经清理过购物车的订单，重复投递的清理消息不会再次删除
+ * </p>
+ */
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Accessors(chain = true)
+@TableName("cart_clean_record")
+public class CartCleanRecord implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 已清理购物车的订单id
+     */
+    @TableId(value = "order_id", type = IdType.INPUT)
+    private Long orderId;
+
+    /**
+     * 清理时间
+     */
+    private LocalDateTime createTime;
+}
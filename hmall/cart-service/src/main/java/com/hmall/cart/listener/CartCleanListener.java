@@ -0,0 +1,33 @@
+package com.hmall.cart.listener;
+
+import com.hmall.api.constants.CartMQConstants;
+import com.hmall.api.dto.CartCleanDTO;
+import com.hmall.cart.service.ICartService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.amqp.rabbit.annotation.Exchange;
+import org.springframework.amqp.rabbit.annotation.Queue;
+import org.springframework.amqp.rabbit.annotation.QueueBinding;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Component
+@RequiredArgsConstructor
+public class CartCleanListener {
+
+    private final ICartService cartService;
+
+    /**
+     * 批量监听下单后的购物车清理消息，一批消息合并为一次删除
+     * @param msgs 购物车清理消息
+     */
+    @RabbitListener(bindings = @QueueBinding(
+            value = @Queue(name = CartMQConstants.CLEAN_QUEUE_NAME, durable = "true"),
+            exchange = @Exchange(name = CartMQConstants.EXCHANGE_NAME),
+            key = CartMQConstants.CLEAN_KEY
+    ), containerFactory = "batchContainerFactory")
+    public void listenCartClean(List<CartCleanDTO> msgs){
+        cartService.cleanAfterOrders(msgs);
+    }
+}
@@ -0,0 +1,33 @@
+package com.hmall.cart.listener;
+
+import com.hmall.api.constants.ItemMQConstants;
+import com.hmall.api.dto.ItemChangeDTO;
+import com.hmall.cart.replica.ItemReplica;
+import lombok.RequiredArgsConstructor;
+import org.springframework.amqp.core.ExchangeTypes;
+import org.springframework.amqp.rabbit.annotation.Exchange;
+import org.springframework.amqp.rabbit.annotation.Queue;
+import org.springframework.amqp.rabbit.annotation.QueueBinding;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class ItemChangeListener {
+
+    private final ItemReplica itemReplica;
+
+    /**
+     * 监听商品变更消息，刷新本实例的商品快照副本。副本保存在每个实例的内存中，
+     * 所以每个实例使用自己的匿名队列，都能收到全部变更
+     * @param msg 商品变更消息
+     */
+    @RabbitListener(bindings = @QueueBinding(
+            value = @Queue,
+            exchange = @Exchange(name = ItemMQConstants.EXCHANGE_NAME, type = ExchangeTypes.TOPIC),
+            key = ItemMQConstants.CHANGE_KEY
+    ))
+    public void listenItemChange(ItemChangeDTO msg){
+        itemReplica.markDirty(msg.getIds());
+    }
+}
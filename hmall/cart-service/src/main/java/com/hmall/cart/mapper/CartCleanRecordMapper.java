@@ -0,0 +1,53 @@
+package com.hmall.cart.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.hmall.cart.domain.po.CartCleanRecord;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * <p>
+ * 购物车清理记录 Mapper 接口
+ * </p>
+ */
+public interface CartCleanRecordMapper extends BaseMapper<CartCleanRecord> {
+
+    /**
+     * 查询已经清理过购物车的订单
+     *
+     * @param orderIds 订单id
+     * @return 其中已处理的订单id
+     */
+    @Select({"<script>",
+            "SELECT order_id FROM cart_clean_record WHERE order_id IN",
+            "<foreach collection='orderIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>",
+            "</script>"})
+    List<Long> selectOrderIds(@Param("orderIds") Collection<Long> orderIds);
+
+    /**
+     * 批量记录已清理购物车的订单，已有记录的订单被忽略
+     *
+     * @param orderIds 订单id
+     * @return 新增的记录数量
+     */
+    @Insert({"<script>",
+            "INSERT IGNORE INTO cart_clean_record (order_id) VALUES",
+            "<foreach collection='orderIds' item='id' separator=','>(#{id})</foreach>",
+            "</script>"})
+    int insertIgnoreBatch(@Param("orderIds") Collection<Long> orderIds);
+
+    /**
+     * 删除超过保留时长的记录，按数据库时间判断
+     *
+     * @param ttlSeconds 保留时长，单位秒
+     * @param limit      最多删除的数量
+     * @return 删除的数量
+     */
+    @Delete("DELETE FROM cart_clean_record WHERE create_time < NOW() - INTERVAL #{ttlSeconds} SECOND LIMIT #{limit}")
+    int deleteExpired(@Param("ttlSeconds") long ttlSeconds, @Param("limit") int limit);
+}
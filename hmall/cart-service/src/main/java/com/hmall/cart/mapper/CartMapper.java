@@ -3,9 +3,14 @@ package com.hmall.cart.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.hmall.cart.domain.po.Cart;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Update;
 
+import java.util.Collection;
+import java.util.Map;
+
 /**
  * <p>
  * 订单详情表 Mapper 接口
@@ -17,5 +22,74 @@ import org.apache.ibatis.annotations.Update;
 public interface CartMapper extends BaseMapper<Cart> {
 
     @Update("UPDATE cart SET num = num + 1 WHERE user_id = #{userId} AND item_id = #{itemId}")
-    void updateNum(@Param("itemId") Long itemId, @Param("userId") Long userId);
+    int updateNum(@Param("itemId") Long itemId, @Param("userId") Long userId);
+
+    /**
+     * 一条语句添加商品到购物车，依赖(user_id, item_id)唯一索引，商品已存在时数量加1
+     *
+     * @param cart 购物车条目
+     * @return MySQL的影响行数，新增时为1，数量加1时为2
+     */
+    @Insert({"INSERT INTO cart (user_id, item_id, num, name, spec, price, image)",
+            "VALUES (#{userId}, #{itemId}, 1, #{name}, #{spec}, #{price}, #{image})",
+            "ON DUPLICATE KEY UPDATE num = num + 1"})
+    int upsertNum(Cart cart);
+
+    /**
+     * 一条语句按条目id新增或修改多个购物车条目。
+     * 删除后重新加入的商品有新的条目id，旧条目还未删除时按(user_id, item_id)唯一索引冲突，旧条目的id会被改为新id
+     *
+     * @param carts 购物车条目，id不能为空
+     */
+    @Insert({"<script>",
+            "INSERT INTO cart (id, user_id, item_id, num, name, spec, price, image, create_time, update_time) VALUES",
+            "<foreach collection='carts' item='c' separator=','>",
+            "(#{c.id}, #{c.userId}, #{c.itemId}, #{c.num}, #{c.name}, #{c.spec}, #{c.price}, #{c.image}, #{c.createTime}, #{c.updateTime})",
+            "</foreach>",
+            "ON DUPLICATE KEY UPDATE id = VALUES(id), num = VALUES(num), name = VALUES(name), spec = VALUES(spec),",
+            "price = VALUES(price), image = VALUES(image), create_time = VALUES(create_time), update_time = VALUES(update_time)",
+            "</script>"})
+    void upsertBatch(@Param("carts") Collection<Cart> carts);
+
+    /**
+     * 一条语句添加多个商品到购物车，依赖(user_id, item_id)唯一索引，商品已存在时数量累加
+     *
+     * @param carts 购物车条目，同一商品只能出现一次
+     */
+    @Insert({"<script>",
+            "INSERT INTO cart (user_id, item_id, num, name, spec, price, image) VALUES",
+            "<foreach collection='carts' item='c' separator=','>",
+            "(#{c.userId}, #{c.itemId}, #{c.num}, #{c.name}, #{c.spec}, #{c.price}, #{c.image})",
+            "</foreach>",
+            "ON DUPLICATE KEY UPDATE num = num + VALUES(num)",
+            "</script>"})
+    void upsertNumBatch(@Param("carts") Collection<Cart> carts);
+
+    /**
+     * 一条语句修改用户的多个购物车条目的数量
+     *
+     * @param userId 用户id
+     * @param nums   购物车条目id与数量
+     * @return 修改的条目数量
+     */
+    @Update({"<script>",
+            "UPDATE cart SET num = CASE id",
+            "<foreach collection='nums' index='id' item='num'> WHEN #{id} THEN #{num}</foreach>",
+            "END",
+            "WHERE user_id = #{userId} AND id IN",
+            "<foreach collection='nums' index='id' open='(' separator=',' close=')'>#{id}</foreach>",
+            "</script>"})
+    int updateNumBatch(@Param("userId") Long userId, @Param("nums") Map<Long, Integer> nums);
+
+    /**
+     * 一条语句删除多个用户购物车中的指定商品
+     *
+     * @param carts 要删除的条目，只需要userId和itemId
+     * @return 删除的条目数量
+     */
+    @Delete({"<script>",
+            "DELETE FROM cart WHERE (user_id, item_id) IN",
+            "<foreach collection='carts' item='c' open='(' separator=',' close=')'>(#{c.userId}, #{c.itemId})</foreach>",
+            "</script>"})
+    int deleteByUserItems(@Param("carts") Collection<Cart> carts);
 }
@@ -0,0 +1,169 @@
+package com.hmall.cart.replica;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hmall.api.client.ItemClient;
+import com.hmall.api.dto.ItemSnapshotsDTO;
+import com.hmall.cart.config.CartProperties;
+import com.hmall.common.utils.CollUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 购物车服务本地的商品快照副本，保存商品的价格、库存、状态，容量有上限。
+ * <p>
+ * 查询时优先读副本，未命中的商品才远程查询并写入副本；
+ * 商品变更消息只标记副本中已有或正在远程查询的商品，定时批量远程查询最新快照后覆盖。
+ * 刷新失败时保留旧快照，等下个周期重试，商品服务响应慢或不可用时，已缓存商品的查询不受影响。
+ */
+@Slf4j
+@Component
+public class ItemReplica {
+
+    private final ItemClient itemClient;
+    private final CartProperties.ItemReplica properties;
+    private final Cache<Long, ItemSnapshot> cache;
+    /**
+     * 发生变更、待刷新的商品id
+     */
+    private final Set<Long> dirtyIds = ConcurrentHashMap.newKeySet();
+    /**
+     * 正在远程查询、尚未写入副本的商品id，value为进行中的查询数量。
+     * 查询期间到达的变更也要标记，否则查询到的旧快照会一直留在副本中
+     */
+    private final Map<Long, Integer> loadingIds = new ConcurrentHashMap<>();
+
+    public ItemReplica(ItemClient itemClient, CartProperties cartProperties) {
+        this.itemClient = itemClient;
+        this.properties = cartProperties.getItemReplica();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getSize())
+                .expireAfterWrite(properties.getTtl())
+                .build();
+    }
+
+    /**
+     * 批量查询商品快照
+     *
+     * @param ids 商品id集合
+     * @return 商品快照，key为商品id，查不到的商品不包含在内
+     */
+    public Map<Long, ItemSnapshot> getAll(Collection<Long> ids) {
+        if (CollUtils.isEmpty(ids)) {
+            return Map.of();
+        }
+        if (!Boolean.TRUE.equals(properties.getEnabled())) {
+            Map<Long, ItemSnapshot> fetched = fetch(ids);
+            return fetched == null ? Map.of() : fetched;
+        }
+        // 1.查询副本
+        Map<Long, ItemSnapshot> result = new HashMap<>(cache.getAllPresent(ids));
+        if (result.size() == ids.size()) {
+            return result;
+        }
+        // 2.未命中的远程查询，并写入副本
+        List<Long> missing = new ArrayList<>(ids.size() - result.size());
+        for (Long id : ids) {
+            if (!result.containsKey(id)) {
+                missing.add(id);
+            }
+        }
+        missing.forEach(id -> loadingIds.merge(id, 1, Integer::sum));
+        try {
+            Map<Long, ItemSnapshot> fetched = fetch(missing);
+            if (fetched != null) {
+                cache.putAll(fetched);
+                result.putAll(fetched);
+            }
+        } finally {
+            missing.forEach(id -> loadingIds.computeIfPresent(id, (k, n) -> n == 1 ? null : n - 1));
+        }
+        return result;
+    }
+
+    /**
+     * 标记商品发生了变更，副本中不存在、也不在查询中的商品直接忽略
+     *
+     * @param ids 商品id集合
+     */
+    public void markDirty(Collection<Long> ids) {
+        if (!Boolean.TRUE.equals(properties.getEnabled()) || CollUtils.isEmpty(ids)) {
+            return;
+        }
+        for (Long id : ids) {
+            if (loadingIds.containsKey(id) || cache.getIfPresent(id) != null) {
+                dirtyIds.add(id);
+            }
+        }
+    }
+
+    /**
+     * 定时刷新发生变更的商品
+     */
+    @Scheduled(fixedDelayString = "${hm.cart.item-replica.refresh-interval:500}")
+    public void refresh() {
+        while (!dirtyIds.isEmpty()) {
+            List<Long> ids = drain(properties.getBatchSize());
+            Map<Long, ItemSnapshot> fetched;
+            try {
+                fetched = fetch(ids);
+            } catch (Exception e) {
+                log.warn("刷新商品快照失败，{}个商品等待下次刷新", ids.size(), e);
+                fetched = null;
+            }
+            if (fetched == null) {
+                // 查询失败，保留旧快照等待重试
+                dirtyIds.addAll(ids);
+                return;
+            }
+            cache.putAll(fetched);
+            // 已删除的商品查不到了，从副本中移除
+            for (Long id : ids) {
+                if (!fetched.containsKey(id)) {
+                    cache.invalidate(id);
+                }
+            }
+        }
+    }
+
+    /**
+     * 远程查询商品快照
+     *
+     * @return 查到的快照，商品都不存在时为空，查询失败时为null
+     */
+    private Map<Long, ItemSnapshot> fetch(Collection<Long> ids) {
+        ItemSnapshotsDTO snapshots = itemClient.queryItemSnapshots(ids);
+        if (snapshots == null) {
+            return null;
+        }
+        if (snapshots.size() == 0) {
+            return Map.of();
+        }
+        Map<Long, ItemSnapshot> result = new HashMap<>(snapshots.size() * 2);
+        for (int i = 0; i < snapshots.size(); i++) {
+            result.put(snapshots.getIds()[i],
+                    new ItemSnapshot(snapshots.getPrices()[i], snapshots.getStocks()[i], snapshots.getStatuses()[i]));
+        }
+        return result;
+    }
+
+    private List<Long> drain(int max) {
+        List<Long> ids = new ArrayList<>(Math.min(max, dirtyIds.size()));
+        Iterator<Long> it = dirtyIds.iterator();
+        while (it.hasNext() && ids.size() < max) {
+            ids.add(it.next());
+            it.remove();
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,24 @@
+package com.hmall.cart.replica;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 购物车需要的商品快照，只包含价格、库存、状态
+ */
+@Data
+@AllArgsConstructor
+public class ItemSnapshot {
+    /**
+     * 价格（分）
+     */
+    private final int price;
+    /**
+     * 库存数量
+     */
+    private final int stock;
+    /**
+     * 商品状态 1-正常，2-下架，3-删除
+     */
+    private final int status;
+}
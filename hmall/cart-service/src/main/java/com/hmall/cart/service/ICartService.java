@@ -2,7 +2,9 @@ package com.hmall.cart.service;
 
 
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.hmall.api.dto.CartCleanDTO;
 import com.hmall.cart.domain.dto.CartFormDTO;
+import com.hmall.cart.domain.dto.CartNumDTO;
 import com.hmall.cart.domain.po.Cart;
 import com.hmall.cart.domain.vo.CartVO;
 
@@ -21,7 +23,51 @@ public interface ICartService extends IService<Cart> {
 
     void addItem2Cart(CartFormDTO cartFormDTO);
 
+    /**
+     * 批量添加商品到当前用户的购物车，同一商品出现多次时数量累加，购物车数量上限只判断一次
+     *
+     * @param forms 商品表单
+     */
+    void addItems2Cart(List<CartFormDTO> forms);
+
+    /**
+     * 批量修改当前用户购物车条目的数量
+     *
+     * @param nums 购物车条目id与数量
+     */
+    void updateCartNums(List<CartNumDTO> nums);
+
+    /**
+     * 按条目id批量删除当前用户的购物车条目
+     *
+     * @param ids 购物车条目id集合
+     */
+    void removeCartItems(Collection<Long> ids);
+
     List<CartVO> queryMyCarts();
 
+    /**
+     * 更新当前用户的购物车条目，只更新不为空的字段
+     *
+     * @param cart 购物车条目，id不能为空
+     */
+    void updateCart(Cart cart);
+
+    /**
+     * 删除当前用户的购物车条目
+     *
+     * @param id 购物车条目id
+     */
+    void removeCartItem(Long id);
+
     void removeByItemIds(Collection<Long> itemIds);
+
+    /**
+     * 下单成功后批量清理各用户购物车中已下单的商品。
+     * 已处理的订单记录在数据库中，与删除在同一事务内提交，重复投递到任意实例的消息都会被忽略，
+     * 不会删除用户下单后重新加入的同一商品
+     *
+     * @param msgs 购物车清理消息
+     */
+    void cleanAfterOrders(List<CartCleanDTO> msgs);
 }
@@ -1,29 +1,41 @@
 package com.hmall.cart.service.impl;
 
-import cn.hutool.core.util.StrUtil;
-import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
-import com.hmall.api.client.ItemClient;
-import com.hmall.api.dto.ItemDTO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hmall.api.dto.CartCleanDTO;
 import com.hmall.cart.config.CartProperties;
 import com.hmall.cart.domain.dto.CartFormDTO;
+import com.hmall.cart.domain.dto.CartNumDTO;
 import com.hmall.cart.domain.po.Cart;
 import com.hmall.cart.domain.vo.CartVO;
+import com.hmall.cart.mapper.CartCleanRecordMapper;
 import com.hmall.cart.mapper.CartMapper;
+import com.hmall.cart.replica.ItemReplica;
+import com.hmall.cart.replica.ItemSnapshot;
 import com.hmall.cart.service.ICartService;
-import com.hmall.common.exception.BizIllegalException;
+import com.hmall.cart.store.CartStore;
+import com.hmall.common.exception.BadRequestException;
 import com.hmall.common.utils.BeanUtils;
 import com.hmall.common.utils.CollUtils;
 import com.hmall.common.utils.UserContext;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -31,6 +43,7 @@ import java.util.stream.Collectors;
  * 订单详情表 服务实现类
 
  */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class CartServiceImpl extends ServiceImpl<CartMapper, Cart> implements ICartService {
@@ -41,37 +54,85 @@ public class CartServiceImpl extends ServiceImpl<CartMapper, Cart> implements IC
 //
 //    private final DiscoveryClient discoveryClient;
 
-    private final ItemClient itemClient;
+    private final ItemReplica itemReplica;
 
     private final CartProperties cartProperties;
 
+    private final CartStore cartStore;
+
+    private final CartCleanRecordMapper cleanRecordMapper;
+
+    /**
+     * 最近处理过的订单id，是购物车清理消息去重的本地快速判断。
+     * 是否处理过以数据库中的清理记录为准，本地未命中时再查询清理记录
+     */
+    private Cache<Long, Boolean> cleanedOrders;
+
+    @PostConstruct
+    public void initCleanedOrders() {
+        CartProperties.Clean clean = cartProperties.getClean();
+        cleanedOrders = Caffeine.newBuilder()
+                .maximumSize(clean.getDedupeSize())
+                .expireAfterWrite(clean.getDedupeTtl())
+                .build();
+    }
+
     @Override
     public void addItem2Cart(CartFormDTO cartFormDTO) {
         // 1.获取登录用户
         Long userId = UserContext.getUser();
 
-        // 2.判断是否已经存在
-        if (checkItemExists(cartFormDTO.getItemId(), userId)) {
-            // 2.1.存在，则更新数量
-            baseMapper.updateNum(cartFormDTO.getItemId(), userId);
+        // 2.新增购物车条目，已存在则更新数量，不存在则判断是否超过购物车数量 todo 没有给前端做报错降级处理
+        Cart cart = BeanUtils.copyBean(cartFormDTO, Cart.class);
+        cartStore.add(userId, cart, cartProperties.getMaxAmount());
+    }
+
+    @Override
+    public void addItems2Cart(List<CartFormDTO> forms) {
+        if (CollUtils.isEmpty(forms)) {
+            return;
+        }
+        // 1.合并同一商品，每出现一次数量加1
+        Map<Long, Cart> carts = new LinkedHashMap<>(forms.size());
+        for (CartFormDTO form : forms) {
+            if (form.getItemId() == null) {
+                throw new BadRequestException("商品id不能为空");
+            }
+            Cart cart = carts.get(form.getItemId());
+            if (cart == null) {
+                carts.put(form.getItemId(), BeanUtils.copyBean(form, Cart.class).setNum(1));
+            } else {
+                cart.setNum(cart.getNum() + 1);
+            }
+        }
+        // 2.批量添加
+        cartStore.addAll(UserContext.getUser(), carts.values(), cartProperties.getMaxAmount());
+    }
+
+    @Override
+    public void updateCartNums(List<CartNumDTO> nums) {
+        if (CollUtils.isEmpty(nums)) {
             return;
         }
-        // 2.2.不存在，判断是否超过购物车数量 todo 没有给前端做报错降级处理
-        checkCartsFull(userId);
+        Map<Long, Integer> numMap = new LinkedHashMap<>(nums.size());
+        for (CartNumDTO dto : nums) {
+            if (dto.getId() == null || dto.getNum() == null || dto.getNum() < 1) {
+                throw new BadRequestException("购物车条目id不能为空，数量不能小于1");
+            }
+            numMap.put(dto.getId(), dto.getNum());
+        }
+        cartStore.updateNums(UserContext.getUser(), numMap);
+    }
 
-        // 3.新增购物车条目
-        // 3.1.转换PO
-        Cart cart = BeanUtils.copyBean(cartFormDTO, Cart.class);
-        // 3.2.保存当前用户
-        cart.setUserId(userId);
-        // 3.3.保存到数据库
-        save(cart);
+    @Override
+    public void removeCartItems(Collection<Long> ids) {
+        cartStore.removeByIds(UserContext.getUser(), ids);
     }
 
     @Override
     public List<CartVO> queryMyCarts() {
         // 1.查询我的购物车列表
-        List<Cart> carts = lambdaQuery().eq(Cart::getUserId, UserContext.getUser()).list();
+        List<Cart> carts = cartStore.list(UserContext.getUser());
         if (CollUtils.isEmpty(carts)) {
             return CollUtils.emptyList();
         }
@@ -115,50 +176,105 @@ public class CartServiceImpl extends ServiceImpl<CartMapper, Cart> implements IC
 //            return;
 //        }
 //        List<ItemDTO> items = response.getBody();
-        List<ItemDTO> items = itemClient.queryItemByIds(itemIds);
-
-
-        if (CollUtils.isEmpty(items)) {
+        // 只需要价格、状态、库存，优先读取本地的商品快照副本
+        Map<Long, ItemSnapshot> snapshots = itemReplica.getAll(itemIds);
+        if (snapshots.isEmpty()) {
             return;
         }
-        // 3.转为 id 到 item的map
-        Map<Long, ItemDTO> itemMap = items.stream().collect(Collectors.toMap(ItemDTO::getId, Function.identity()));
-        // 4.写入vo
+        // 3.写入vo
         for (CartVO v : vos) {
-            ItemDTO item = itemMap.get(v.getItemId());
-            if (item == null) {
+            ItemSnapshot snapshot = snapshots.get(v.getItemId());
+            if (snapshot == null) {
                 continue;
             }
-            v.setNewPrice(item.getPrice());
-            v.setStatus(item.getStatus());
-            v.setStock(item.getStock());
+            v.setNewPrice(snapshot.getPrice());
+            v.setStatus(snapshot.getStatus());
+            v.setStock(snapshot.getStock());
         }
     }
 
     @Override
-    @Transactional
+    public void updateCart(Cart cart) {
+        cartStore.update(UserContext.getUser(), cart);
+    }
+
+    @Override
+    public void removeCartItem(Long id) {
+        cartStore.removeByIds(UserContext.getUser(), List.of(id));
+    }
+
+    @Override
     public void removeByItemIds(Collection<Long> itemIds) {
-        // 1.构建删除条件，userId和itemId
-        QueryWrapper<Cart> queryWrapper = new QueryWrapper<Cart>();
-        queryWrapper.lambda()
-                .eq(Cart::getUserId, UserContext.getUser())
-                .in(Cart::getItemId, itemIds);
-        // 2.删除
-        remove(queryWrapper);
+        cartStore.removeByItemIds(UserContext.getUser(), itemIds);
     }
 
-    private void checkCartsFull(Long userId) {
-        int count = lambdaQuery().eq(Cart::getUserId, userId).count();
-        if (count >= cartProperties.getMaxAmount()) {
-            throw new BizIllegalException(StrUtil.format("用户购物车课程不能超过{}", cartProperties.getMaxAmount()));
+    @Override
+    @Transactional
+    public void cleanAfterOrders(List<CartCleanDTO> msgs) {
+        // 1.过滤本实例处理过的订单
+        List<CartCleanDTO> pending = new ArrayList<>(msgs.size());
+        Set<Long> orderIds = new HashSet<>();
+        for (CartCleanDTO msg : msgs) {
+            if (msg.getUserId() == null || CollUtils.isEmpty(msg.getItemIds())) {
+                continue;
+            }
+            if (msg.getOrderId() != null && cleanedOrders.getIfPresent(msg.getOrderId()) != null) {
+                continue;
+            }
+            pending.add(msg);
+            if (msg.getOrderId() != null) {
+                orderIds.add(msg.getOrderId());
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
         }
+        // 2.查询清理记录，过滤其它实例或重启前已处理的订单
+        Set<Long> recorded = orderIds.isEmpty()
+                ? Set.of() : new HashSet<>(cleanRecordMapper.selectOrderIds(orderIds));
+        recorded.forEach(id -> cleanedOrders.put(id, Boolean.TRUE));
+        orderIds.removeAll(recorded);
+        // 3.按用户合并要删除的商品
+        Map<Long, Set<Long>> userItemIds = new HashMap<>();
+        for (CartCleanDTO msg : pending) {
+            if (msg.getOrderId() != null && recorded.contains(msg.getOrderId())) {
+                continue;
+            }
+            userItemIds.computeIfAbsent(msg.getUserId(), k -> new HashSet<>()).addAll(msg.getItemIds());
+        }
+        if (userItemIds.isEmpty()) {
+            return;
+        }
+        // 4.一次性删除，并在同一事务中写入清理记录，失败时抛出异常，整批消息会重新投递
+        cartStore.removeByUserItems(userItemIds);
+        if (!orderIds.isEmpty()) {
+            cleanRecordMapper.insertIgnoreBatch(orderIds);
+        }
+        // 5.事务提交后记录到本地，提交失败时消息重新投递，不能被本地记录跳过
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                orderIds.forEach(id -> cleanedOrders.put(id, Boolean.TRUE));
+            }
+        });
     }
 
-    private boolean checkItemExists(Long itemId, Long userId) {
-        int count = lambdaQuery()
-                .eq(Cart::getUserId, userId)
-                .eq(Cart::getItemId, itemId)
-                .count();
-        return count > 0;
+    /**
+     * 定时删除超过保留时长的清理记录，订单消息不会在保留时长之后再重复投递
+     */
+    @Scheduled(fixedDelayString = "${hm.cart.clean.purge-interval:3600000}")
+    public void purgeCleanRecords() {
+        CartProperties.Clean clean = cartProperties.getClean();
+        long ttlSeconds = clean.getRecordTtl().getSeconds();
+        int limit = clean.getPurgeBatchSize();
+        try {
+            int deleted;
+            // 分批删除，避免一次删除过多行长时间锁表
+            do {
+                deleted = cleanRecordMapper.deleteExpired(ttlSeconds, limit);
+            } while (deleted >= limit);
+        } catch (Exception e) {
+            log.warn("删除过期的购物车清理记录失败", e);
+        }
     }
 }
@@ -0,0 +1,30 @@
+package com.hmall.cart.store;
+
+import com.hmall.cart.domain.po.Cart;
+
+import java.util.List;
+
+/**
+ * 用户购物车的键值存储，key为用户id，value为该用户的全部购物车条目，可以基于Redis等实现。
+ * <p>
+ * value被视为不可变对象，修改时总是写入新的列表。
+ * 基于共享存储实现时，同一用户的请求需要路由到同一实例，或者由实现保证对同一用户的修改是原子的
+ */
+public interface CartStateStore {
+
+    /**
+     * 查询用户的购物车
+     *
+     * @param userId 用户id
+     * @return 购物车条目，不存在时返回null，此时需要从数据库加载
+     */
+    List<Cart> get(Long userId);
+
+    /**
+     * 写入用户的购物车
+     *
+     * @param userId 用户id
+     * @param carts  购物车条目
+     */
+    void put(Long userId, List<Cart> carts);
+}
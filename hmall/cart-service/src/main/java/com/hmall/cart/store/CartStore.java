@@ -0,0 +1,78 @@
+package com.hmall.cart.store;
+
+import com.hmall.cart.domain.po.Cart;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 购物车存储，所有操作都限定在指定用户的购物车内
+ */
+public interface CartStore {
+
+    /**
+     * 查询用户的购物车
+     *
+     * @param userId 用户id
+     * @return 购物车条目
+     */
+    List<Cart> list(Long userId);
+
+    /**
+     * 添加商品到购物车，商品已存在时数量加1
+     *
+     * @param userId    用户id
+     * @param cart      购物车条目，包含商品信息
+     * @param maxAmount 购物车最多包含的商品种类数量，超出时抛出BizIllegalException
+     */
+    void add(Long userId, Cart cart, int maxAmount);
+
+    /**
+     * 批量添加商品到购物车，已存在的商品数量累加。只判断一次购物车数量上限，超出时整批都不添加
+     *
+     * @param userId    用户id
+     * @param carts     购物车条目，包含商品信息和要增加的数量，同一商品只能出现一次
+     * @param maxAmount 购物车最多包含的商品种类数量，超出时抛出BizIllegalException
+     */
+    void addAll(Long userId, Collection<Cart> carts, int maxAmount);
+
+    /**
+     * 批量修改购物车条目的数量，不属于该用户的条目会被忽略
+     *
+     * @param userId 用户id
+     * @param nums   购物车条目id与数量
+     */
+    void updateNums(Long userId, Map<Long, Integer> nums);
+
+    /**
+     * 按条目id更新购物车，只更新不为空的字段，不属于该用户的条目会被忽略
+     *
+     * @param userId 用户id
+     * @param cart   购物车条目
+     */
+    void update(Long userId, Cart cart);
+
+    /**
+     * 按条目id删除购物车条目
+     *
+     * @param userId 用户id
+     * @param ids    购物车条目id集合
+     */
+    void removeByIds(Long userId, Collection<Long> ids);
+
+    /**
+     * 按商品id删除购物车条目
+     *
+     * @param userId  用户id
+     * @param itemIds 商品id集合
+     */
+    void removeByItemIds(Long userId, Collection<Long> itemIds);
+
+    /**
+     * 批量删除多个用户购物车中的指定商品
+     *
+     * @param userItemIds 用户id与要删除的商品id
+     */
+    void removeByUserItems(Map<Long, ? extends Collection<Long>> userItemIds);
+}
@@ -0,0 +1,15 @@
+package com.hmall.cart.store;
+
+/**
+ * 购物车的存储方式
+ */
+public enum CartStoreMode {
+    /**
+     * 每次读写都直接访问数据库
+     */
+    DB,
+    /**
+     * 用户的购物车保存在键值存储中，读写不访问数据库，变更异步批量写回数据库
+     */
+    MEMORY
+}
@@ -0,0 +1,191 @@
+package com.hmall.cart.store;
+
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hmall.cart.config.CartProperties;
+import com.hmall.cart.domain.po.Cart;
+import com.hmall.cart.mapper.CartMapper;
+import com.hmall.common.exception.BizIllegalException;
+import com.hmall.common.utils.CollUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * 直接读写数据库的购物车存储。
+ * <p>
+ * 添加商品用一条INSERT ... ON DUPLICATE KEY UPDATE完成新增或数量加1。
+ * 每个用户的购物车条目数量缓存在内存中，随本实例的添加、删除同步增减，但它只是本实例的估计值：
+ * 其它实例的添加、删除不会反映到本实例的缓存上。因此：
+ * <ul>
+ *     <li>缓存显示购物车已满时，先用COUNT查询确认，避免其它实例删除后仍然误报已满</li>
+ *     <li>新增了条目时，用COUNT查询确认没有超过上限，超过则删除本次新增的条目；
+ *     并发添加的请求都在新增之后才统计，超过上限时至少有一方会看到超出并撤销，条目数量不会一直超过上限</li>
+ * </ul>
+ * 商品已在购物车中时只增加数量，不需要COUNT查询。
+ */
+public class DbCartStore implements CartStore {
+
+    private final CartMapper cartMapper;
+    /**
+     * 用户的购物车条目数量在本实例的估计值，未缓存或需要确认时执行一次COUNT查询
+     */
+    private final Cache<Long, AtomicInteger> counts;
+
+    public DbCartStore(CartMapper cartMapper, CartProperties.CountCache properties) {
+        this.cartMapper = cartMapper;
+        this.counts = Caffeine.newBuilder()
+                .maximumSize(properties.getSize())
+                .expireAfterWrite(properties.getTtl())
+                .build();
+    }
+
+    @Override
+    public List<Cart> list(Long userId) {
+        return cartMapper.selectList(Wrappers.<Cart>lambdaQuery().eq(Cart::getUserId, userId));
+    }
+
+    @Override
+    public void add(Long userId, Cart cart, int maxAmount) {
+        cart.setUserId(userId);
+        // 1.估计购物车已满，只允许增加已有商品的数量
+        if (countOf(userId).get() >= maxAmount) {
+            if (cartMapper.updateNum(cart.getItemId(), userId) > 0) {
+                return;
+            }
+            // 1.1.商品不在购物车中，重新统计确认，其它实例可能已经删除了条目
+            if (recount(userId) >= maxAmount) {
+                throw new BizIllegalException(StrUtil.format("用户购物车课程不能超过{}", maxAmount));
+            }
+        }
+        // 2.新增或数量加1，商品已存在时条目数量没有变化
+        if (cartMapper.upsertNum(cart) != 1) {
+            return;
+        }
+        // 3.新增了条目，确认没有因为并发添加超过上限
+        if (recount(userId) > maxAmount) {
+            removeAdded(userId, List.of(cart.getItemId()));
+            throw new BizIllegalException(StrUtil.format("用户购物车课程不能超过{}", maxAmount));
+        }
+    }
+
+    @Override
+    public void addAll(Long userId, Collection<Cart> carts, int maxAmount) {
+        if (CollUtils.isEmpty(carts)) {
+            return;
+        }
+        // 1.查询已在购物车中的商品，计算新增的商品
+        List<Long> itemIds = carts.stream().map(Cart::getItemId).collect(Collectors.toList());
+        Set<Long> existing = cartMapper.selectObjs(Wrappers.<Cart>lambdaQuery()
+                        .select(Cart::getItemId)
+                        .eq(Cart::getUserId, userId)
+                        .in(Cart::getItemId, itemIds))
+                .stream().map(o -> ((Number) o).longValue()).collect(Collectors.toSet());
+        List<Long> addedIds = itemIds.stream().filter(id -> !existing.contains(id)).collect(Collectors.toList());
+        // 2.估计会超过上限时，重新统计确认
+        if (!addedIds.isEmpty() && countOf(userId).get() + addedIds.size() > maxAmount
+                && recount(userId) + addedIds.size() > maxAmount) {
+            throw new BizIllegalException(StrUtil.format("用户购物车课程不能超过{}", maxAmount));
+        }
+        // 3.一条语句新增或累加数量
+        carts.forEach(c -> c.setUserId(userId));
+        cartMapper.upsertNumBatch(carts);
+        // 4.新增了条目，确认没有因为并发添加超过上限
+        if (!addedIds.isEmpty() && recount(userId) > maxAmount) {
+            removeAdded(userId, addedIds);
+            throw new BizIllegalException(StrUtil.format("用户购物车课程不能超过{}", maxAmount));
+        }
+    }
+
+    @Override
+    public void updateNums(Long userId, Map<Long, Integer> nums) {
+        if (CollUtils.isEmpty(nums)) {
+            return;
+        }
+        cartMapper.updateNumBatch(userId, nums);
+    }
+
+    @Override
+    public void update(Long userId, Cart cart) {
+        Long id = cart.getId();
+        // 不允许修改条目所属的用户和商品
+        cart.setUserId(null);
+        cart.setItemId(null);
+        cartMapper.update(cart, Wrappers.<Cart>lambdaUpdate().eq(Cart::getId, id).eq(Cart::getUserId, userId));
+    }
+
+    @Override
+    public void removeByIds(Long userId, Collection<Long> ids) {
+        if (CollUtils.isEmpty(ids)) {
+            return;
+        }
+        int rows = cartMapper.delete(Wrappers.<Cart>lambdaQuery().eq(Cart::getUserId, userId).in(Cart::getId, ids));
+        decrease(userId, rows);
+    }
+
+    @Override
+    public void removeByItemIds(Long userId, Collection<Long> itemIds) {
+        if (CollUtils.isEmpty(itemIds)) {
+            return;
+        }
+        int rows = cartMapper.delete(Wrappers.<Cart>lambdaQuery().eq(Cart::getUserId, userId).in(Cart::getItemId, itemIds));
+        decrease(userId, rows);
+    }
+
+    @Override
+    public void removeByUserItems(Map<Long, ? extends Collection<Long>> userItemIds) {
+        if (CollUtils.isEmpty(userItemIds)) {
+            return;
+        }
+        List<Cart> carts = new ArrayList<>();
+        userItemIds.forEach((userId, itemIds) -> itemIds.forEach(itemId -> carts.add(new Cart().setUserId(userId).setItemId(itemId))));
+        if (carts.isEmpty()) {
+            return;
+        }
+        cartMapper.deleteByUserItems(carts);
+        // 影响行数无法区分用户，直接清除这些用户的条目数量缓存，下次使用时重新统计
+        counts.invalidateAll(userItemIds.keySet());
+    }
+
+    private AtomicInteger countOf(Long userId) {
+        return counts.get(userId, id -> new AtomicInteger(selectCount(id)));
+    }
+
+    /**
+     * 重新统计用户的购物车条目数量，并更新缓存
+     */
+    private int recount(Long userId) {
+        int count = selectCount(userId);
+        counts.put(userId, new AtomicInteger(count));
+        return count;
+    }
+
+    private int selectCount(Long userId) {
+        return Math.toIntExact(cartMapper.selectCount(Wrappers.<Cart>lambdaQuery().eq(Cart::getUserId, userId)));
+    }
+
+    /**
+     * 撤销超过上限时本次新增的条目
+     */
+    private void removeAdded(Long userId, Collection<Long> itemIds) {
+        int rows = cartMapper.delete(Wrappers.<Cart>lambdaQuery().eq(Cart::getUserId, userId).in(Cart::getItemId, itemIds));
+        decrease(userId, rows);
+    }
+
+    private void decrease(Long userId, int rows) {
+        if (rows <= 0) {
+            return;
+        }
+        AtomicInteger count = counts.getIfPresent(userId);
+        if (count != null) {
+            count.addAndGet(-rows);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.hmall.cart.store;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hmall.cart.domain.po.Cart;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 基于进程内存的购物车键值存储，用于本地开发、测试和单实例部署，需要设置hm.cart.write-behind.allow-local-state=true；
+ * 多实例部署时必须替换为共享的存储实现
+ */
+public class LocalCartStateStore implements CartStateStore {
+
+    private final Cache<Long, List<Cart>> cache;
+
+    public LocalCartStateStore(long maximumSize, Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(ttl)
+                .build();
+    }
+
+    @Override
+    public List<Cart> get(Long userId) {
+        return cache.getIfPresent(userId);
+    }
+
+    @Override
+    public void put(Long userId, List<Cart> carts) {
+        cache.put(userId, carts);
+    }
+}
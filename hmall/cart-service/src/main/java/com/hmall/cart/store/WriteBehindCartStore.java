@@ -0,0 +1,411 @@
+package com.hmall.cart.store;
+
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.toolkit.IdWorker;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.hmall.cart.config.CartProperties;
+import com.hmall.cart.domain.po.Cart;
+import com.hmall.cart.mapper.CartMapper;
+import com.hmall.common.exception.BizIllegalException;
+import com.hmall.common.utils.BeanUtils;
+import com.hmall.common.utils.CollUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * 异步写回数据库的购物车存储。
+ * <p>
+ * 用户的购物车保存在键值存储中，读写只访问键值存储；每次修改把变化的条目记录到写回缓冲区，
+ * 同一条目的多次修改会被合并，定时用多值INSERT ... ON DUPLICATE KEY UPDATE和DELETE ... IN批量写回数据库。
+ * 新条目的id用雪花算法在内存中生成，不需要先插入数据库。
+ * <p>
+ * 用户的购物车不在键值存储中时从数据库加载一次，再叠加缓冲区和正在写回中尚未完成的修改。
+ * 同一用户的修改按用户id分段加锁串行执行。
+ */
+@Slf4j
+public class WriteBehindCartStore implements CartStore {
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final CartMapper cartMapper;
+    private final CartStateStore stateStore;
+    private final CartProperties.WriteBehind properties;
+    private final Lock[] locks = new Lock[LOCK_STRIPES];
+    /**
+     * 待写回的新增或修改，key为条目id
+     */
+    private Map<Long, Cart> pendingUpserts = new HashMap<>();
+    /**
+     * 待写回的删除
+     */
+    private Set<Long> pendingDeletes = new HashSet<>();
+    /**
+     * 正在写回的新增或修改，写回结束前加载购物车时仍需叠加
+     */
+    private Map<Long, Cart> inFlightUpserts = CollUtils.emptyMap();
+    /**
+     * 正在写回的删除
+     */
+    private Set<Long> inFlightDeletes = CollUtils.emptySet();
+    /**
+     * 已结束的写回次数，加载购物车期间有写回结束时需要重新查询数据库
+     */
+    private long flushCount;
+    private final Object bufferLock = new Object();
+
+    public WriteBehindCartStore(CartMapper cartMapper, CartStateStore stateStore, CartProperties.WriteBehind properties) {
+        this.cartMapper = cartMapper;
+        this.stateStore = stateStore;
+        this.properties = properties;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    public List<Cart> list(Long userId) {
+        List<Cart> carts = stateStore.get(userId);
+        if (carts != null) {
+            return BeanUtils.copyList(carts, Cart.class);
+        }
+        return BeanUtils.copyList(modify(userId, UnaryOperator.identity()), Cart.class);
+    }
+
+    @Override
+    public void add(Long userId, Cart cart, int maxAmount) {
+        modify(userId, carts -> {
+            List<Cart> result = new ArrayList<>(carts.size() + 1);
+            Cart changed = null;
+            for (Cart c : carts) {
+                if (c.getItemId().equals(cart.getItemId())) {
+                    // 1.已存在，则数量加1
+                    c = BeanUtils.copyBean(c, Cart.class);
+                    c.setNum(c.getNum() + 1);
+                    c.setUpdateTime(LocalDateTime.now());
+                    changed = c;
+                }
+                result.add(c);
+            }
+            if (changed == null) {
+                // 2.不存在，判断是否超过购物车数量
+                if (carts.size() >= maxAmount) {
+                    throw new BizIllegalException(StrUtil.format("用户购物车课程不能超过{}", maxAmount));
+                }
+                // 3.新增购物车条目
+                LocalDateTime now = LocalDateTime.now();
+                changed = BeanUtils.copyBean(cart, Cart.class)
+                        .setId(IdWorker.getId())
+                        .setUserId(userId)
+                        .setNum(1)
+                        .setCreateTime(now)
+                        .setUpdateTime(now);
+                result.add(changed);
+            }
+            recordUpsert(changed);
+            return result;
+        });
+    }
+
+    @Override
+    public void addAll(Long userId, Collection<Cart> carts, int maxAmount) {
+        if (CollUtils.isEmpty(carts)) {
+            return;
+        }
+        modify(userId, origin -> {
+            Map<Long, Cart> adding = new LinkedHashMap<>();
+            for (Cart cart : carts) {
+                adding.put(cart.getItemId(), cart);
+            }
+            // 1.已存在的商品累加数量
+            LocalDateTime now = LocalDateTime.now();
+            List<Cart> result = new ArrayList<>(origin.size() + adding.size());
+            List<Cart> changed = new ArrayList<>(adding.size());
+            for (Cart c : origin) {
+                Cart add = adding.remove(c.getItemId());
+                if (add != null) {
+                    c = BeanUtils.copyBean(c, Cart.class);
+                    c.setNum(c.getNum() + add.getNum());
+                    c.setUpdateTime(now);
+                    changed.add(c);
+                }
+                result.add(c);
+            }
+            // 2.剩下的是新商品，一次性判断是否超过购物车数量
+            if (origin.size() + adding.size() > maxAmount) {
+                throw new BizIllegalException(StrUtil.format("用户购物车课程不能超过{}", maxAmount));
+            }
+            for (Cart add : adding.values()) {
+                Cart c = BeanUtils.copyBean(add, Cart.class)
+                        .setId(IdWorker.getId())
+                        .setUserId(userId)
+                        .setCreateTime(now)
+                        .setUpdateTime(now);
+                result.add(c);
+                changed.add(c);
+            }
+            // 3.全部校验通过后再记录写回
+            changed.forEach(this::recordUpsert);
+            return result;
+        });
+    }
+
+    @Override
+    public void updateNums(Long userId, Map<Long, Integer> nums) {
+        if (CollUtils.isEmpty(nums)) {
+            return;
+        }
+        modify(userId, carts -> {
+            List<Cart> result = new ArrayList<>(carts.size());
+            for (Cart c : carts) {
+                Integer num = nums.get(c.getId());
+                if (num != null) {
+                    c = merge(c, new Cart().setNum(num));
+                    recordUpsert(c);
+                }
+                result.add(c);
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public void update(Long userId, Cart cart) {
+        modify(userId, carts -> {
+            List<Cart> result = new ArrayList<>(carts.size());
+            for (Cart c : carts) {
+                if (c.getId().equals(cart.getId())) {
+                    c = merge(c, cart);
+                    recordUpsert(c);
+                }
+                result.add(c);
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public void removeByIds(Long userId, Collection<Long> ids) {
+        if (CollUtils.isEmpty(ids)) {
+            return;
+        }
+        Set<Long> idSet = new HashSet<>(ids);
+        remove(userId, c -> idSet.contains(c.getId()));
+    }
+
+    @Override
+    public void removeByItemIds(Long userId, Collection<Long> itemIds) {
+        if (CollUtils.isEmpty(itemIds)) {
+            return;
+        }
+        Set<Long> itemIdSet = new HashSet<>(itemIds);
+        remove(userId, c -> itemIdSet.contains(c.getItemId()));
+    }
+
+    @Override
+    public void removeByUserItems(Map<Long, ? extends Collection<Long>> userItemIds) {
+        if (CollUtils.isEmpty(userItemIds)) {
+            return;
+        }
+        // 只修改内存，删除随下一次写回批量执行
+        userItemIds.forEach(this::removeByItemIds);
+    }
+
+    /**
+     * 定时将缓冲区中的修改批量写回数据库，写回失败的修改会在下个周期重试
+     */
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${hm.cart.write-behind.flush-interval:1000}")
+    public synchronized void flush() {
+        // 1.取出缓冲区，之后的修改记录到新的缓冲区
+        Map<Long, Cart> upserts;
+        Set<Long> deletes;
+        synchronized (bufferLock) {
+            if (pendingUpserts.isEmpty() && pendingDeletes.isEmpty()) {
+                return;
+            }
+            upserts = pendingUpserts;
+            deletes = pendingDeletes;
+            inFlightUpserts = upserts;
+            inFlightDeletes = deletes;
+            pendingUpserts = new HashMap<>();
+            pendingDeletes = new HashSet<>();
+        }
+        // 2.写回，写回结束前加载购物车时仍会叠加这些修改
+        try {
+            write(upserts, deletes);
+        } finally {
+            // 3.写回结束，失败的修改已放回缓冲区
+            synchronized (bufferLock) {
+                inFlightUpserts = CollUtils.emptyMap();
+                inFlightDeletes = CollUtils.emptySet();
+                flushCount++;
+            }
+        }
+    }
+
+    private void write(Map<Long, Cart> upserts, Set<Long> deletes) {
+        int batchSize = properties.getBatchSize();
+        // 1.批量删除
+        List<Long> deleteIds = new ArrayList<>(deletes);
+        for (int from = 0; from < deleteIds.size(); from += batchSize) {
+            List<Long> batch = deleteIds.subList(from, Math.min(from + batchSize, deleteIds.size()));
+            try {
+                cartMapper.deleteBatchIds(batch);
+            } catch (Exception e) {
+                log.error("购物车删除写回失败，{}条数据等待重试", batch.size(), e);
+                restore(List.of(), batch);
+            }
+        }
+        // 2.批量新增或修改
+        List<Cart> carts = new ArrayList<>(upserts.values());
+        for (int from = 0; from < carts.size(); from += batchSize) {
+            List<Cart> batch = carts.subList(from, Math.min(from + batchSize, carts.size()));
+            try {
+                cartMapper.upsertBatch(batch);
+            } catch (Exception e) {
+                log.error("购物车修改写回失败，{}条数据等待重试", batch.size(), e);
+                restore(batch, List.of());
+            }
+        }
+        log.debug("购物车写回完成，修改{}条，删除{}条", carts.size(), deleteIds.size());
+    }
+
+    private void remove(Long userId, Predicate<Cart> filter) {
+        modify(userId, carts -> {
+            List<Cart> result = new ArrayList<>(carts.size());
+            for (Cart c : carts) {
+                if (filter.test(c)) {
+                    recordDelete(c.getId());
+                } else {
+                    result.add(c);
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * 在用户锁内读取、修改并写回用户的购物车
+     *
+     * @param userId   用户id
+     * @param modifier 修改函数，不能修改传入的列表和条目，而是返回新的列表
+     * @return 修改后的购物车
+     */
+    private List<Cart> modify(Long userId, UnaryOperator<List<Cart>> modifier) {
+        Lock lock = locks[Math.floorMod(userId.hashCode(), LOCK_STRIPES)];
+        lock.lock();
+        try {
+            List<Cart> carts = stateStore.get(userId);
+            boolean loaded = carts == null;
+            if (loaded) {
+                carts = load(userId);
+            }
+            List<Cart> result = modifier.apply(carts);
+            if (loaded || result != carts) {
+                stateStore.put(userId, result);
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 从数据库加载用户的购物车，并叠加正在写回和尚未写回的修改
+     */
+    private List<Cart> load(Long userId) {
+        while (true) {
+            long count;
+            synchronized (bufferLock) {
+                count = flushCount;
+            }
+            List<Cart> carts = cartMapper.selectList(Wrappers.<Cart>lambdaQuery().eq(Cart::getUserId, userId));
+            Map<Long, Cart> map = new LinkedHashMap<>();
+            for (Cart cart : carts) {
+                map.put(cart.getId(), cart);
+            }
+            synchronized (bufferLock) {
+                // 查询期间有写回结束，查询结果可能不包含这次写回，而它的修改已不在正在写回的缓冲区中，重新查询
+                if (count != flushCount) {
+                    continue;
+                }
+                // 先叠加正在写回的修改，再叠加更新的尚未写回的修改
+                overlay(map, userId, inFlightUpserts, inFlightDeletes);
+                overlay(map, userId, pendingUpserts, pendingDeletes);
+            }
+            return new ArrayList<>(map.values());
+        }
+    }
+
+    private static void overlay(Map<Long, Cart> carts, Long userId, Map<Long, Cart> upserts, Set<Long> deletes) {
+        for (Cart cart : upserts.values()) {
+            if (userId.equals(cart.getUserId())) {
+                carts.put(cart.getId(), cart);
+            }
+        }
+        deletes.forEach(carts::remove);
+    }
+
+    private static Cart merge(Cart origin, Cart change) {
+        Cart cart = BeanUtils.copyBean(origin, Cart.class);
+        if (change.getNum() != null) {
+            cart.setNum(change.getNum());
+        }
+        if (change.getName() != null) {
+            cart.setName(change.getName());
+        }
+        if (change.getSpec() != null) {
+            cart.setSpec(change.getSpec());
+        }
+        if (change.getPrice() != null) {
+            cart.setPrice(change.getPrice());
+        }
+        if (change.getImage() != null) {
+            cart.setImage(change.getImage());
+        }
+        cart.setUpdateTime(LocalDateTime.now());
+        return cart;
+    }
+
+    private void recordUpsert(Cart cart) {
+        synchronized (bufferLock) {
+            pendingUpserts.put(cart.getId(), cart);
+        }
+    }
+
+    private void recordDelete(Long id) {
+        synchronized (bufferLock) {
+            pendingUpserts.remove(id);
+            pendingDeletes.add(id);
+        }
+    }
+
+    /**
+     * 写回失败的修改放回缓冲区，已有更新的修改或删除时以新的为准
+     */
+    private void restore(List<Cart> upserts, List<Long> deletes) {
+        synchronized (bufferLock) {
+            for (Cart cart : upserts) {
+                if (!pendingDeletes.contains(cart.getId())) {
+                    pendingUpserts.putIfAbsent(cart.getId(), cart);
+                }
+            }
+            pendingDeletes.addAll(deletes);
+        }
+    }
+}
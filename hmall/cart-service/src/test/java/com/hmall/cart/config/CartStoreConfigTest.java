@@ -0,0 +1,46 @@
+package com.hmall.cart.config;
+
+import com.hmall.cart.mapper.CartMapper;
+import com.hmall.cart.store.CartStateStore;
+import com.hmall.cart.store.CartStoreMode;
+import com.hmall.cart.store.WriteBehindCartStore;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CartStoreConfigTest {
+
+    private final CartStoreConfig config = new CartStoreConfig();
+    private final CartProperties properties = new CartProperties();
+
+    @Test
+    void testMemoryModeRefusesLocalState() {
+        properties.setStoreMode(CartStoreMode.MEMORY);
+
+        assertThrows(IllegalStateException.class, () -> config.cartStore(properties, mock(CartMapper.class), provider(config.cartStateStore(properties))));
+    }
+
+    @Test
+    void testMemoryModeAllowsLocalStateWhenEnabled() {
+        properties.setStoreMode(CartStoreMode.MEMORY);
+        properties.getWriteBehind().setAllowLocalState(true);
+
+        assertInstanceOf(WriteBehindCartStore.class, config.cartStore(properties, mock(CartMapper.class), provider(config.cartStateStore(properties))));
+    }
+
+    @Test
+    void testMemoryModeAcceptsSharedState() {
+        properties.setStoreMode(CartStoreMode.MEMORY);
+
+        assertInstanceOf(WriteBehindCartStore.class, config.cartStore(properties, mock(CartMapper.class), provider(mock(CartStateStore.class))));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ObjectProvider<CartStateStore> provider(CartStateStore store) {
+        ObjectProvider<CartStateStore> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(store);
+        return provider;
+    }
+}
@@ -0,0 +1,68 @@
+package com.hmall.cart.store;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.hmall.cart.config.CartProperties;
+import com.hmall.cart.domain.po.Cart;
+import com.hmall.cart.mapper.CartMapper;
+import com.hmall.common.exception.BizIllegalException;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class DbCartStoreTest {
+
+    private final CartMapper cartMapper = mock(CartMapper.class);
+    private final DbCartStore store = new DbCartStore(cartMapper, new CartProperties.CountCache());
+
+    @BeforeAll
+    static void initTableInfo() {
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), Cart.class);
+    }
+
+    @Test
+    void testStaleFullCountIsRecheckedBeforeRejecting() {
+        // 本实例缓存的数量已满，其它实例已经删除了一个条目
+        when(cartMapper.selectCount(any())).thenReturn(10, 9, 10);
+        when(cartMapper.updateNum(anyLong(), anyLong())).thenReturn(0);
+        when(cartMapper.upsertNum(any())).thenReturn(1);
+
+        assertDoesNotThrow(() -> store.add(1L, new Cart().setItemId(100L), 10));
+        verify(cartMapper).upsertNum(any());
+        verify(cartMapper, never()).delete(any());
+    }
+
+    @Test
+    void testAddOverLimitByOtherInstanceIsUndone() {
+        // 本实例缓存的数量未满，其它实例并发添加后超过了上限
+        when(cartMapper.selectCount(any())).thenReturn(9, 11);
+        when(cartMapper.upsertNum(any())).thenReturn(1);
+        when(cartMapper.delete(any())).thenReturn(1);
+
+        assertThrows(BizIllegalException.class, () -> store.add(1L, new Cart().setItemId(100L), 10));
+        verify(cartMapper).delete(any());
+    }
+
+    @Test
+    void testExistingItemIsIncreasedWhenFull() {
+        when(cartMapper.selectCount(any())).thenReturn(10);
+        when(cartMapper.updateNum(anyLong(), anyLong())).thenReturn(1);
+
+        assertDoesNotThrow(() -> store.add(1L, new Cart().setItemId(100L), 10));
+        verify(cartMapper, times(1)).selectCount(any());
+        verify(cartMapper, never()).upsertNum(any());
+    }
+
+    @Test
+    void testFullCartIsRejected() {
+        when(cartMapper.selectCount(any())).thenReturn(10);
+        when(cartMapper.updateNum(anyLong(), anyLong())).thenReturn(0);
+
+        assertThrows(BizIllegalException.class, () -> store.add(1L, new Cart().setItemId(100L), 10));
+        verify(cartMapper, never()).upsertNum(any());
+    }
+}
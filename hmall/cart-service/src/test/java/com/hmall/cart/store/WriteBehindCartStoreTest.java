@@ -0,0 +1,199 @@
+package com.hmall.cart.store;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.hmall.cart.config.CartProperties;
+import com.hmall.cart.domain.po.Cart;
+import com.hmall.cart.mapper.CartMapper;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class WriteBehindCartStoreTest {
+
+    private final CartMapper cartMapper = mock(CartMapper.class);
+    /**
+     * 模拟键值存储，清空即模拟购物车被淘汰
+     */
+    private final Map<Long, List<Cart>> states = new ConcurrentHashMap<>();
+    /**
+     * 每次写回的条目
+     */
+    private final List<List<Cart>> upserted = new ArrayList<>();
+    private WriteBehindCartStore store;
+
+    @BeforeAll
+    static void initTableInfo() {
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), Cart.class);
+    }
+
+    @BeforeEach
+    void setUp() {
+        CartStateStore stateStore = new CartStateStore() {
+            @Override
+            public List<Cart> get(Long userId) {
+                return states.get(userId);
+            }
+
+            @Override
+            public void put(Long userId, List<Cart> carts) {
+                states.put(userId, carts);
+            }
+        };
+        store = new WriteBehindCartStore(cartMapper, stateStore, new CartProperties.WriteBehind());
+        when(cartMapper.selectList(any())).thenReturn(List.of());
+        doAnswer(inv -> {
+            upserted.add(new ArrayList<>(inv.<Collection<Cart>>getArgument(0)));
+            return null;
+        }).when(cartMapper).upsertBatch(anyCollection());
+    }
+
+    @Test
+    void testLoadDuringFlushSeesInFlightChanges() throws Exception {
+        store.add(1L, new Cart().setItemId(100L), 10);
+        // 写回进行中
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(inv -> {
+            writing.countDown();
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+            return null;
+        }).when(cartMapper).upsertBatch(anyCollection());
+        CompletableFuture<Void> flushing = CompletableFuture.runAsync(store::flush);
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        // 购物车被淘汰后重新加载，数据库中还没有写回的条目
+        states.clear();
+        List<Cart> carts = store.list(1L);
+
+        release.countDown();
+        flushing.get(5, TimeUnit.SECONDS);
+        assertEquals(1, carts.size());
+        assertEquals(100L, carts.get(0).getItemId());
+    }
+
+    @Test
+    void testLoadRetriesWhenFlushEndsDuringQuery() throws Exception {
+        store.add(1L, new Cart().setItemId(100L), 10);
+        Cart saved = new ArrayList<>(states.get(1L)).get(0);
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(inv -> {
+            writing.countDown();
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+            return null;
+        }).when(cartMapper).upsertBatch(anyCollection());
+        CompletableFuture<Void> flushing = CompletableFuture.runAsync(store::flush);
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        // 第一次查询在写回提交前读到旧数据，查询返回前写回结束，已不在正在写回的缓冲区中
+        AtomicBoolean first = new AtomicBoolean(true);
+        doAnswer(inv -> {
+            if (first.getAndSet(false)) {
+                release.countDown();
+                flushing.get(5, TimeUnit.SECONDS);
+                return List.of();
+            }
+            return List.of(saved);
+        }).when(cartMapper).selectList(any());
+        clearInvocations(cartMapper);
+        states.clear();
+        List<Cart> carts = store.list(1L);
+
+        assertEquals(1, carts.size());
+        assertEquals(saved.getId(), carts.get(0).getId());
+        verify(cartMapper, times(2)).selectList(any());
+    }
+
+    @Test
+    void testReAddAfterDeleteWritesDeleteFirst() {
+        store.add(1L, new Cart().setItemId(100L), 10);
+        store.flush();
+        Long oldId = states.get(1L).get(0).getId();
+
+        // 删除后重新加入同一商品，新条目有新的id
+        store.removeByItemIds(1L, List.of(100L));
+        store.add(1L, new Cart().setItemId(100L), 10);
+        store.flush();
+
+        List<Cart> carts = store.list(1L);
+        assertEquals(1, carts.size());
+        Long newId = carts.get(0).getId();
+        assertNotEquals(oldId, newId);
+        assertEquals(1, carts.get(0).getNum());
+        // 先删除旧条目再写入新条目，新条目不会被删除
+        InOrder order = inOrder(cartMapper);
+        order.verify(cartMapper).deleteBatchIds(List.of(oldId));
+        order.verify(cartMapper).upsertBatch(anyCollection());
+        assertEquals(newId, upserted.get(upserted.size() - 1).get(0).getId());
+    }
+
+    @Test
+    void testReAddBeforeFlushKeepsOnlyNewEntry() {
+        store.add(1L, new Cart().setItemId(100L), 10);
+        Long oldId = states.get(1L).get(0).getId();
+        store.removeByItemIds(1L, List.of(100L));
+        store.add(1L, new Cart().setItemId(100L), 10);
+        store.flush();
+
+        verify(cartMapper).deleteBatchIds(List.of(oldId));
+        assertEquals(1, upserted.size());
+        assertEquals(1, upserted.get(0).size());
+        assertNotEquals(oldId, upserted.get(0).get(0).getId());
+    }
+
+    @Test
+    void testFailedFlushIsRetried() {
+        store.add(1L, new Cart().setItemId(100L), 10);
+        doThrow(new RuntimeException("db down")).doAnswer(inv -> {
+            upserted.add(new ArrayList<>(inv.<Collection<Cart>>getArgument(0)));
+            return null;
+        }).when(cartMapper).upsertBatch(anyCollection());
+
+        store.flush();
+        assertTrue(upserted.isEmpty());
+        // 失败的修改放回缓冲区，重试前的新修改以新的为准
+        Long id = states.get(1L).get(0).getId();
+        store.updateNums(1L, Map.of(id, 5));
+        store.flush();
+
+        assertEquals(1, upserted.size());
+        assertEquals(id, upserted.get(0).get(0).getId());
+        assertEquals(5, upserted.get(0).get(0).getNum());
+        // 已写回成功，不再重复写回
+        store.flush();
+        verify(cartMapper, times(2)).upsertBatch(anyCollection());
+    }
+
+    @Test
+    void testFailedFlushDoesNotResurrectDeletedEntry() {
+        store.add(1L, new Cart().setItemId(100L), 10);
+        Long id = states.get(1L).get(0).getId();
+        doThrow(new RuntimeException("db down")).when(cartMapper).upsertBatch(anyCollection());
+        store.flush();
+
+        // 写回失败后删除，重试时只删除不再写入
+        store.removeByIds(1L, List.of(id));
+        store.flush();
+
+        verify(cartMapper, times(1)).upsertBatch(anyCollection());
+        verify(cartMapper).deleteBatchIds(List.of(id));
+        assertTrue(store.list(1L).isEmpty());
+    }
+}
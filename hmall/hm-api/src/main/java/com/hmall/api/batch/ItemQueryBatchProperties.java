@@ -0,0 +1,31 @@
+package com.hmall.api.batch;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "hm.item-client.batch")
+public class ItemQueryBatchProperties {
+    /**
+     * 是否合并并发的商品查询请求，关闭后每次查询都直接调用ItemClient
+     */
+    private Boolean enabled = true;
+    /**
+     * 收集请求的时间窗口，窗口内的查询会合并为一次远程调用
+     */
+    private Duration window = Duration.ofMillis(2);
+    /**
+     * 一次远程调用最多查询的商品数量，达到后立即发送，不再等待窗口结束
+     */
+    private Integer maxBatchSize = 200;
+    /**
+     * 执行远程调用的线程数，即同时在途的合并查询数量上限
+     */
+    private Integer threads = 4;
+    /**
+     * 等待执行的批次数量上限，队列已满时批次直接失败
+     */
+    private Integer queueSize = 100;
+}
@@ -0,0 +1,200 @@
+package com.hmall.api.batch;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import com.hmall.api.client.ItemClient;
+import com.hmall.api.dto.ItemDTO;
+import com.hmall.api.resilience.ResilientItemQuery;
+import com.hmall.common.exception.BizIllegalException;
+import com.hmall.common.utils.CollUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 商品批量查询的请求合并器。
+ * <p>
+ * 在一个很短的时间窗口内收集并发的{@link ItemClient#queryItemByIds(Collection)}调用，
+ * 把所有商品id去重后只发起一次远程调用，再按各个调用者查询的id从结果中截取属于自己的部分。
+ * 返回的商品对象可能被多个调用者共享，调用者不能修改它们。
+ * 远程调用通过{@link ResilientItemQuery}执行，商品服务不可用时得到的是旧数据。
+ * <p>
+ * 定时线程只负责在窗口结束时派发批次，阻塞的远程调用在有界的工作线程池中执行，
+ * 每个批次只会提交一次，线程和队列都已满时批次直接失败；调用者最多等待一个窗口加上Feign的读取超时。
+ */
+@Slf4j
+public class ItemQueryBatcher {
+
+    private final ResilientItemQuery itemQuery;
+    private final ItemQueryBatchProperties properties;
+    private final ScheduledExecutorService scheduler;
+    private final ThreadPoolExecutor workers;
+    /**
+     * 调用者等待批次结果的最长时长
+     */
+    private final long timeoutNanos;
+
+    private final Object lock = new Object();
+    /**
+     * 正在收集请求的批次
+     */
+    private Batch current;
+
+    /**
+     * @param itemQuery   商品查询
+     * @param properties  合并配置
+     * @param readTimeout 调用商品服务的Feign读取超时
+     */
+    public ItemQueryBatcher(ResilientItemQuery itemQuery, ItemQueryBatchProperties properties, Duration readTimeout) {
+        this.itemQuery = itemQuery;
+        this.properties = properties;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                ThreadFactoryBuilder.create().setNamePrefix("item-query-batch-timer-").setDaemon(true).build());
+        this.workers = new ThreadPoolExecutor(properties.getThreads(), properties.getThreads(),
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(properties.getQueueSize()),
+                ThreadFactoryBuilder.create().setNamePrefix("item-query-batch-").setDaemon(true).build(),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.timeoutNanos = properties.getWindow().plus(readTimeout).toNanos();
+    }
+
+    /**
+     * 根据id批量查询商品，与其它并发的查询合并后再发起远程调用
+     *
+     * @param ids 商品id列表
+     * @return 商品信息列表
+     */
+    public List<ItemDTO> queryItemByIds(Collection<Long> ids) {
+        if (CollUtils.isEmpty(ids)) {
+            return CollUtils.emptyList();
+        }
+        if (!Boolean.TRUE.equals(properties.getEnabled())) {
+            return itemQuery.queryItemByIds(ids);
+        }
+        // 1.加入当前批次，等待批次查询完成
+        Map<Long, ItemDTO> items = await(join(ids));
+        // 2.截取属于本次查询的商品
+        Set<Long> keys = new LinkedHashSet<>(ids);
+        List<ItemDTO> result = new ArrayList<>(keys.size());
+        for (Long id : keys) {
+            ItemDTO item = items.get(id);
+            if (item != null) {
+                result.add(item);
+            }
+        }
+        return result;
+    }
+
+    private Batch join(Collection<Long> ids) {
+        Batch batch;
+        boolean full = false;
+        synchronized (lock) {
+            if (current == null) {
+                // 新批次，窗口结束时发送
+                Batch created = new Batch();
+                created.timer = scheduler.schedule(() -> dispatch(created),
+                        properties.getWindow().toNanos(), TimeUnit.NANOSECONDS);
+                current = created;
+            }
+            batch = current;
+            batch.ids.addAll(ids);
+            if (batch.ids.size() >= properties.getMaxBatchSize()) {
+                // 批次已满，不再等待窗口结束
+                current = null;
+                batch.timer.cancel(false);
+                full = true;
+            }
+        }
+        if (full) {
+            dispatch(batch);
+        }
+        return batch;
+    }
+
+    /**
+     * 把批次交给工作线程执行远程调用，批次满了提前发送后，窗口结束时不会再次提交
+     */
+    private void dispatch(Batch batch) {
+        synchronized (lock) {
+            if (current == batch) {
+                current = null;
+            }
+        }
+        if (!batch.dispatched.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            workers.execute(() -> flush(batch));
+        } catch (RejectedExecutionException e) {
+            // 批次只提交这一次，被拒绝说明确实没有线程会执行它
+            log.warn("商品查询的工作线程已满，批次查询失败，商品数量：{}", batch.ids.size());
+            batch.future.completeExceptionally(new BizIllegalException("商品服务繁忙，请稍后再试"));
+        }
+    }
+
+    private void flush(Batch batch) {
+        try {
+            List<ItemDTO> list = itemQuery.queryItemByIds(batch.ids);
+            Map<Long, ItemDTO> items = new HashMap<>(list == null ? 0 : list.size());
+            if (list != null) {
+                for (ItemDTO item : list) {
+                    items.put(item.getId(), item);
+                }
+            }
+            batch.future.complete(items);
+        } catch (Exception e) {
+            batch.future.completeExceptionally(e);
+        }
+    }
+
+    private Map<Long, ItemDTO> await(Batch batch) {
+        try {
+            return batch.future.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new BizIllegalException("查询商品超时");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BizIllegalException("查询商品被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new BizIllegalException("查询商品失败", cause);
+        }
+    }
+
+    public void shutdown() {
+        scheduler.shutdown();
+        workers.shutdown();
+    }
+
+    private static class Batch {
+        private final Set<Long> ids = new LinkedHashSet<>();
+        /**
+         * 是否已提交给工作线程
+         */
+        private final AtomicBoolean dispatched = new AtomicBoolean();
+        /**
+         * 窗口结束时发送批次的定时任务
+         */
+        private ScheduledFuture<?> timer;
+        private final CompletableFuture<Map<Long, ItemDTO>> future = new CompletableFuture<>();
+    }
+}
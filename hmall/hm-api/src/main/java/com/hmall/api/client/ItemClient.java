@@ -2,7 +2,10 @@ package com.hmall.api.client;
 
 import com.hmall.api.client.fallback.ItemClientFallback;
 import com.hmall.api.dto.ItemDTO;
+import com.hmall.api.dto.ItemSnapshotsDTO;
 import com.hmall.api.dto.OrderDetailDTO;
+import com.hmall.api.dto.StockCommandDTO;
+import com.hmall.api.dto.StockResultDTO;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PutMapping;
@@ -27,6 +30,14 @@ public interface ItemClient {
     @GetMapping("/items")
     List<ItemDTO> queryItemByIds(@RequestParam("ids") Collection<Long> ids);
 
+    /**
+     * 根据id批量查询商品快照，只包含价格、库存、状态
+     *
+     * @param ids 商品id列表
+     * @return 商品快照，不存在的商品会被忽略；降级时返回null，与商品都不存在时的空快照区分开
+     */
+    @GetMapping("/items/snapshots")
+    ItemSnapshotsDTO queryItemSnapshots(@RequestParam("ids") Collection<Long> ids);
 
     /**
      * 扣除库存
@@ -42,4 +53,22 @@ public interface ItemClient {
      */
     @PutMapping("/items/stock/restore")
     void restoreStock(@RequestBody List<OrderDetailDTO> items);
+
+    /**
+     * 按订单预留库存，同一订单只会扣减一次
+     *
+     * @param cmd 订单id和各商品的数量
+     * @return 预留结果，库存不足时不成功
+     */
+    @PutMapping("/items/stock/reserve")
+    StockResultDTO reserveStock(@RequestBody StockCommandDTO cmd);
+
+    /**
+     * 按订单归还预留的库存，同一订单只会归还一次，没有预留成功的订单不会归还
+     *
+     * @param cmd 订单id和各商品的数量
+     * @return 归还结果
+     */
+    @PutMapping("/items/stock/reserve/cancel")
+    StockResultDTO cancelStockReservation(@RequestBody StockCommandDTO cmd);
 }
@@ -2,9 +2,11 @@ package com.hmall.api.client.fallback;
 
 import com.hmall.api.client.ItemClient;
 import com.hmall.api.dto.ItemDTO;
+import com.hmall.api.dto.ItemSnapshotsDTO;
 import com.hmall.api.dto.OrderDetailDTO;
+import com.hmall.api.dto.StockCommandDTO;
+import com.hmall.api.dto.StockResultDTO;
 import com.hmall.common.exception.BizIllegalException;
-import com.hmall.common.utils.CollUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cloud.openfeign.FallbackFactory;
 
@@ -19,8 +21,15 @@ public class ItemClientFallback implements FallbackFactory<ItemClient> {
             @Override
             public List<ItemDTO> queryItemByIds(Collection<Long> ids) {
                 log.error("远程调用ItemClient#queryItemByIds方法出现异常，参数：{}", ids, cause);
-                // 查询购物车允许失败，查询失败，返回空集合
-                return CollUtils.emptyList();
+                // 抛出异常，由ResilientItemQuery返回最近一次查询成功的旧数据，而不是返回空集合让调用方误以为商品不存在
+                throw new BizIllegalException(cause);
+            }
+
+            @Override
+            public ItemSnapshotsDTO queryItemSnapshots(Collection<Long> ids) {
+                log.error("远程调用ItemClient#queryItemSnapshots方法出现异常，参数：{}", ids, cause);
+                // 查询购物车允许失败，返回null而不是空快照，调用方才能区分查询失败与商品都不存在
+                return null;
             }
 
             @Override
@@ -36,6 +45,19 @@ public class ItemClientFallback implements FallbackFactory<ItemClient> {
                 // 库存扣减业务需要触发事务回滚，查询失败，抛出异常
                 throw new BizIllegalException(cause);
             }
+
+            @Override
+            public StockResultDTO reserveStock(StockCommandDTO cmd) {
+                log.error("预留商品库存失败，order_id={}", cmd.getOrderId(), cause);
+                // 无法确定商品服务是否已扣减，抛出异常，由调用方按订单归还
+                throw new BizIllegalException(cause);
+            }
+
+            @Override
+            public StockResultDTO cancelStockReservation(StockCommandDTO cmd) {
+                log.error("归还预留的商品库存失败，order_id={}", cmd.getOrderId(), cause);
+                throw new BizIllegalException(cause);
+            }
         };
     }
 }
\ No newline at end of file
@@ -0,0 +1,55 @@
+package com.hmall.api.config;
+
+import com.hmall.api.batch.ItemQueryBatchProperties;
+import com.hmall.api.batch.ItemQueryBatcher;
+import com.hmall.api.client.ItemClient;
+import com.hmall.api.resilience.ResilientItemQuery;
+import com.hmall.api.resilience.ResilientItemQueryProperties;
+import feign.Request;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.openfeign.FeignClientProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 商品服务客户端的增强配置，只在启用了ItemClient的服务中生效
+ */
+@Configuration
+@ConditionalOnBean(ItemClient.class)
+@EnableConfigurationProperties({ItemQueryBatchProperties.class, ResilientItemQueryProperties.class})
+public class ItemClientAutoConfiguration {
+
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnMissingBean
+    public ResilientItemQuery resilientItemQuery(ItemClient itemClient, ResilientItemQueryProperties properties) {
+        return new ResilientItemQuery(itemClient, properties);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnMissingBean
+    public ItemQueryBatcher itemQueryBatcher(ResilientItemQuery resilientItemQuery, ItemQueryBatchProperties properties,
+                                             ObjectProvider<FeignClientProperties> feignProperties) {
+        return new ItemQueryBatcher(resilientItemQuery, properties, itemClientReadTimeout(feignProperties.getIfAvailable()));
+    }
+
+    /**
+     * 商品服务客户端的Feign读取超时，没有配置时使用Feign的默认值
+     */
+    private static Duration itemClientReadTimeout(FeignClientProperties properties) {
+        if (properties != null) {
+            for (String name : List.of("item-service", properties.getDefaultConfig())) {
+                FeignClientProperties.FeignClientConfiguration config = properties.getConfig().get(name);
+                if (config != null && config.getReadTimeout() != null) {
+                    return Duration.ofMillis(config.getReadTimeout());
+                }
+            }
+        }
+        return Duration.ofMillis(new Request.Options().readTimeoutMillis());
+    }
+}
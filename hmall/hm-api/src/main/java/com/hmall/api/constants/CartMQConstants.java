@@ -0,0 +1,11 @@
+package com.hmall.api.constants;
+
+public interface CartMQConstants {
+
+    // 购物车交换机
+    String EXCHANGE_NAME = "cart.direct";
+    // 购物车清理队列
+    String CLEAN_QUEUE_NAME = "cart.clean.queue";
+    // 下单后清理购物车路由key
+    String CLEAN_KEY = "cart.clean";
+}
@@ -0,0 +1,11 @@
+package com.hmall.api.constants;
+
+public interface ItemMQConstants {
+
+    // 商品交换机
+    String EXCHANGE_NAME = "item.topic";
+    // 商品变更路由key
+    String CHANGE_KEY = "item.change";
+    // 商品销量增加路由key
+    String SOLD_KEY = "item.sold";
+}
@@ -0,0 +1,19 @@
+package com.hmall.api.constants;
+
+public interface StockMQConstants {
+
+    // 库存交换机
+    String EXCHANGE_NAME = "stock.direct";
+    // 预留库存命令队列
+    String RESERVE_QUEUE_NAME = "item.stock.reserve.queue";
+    // 预留库存命令路由key
+    String RESERVE_KEY = "stock.reserve";
+    // 归还库存命令队列
+    String RESTORE_QUEUE_NAME = "item.stock.restore.queue";
+    // 归还库存命令路由key
+    String RESTORE_KEY = "stock.restore";
+    // 库存命令处理结果队列
+    String RESULT_QUEUE_NAME = "trade.stock.result.queue";
+    // 库存命令处理结果路由key
+    String RESULT_KEY = "stock.result";
+}
@@ -0,0 +1,22 @@
+package com.hmall.api.dto;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "下单后清理购物车消息")
+public class CartCleanDTO {
+    @ApiModelProperty("已提交的订单id，用于消息去重")
+    private Long orderId;
+    @ApiModelProperty("下单用户id")
+    private Long userId;
+    @ApiModelProperty("需要从购物车中删除的商品id")
+    private List<Long> itemIds;
+}
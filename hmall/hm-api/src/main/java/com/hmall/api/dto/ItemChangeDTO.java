@@ -0,0 +1,21 @@
+package com.hmall.api.dto;
+
+import com.hmall.api.enums.ItemChangeType;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "商品变更消息")
+public class ItemChangeDTO {
+    @ApiModelProperty("变更的商品id集合")
+    private List<Long> ids;
+    @ApiModelProperty("变更类型")
+    private ItemChangeType type;
+}
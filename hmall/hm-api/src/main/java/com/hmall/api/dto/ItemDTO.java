@@ -1,5 +1,6 @@
 package com.hmall.api.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
 import lombok.Data;
@@ -35,4 +36,7 @@ public class ItemDTO {
     private Boolean isAD;
     @ApiModelProperty("商品状态 1-正常，2-下架，3-删除")
     private Integer status;
+    @ApiModelProperty("是否为商品服务不可用时返回的旧数据，正常查询时为空")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean stale;
 }
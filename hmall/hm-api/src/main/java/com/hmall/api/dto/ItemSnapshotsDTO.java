@@ -0,0 +1,48 @@
+package com.hmall.api.dto;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 商品快照，只包含价格、库存、状态，按列存储：第i个商品的各字段分别位于各数组的第i个位置。
+ * 相比ItemDTO列表，省去了重复的字段名和用不到的字段，200个商品序列化后只有几KB
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "商品快照，按列存储")
+public class ItemSnapshotsDTO {
+    @ApiModelProperty("商品id")
+    private long[] ids;
+    @ApiModelProperty("价格（分）")
+    private int[] prices;
+    @ApiModelProperty("库存数量")
+    private int[] stocks;
+    @ApiModelProperty("商品状态 1-正常，2-下架，3-删除")
+    private int[] statuses;
+
+    public static ItemSnapshotsDTO empty() {
+        return new ItemSnapshotsDTO(new long[0], new int[0], new int[0], new int[0]);
+    }
+
+    public int size() {
+        return ids == null ? 0 : ids.length;
+    }
+
+    /**
+     * 商品id与其所在位置的映射
+     */
+    public Map<Long, Integer> positions() {
+        Map<Long, Integer> positions = new HashMap<>(size() * 2);
+        for (int i = 0; i < size(); i++) {
+            positions.put(ids[i], i);
+        }
+        return positions;
+    }
+}
@@ -0,0 +1,20 @@
+package com.hmall.api.dto;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "商品销量增加消息")
+public class ItemSoldDTO {
+    @ApiModelProperty("支付成功的订单id")
+    private Long orderId;
+    @ApiModelProperty("各商品增加的销量")
+    private List<OrderDetailDTO> items;
+}
@@ -0,0 +1,20 @@
+package com.hmall.api.dto;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "预留或归还库存的命令消息")
+public class StockCommandDTO {
+    @ApiModelProperty("订单id，同一订单的命令只会执行一次")
+    private Long orderId;
+    @ApiModelProperty("各商品的数量")
+    private List<OrderDetailDTO> items;
+}
@@ -0,0 +1,31 @@
+package com.hmall.api.dto;
+
+import com.hmall.api.enums.StockAction;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "库存命令的处理结果消息")
+public class StockResultDTO {
+    @ApiModelProperty("订单id")
+    private Long orderId;
+    @ApiModelProperty("处理的命令")
+    private StockAction action;
+    @ApiModelProperty("是否成功")
+    private Boolean success;
+    @ApiModelProperty("失败原因")
+    private String reason;
+
+    public static StockResultDTO success(Long orderId, StockAction action) {
+        return new StockResultDTO(orderId, action, true, null);
+    }
+
+    public static StockResultDTO fail(Long orderId, StockAction action, String reason) {
+        return new StockResultDTO(orderId, action, false, reason);
+    }
+}
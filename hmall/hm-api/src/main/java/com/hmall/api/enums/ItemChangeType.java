@@ -0,0 +1,20 @@
+package com.hmall.api.enums;
+
+import lombok.Getter;
+
+@Getter
+public enum ItemChangeType {
+    SAVE(1, "新增商品"),
+    UPDATE(2, "修改商品信息"),
+    STATUS(3, "修改商品状态"),
+    DELETE(4, "删除商品"),
+    STOCK(5, "库存变更"),
+    ;
+    private final int value;
+    private final String desc;
+
+    ItemChangeType(int value, String desc) {
+        this.value = value;
+        this.desc = desc;
+    }
+}
@@ -0,0 +1,17 @@
+package com.hmall.api.enums;
+
+import lombok.Getter;
+
+@Getter
+public enum StockAction {
+    RESERVE(1, "预留库存"),
+    RESTORE(2, "归还库存"),
+    ;
+    private final int value;
+    private final String desc;
+
+    StockAction(int value, String desc) {
+        this.value = value;
+        this.desc = desc;
+    }
+}
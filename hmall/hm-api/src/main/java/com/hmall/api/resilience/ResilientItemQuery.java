@@ -0,0 +1,138 @@
+package com.hmall.api.resilience;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hmall.api.client.ItemClient;
+import com.hmall.api.dto.ItemDTO;
+import com.hmall.common.utils.BeanUtils;
+import com.hmall.common.utils.CollUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 带降级旧数据的商品查询，对{@link ItemClient#queryItemByIds(Collection)}的装饰。
+ * <p>
+ * 每次查询成功都记住各商品的最新数据。查询的商品都有旧数据时，远程调用交给有界线程池执行，
+ * 调用方只在时间预算内等待：调用失败、超时或线程池已满时，返回标记了stale的旧数据，
+ * 超时的调用在后台继续完成并更新旧数据。有商品没有旧数据时，只能同步等待远程调用完成，
+ * 失败时返回已有旧数据的部分，一个都没有才抛出异常。
+ * <p>
+ * 远程调用成功时返回的是原始对象，可能被缓存共享，调用者不能修改它们。
+ */
+@Slf4j
+public class ResilientItemQuery {
+
+    private final ItemClient itemClient;
+    private final ResilientItemQueryProperties properties;
+    private final Cache<Long, ItemDTO> lastGood;
+    private final ThreadPoolExecutor executor;
+
+    public ResilientItemQuery(ItemClient itemClient, ResilientItemQueryProperties properties) {
+        this.itemClient = itemClient;
+        this.properties = properties;
+        this.lastGood = Caffeine.newBuilder()
+                .maximumSize(properties.getSize())
+                .expireAfterWrite(properties.getMaxStale())
+                .build();
+        this.executor = new ThreadPoolExecutor(properties.getThreads(), properties.getThreads(),
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(properties.getQueueSize()),
+                ThreadFactoryBuilder.create().setNamePrefix("item-query-refresh-").setDaemon(true).build(),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 根据id批量查询商品，商品服务不可用时返回旧数据
+     *
+     * @param ids 商品id列表
+     * @return 商品信息列表，旧数据的stale字段为true
+     */
+    public List<ItemDTO> queryItemByIds(Collection<Long> ids) {
+        if (CollUtils.isEmpty(ids)) {
+            return CollUtils.emptyList();
+        }
+        if (!Boolean.TRUE.equals(properties.getEnabled())) {
+            return itemClient.queryItemByIds(ids);
+        }
+        Set<Long> keys = new LinkedHashSet<>(ids);
+        Map<Long, ItemDTO> known = lastGood.getAllPresent(keys);
+        // 1.有商品没有旧数据，同步调用
+        if (known.size() < keys.size()) {
+            try {
+                return remember(keys, itemClient.queryItemByIds(keys));
+            } catch (RuntimeException e) {
+                if (known.isEmpty()) {
+                    throw e;
+                }
+                log.warn("查询商品失败，返回{}个商品的旧数据，另有{}个商品没有旧数据", known.size(), keys.size() - known.size());
+                return stale(keys, known);
+            }
+        }
+        // 2.都有旧数据，在时间预算内等待
+        CompletableFuture<List<ItemDTO>> future;
+        try {
+            future = CompletableFuture.supplyAsync(() -> remember(keys, itemClient.queryItemByIds(keys)), executor);
+        } catch (RejectedExecutionException e) {
+            log.warn("商品查询的后台线程已满，返回旧数据，商品id：{}", keys);
+            return stale(keys, known);
+        }
+        try {
+            return future.get(properties.getTimeBudget().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            log.warn("查询商品超过{}ms，先返回旧数据，后台继续刷新，商品id：{}", properties.getTimeBudget().toMillis(), keys);
+        } catch (ExecutionException e) {
+            log.warn("查询商品失败，返回旧数据，商品id：{}，原因：{}", keys, e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return stale(keys, known);
+    }
+
+    /**
+     * 记住查询成功的商品，查不到的商品已不存在，清除其旧数据
+     */
+    private List<ItemDTO> remember(Set<Long> ids, List<ItemDTO> items) {
+        if (items == null) {
+            items = CollUtils.emptyList();
+        }
+        for (ItemDTO item : items) {
+            lastGood.put(item.getId(), item);
+        }
+        if (items.size() < ids.size()) {
+            Set<Long> missing = new LinkedHashSet<>(ids);
+            items.forEach(item -> missing.remove(item.getId()));
+            lastGood.invalidateAll(missing);
+        }
+        return items;
+    }
+
+    private static List<ItemDTO> stale(Set<Long> ids, Map<Long, ItemDTO> known) {
+        List<ItemDTO> result = new ArrayList<>(known.size());
+        for (Long id : ids) {
+            ItemDTO item = known.get(id);
+            if (item != null) {
+                ItemDTO copy = BeanUtils.copyBean(item, ItemDTO.class);
+                copy.setStale(true);
+                result.add(copy);
+            }
+        }
+        return result;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,35 @@
+package com.hmall.api.resilience;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "hm.item-client.stale")
+public class ResilientItemQueryProperties {
+    /**
+     * 是否在商品查询失败或超时时返回最近一次查询成功的旧数据
+     */
+    private Boolean enabled = true;
+    /**
+     * 最多记住的商品数量，超出后淘汰最少使用的
+     */
+    private Long size = 10000L;
+    /**
+     * 旧数据的最长保留时长，超过后不再作为降级数据返回
+     */
+    private Duration maxStale = Duration.ofMinutes(30);
+    /**
+     * 有旧数据可用时，等待远程调用的最长时长，超时后先返回旧数据，远程调用在后台继续完成并更新旧数据
+     */
+    private Duration timeBudget = Duration.ofMillis(300);
+    /**
+     * 执行远程调用的线程数，即同时在途的后台刷新数量上限
+     */
+    private Integer threads = 4;
+    /**
+     * 等待执行的远程调用数量上限，队列已满时直接返回旧数据
+     */
+    private Integer queueSize = 100;
+}
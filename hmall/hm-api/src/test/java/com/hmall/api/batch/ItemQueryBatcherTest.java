@@ -0,0 +1,70 @@
+package com.hmall.api.batch;
+
+import com.hmall.api.dto.ItemDTO;
+import com.hmall.api.resilience.ResilientItemQuery;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ItemQueryBatcherTest {
+
+    private final ResilientItemQuery itemQuery = mock(ResilientItemQuery.class);
+    private ItemQueryBatcher batcher;
+
+    @AfterEach
+    void tearDown() {
+        if (batcher != null) {
+            batcher.shutdown();
+        }
+    }
+
+    @Test
+    void testFullBatchIsNotFailedByItsWindowTimer() throws Exception {
+        // 1个工作线程、1个队列位置，每批最多2个商品
+        ItemQueryBatchProperties properties = new ItemQueryBatchProperties();
+        properties.setWindow(Duration.ofMillis(50));
+        properties.setMaxBatchSize(2);
+        properties.setThreads(1);
+        properties.setQueueSize(1);
+        batcher = new ItemQueryBatcher(itemQuery, properties, Duration.ofSeconds(5));
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(itemQuery.queryItemByIds(anyCollection())).thenAnswer(inv -> {
+            Collection<Long> ids = inv.getArgument(0);
+            if (ids.contains(1L)) {
+                blocked.countDown();
+                release.await();
+            }
+            return ids.stream().map(ItemQueryBatcherTest::item).collect(Collectors.toList());
+        });
+
+        // 第一批占住工作线程，第二批占住队列
+        CompletableFuture<List<ItemDTO>> first = CompletableFuture.supplyAsync(() -> batcher.queryItemByIds(List.of(1L, 2L)));
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        CompletableFuture<List<ItemDTO>> second = CompletableFuture.supplyAsync(() -> batcher.queryItemByIds(List.of(3L, 4L)));
+        // 两个批次的窗口都已结束，定时任务不能再提交，更不能让排队中的批次失败
+        Thread.sleep(200);
+        release.countDown();
+
+        assertEquals(2, first.get(5, TimeUnit.SECONDS).size());
+        assertEquals(2, second.get(5, TimeUnit.SECONDS).size());
+        verify(itemQuery, times(2)).queryItemByIds(anyCollection());
+    }
+
+    private static ItemDTO item(Long id) {
+        ItemDTO item = new ItemDTO();
+        item.setId(id);
+        return item;
+    }
+}
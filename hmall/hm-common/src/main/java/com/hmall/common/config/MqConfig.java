@@ -1,11 +1,13 @@
 package com.hmall.common.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hmall.common.utils.RabbitMqHelper;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -27,4 +29,10 @@ public class MqConfig {
     public MessageConverter messageConverter(){
         return new Jackson2JsonMessageConverter();
     }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public RabbitMqHelper rabbitMqHelper(RabbitTemplate rabbitTemplate){
+        return new RabbitMqHelper(rabbitTemplate);
+    }
 }
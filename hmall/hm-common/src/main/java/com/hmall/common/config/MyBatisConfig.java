@@ -4,13 +4,19 @@ import com.baomidou.mybatisplus.annotation.DbType;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.baomidou.mybatisplus.extension.plugins.MybatisPlusInterceptor;
 import com.baomidou.mybatisplus.extension.plugins.inner.PaginationInnerInterceptor;
+import com.hmall.common.utils.PageCounter;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import javax.sql.DataSource;
+
 @Configuration
 @ConditionalOnClass({MybatisPlusInterceptor.class, BaseMapper.class})
+@EnableConfigurationProperties(PageCountProperties.class)
 public class MyBatisConfig {
     @Bean
     @ConditionalOnMissingBean
@@ -22,4 +28,10 @@ public class MyBatisConfig {
         interceptor.addInnerInterceptor(paginationInnerInterceptor);
         return interceptor;
     }
-}
\ No newline at end of file
+
+    @Bean
+    @ConditionalOnMissingBean
+    public PageCounter pageCounter(PageCountProperties properties, ObjectProvider<DataSource> dataSource) {
+        return new PageCounter(properties, dataSource.getIfAvailable());
+    }
+}
@@ -0,0 +1,34 @@
+package com.hmall.common.config;
+
+import com.hmall.common.domain.CountStrategy;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "hm.page.count")
+public class PageCountProperties {
+    /**
+     * 未单独配置的接口使用的统计策略
+     */
+    private CountStrategy defaultStrategy = CountStrategy.EXACT;
+    /**
+     * 各接口的统计策略，key为接口标识
+     */
+    private Map<String, CountStrategy> endpoints = new HashMap<>();
+    /**
+     * 总条数的缓存时长，CACHED、ESTIMATED策略使用
+     */
+    private Duration cacheTtl = Duration.ofSeconds(60);
+    /**
+     * 最多缓存的查询条件数量
+     */
+    private Long cacheSize = 10000L;
+
+    public CountStrategy strategyOf(String endpoint) {
+        return endpoints.getOrDefault(endpoint, defaultStrategy);
+    }
+}
@@ -0,0 +1,23 @@
+package com.hmall.common.domain;
+
+/**
+ * 分页查询统计总条数的策略
+ */
+public enum CountStrategy {
+    /**
+     * 每次查询都执行COUNT，结果精确
+     */
+    EXACT,
+    /**
+     * 按规范化后的查询条件缓存COUNT结果，缓存有效期内不再统计
+     */
+    CACHED,
+    /**
+     * 无查询条件时使用表统计信息中的估算行数，有查询条件时同CACHED
+     */
+    ESTIMATED,
+    /**
+     * 不统计总条数，只返回能判断是否有下一页的下限值
+     */
+    NONE
+}
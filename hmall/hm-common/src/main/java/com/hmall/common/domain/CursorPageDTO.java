@@ -0,0 +1,35 @@
+package com.hmall.common.domain;
+
+import com.hmall.common.utils.BeanUtils;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 游标分页结果。游标分页不统计总条数，total和pages为空
+ */
+@Data
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = true)
+public class CursorPageDTO<T> extends PageDTO<T> {
+    /**
+     * 查询下一页的游标，没有下一页时为空
+     */
+    private String nextCursor;
+    /**
+     * 是否还有下一页
+     */
+    private Boolean hasMore;
+
+    public CursorPageDTO(List<T> list, String nextCursor, Boolean hasMore) {
+        super(null, null, list);
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+    }
+
+    public <R> CursorPageDTO<R> convert(Class<R> clazz) {
+        return new CursorPageDTO<>(BeanUtils.copyList(list, clazz), nextCursor, hasMore);
+    }
+}
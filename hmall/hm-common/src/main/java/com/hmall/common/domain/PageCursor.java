@@ -0,0 +1,89 @@
+package com.hmall.common.domain;
+
+import cn.hutool.core.codec.Base64;
+import cn.hutool.core.convert.Convert;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.hmall.common.exception.BadRequestException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+/**
+ * 分页游标，记录上一页最后一条数据的排序字段值和id，对前端来说是不透明的字符串
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PageCursor {
+    /**
+     * 排序字段的值，按id排序时为空
+     */
+    private String value;
+    /**
+     * 数据id，排序字段值相同时用于区分先后
+     */
+    private Long id;
+
+    /**
+     * 生成游标字符串
+     *
+     * @param value 排序字段的值
+     * @param id    数据id
+     * @return 游标
+     */
+    public static String encode(Object value, Long id) {
+        JSONObject json = new JSONObject();
+        if (value != null) {
+            json.set("v", value.toString());
+        }
+        json.set("id", id);
+        return Base64.encodeUrlSafe(json.toString(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 解析游标字符串
+     *
+     * @param cursor 游标
+     * @return 游标，cursor为空时返回null
+     * @throws BadRequestException 游标格式错误
+     */
+    public static PageCursor decode(String cursor) {
+        if (StrUtil.isBlank(cursor)) {
+            return null;
+        }
+        try {
+            JSONObject json = JSONUtil.parseObj(Base64.decodeStr(cursor, StandardCharsets.UTF_8));
+            Long id = json.getLong("id");
+            if (id == null) {
+                throw new BadRequestException("无效的分页游标");
+            }
+            return new PageCursor(json.getStr("v"), id);
+        } catch (BadRequestException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new BadRequestException("无效的分页游标", e);
+        }
+    }
+
+    /**
+     * 把排序字段的值转为指定类型
+     */
+    public <V> V getValue(Class<V> type) {
+        if (value == null) {
+            throw new BadRequestException("无效的分页游标");
+        }
+        try {
+            if (LocalDateTime.class.equals(type)) {
+                return type.cast(LocalDateTime.parse(value));
+            }
+            return Convert.convert(type, value);
+        } catch (Exception e) {
+            throw new BadRequestException("无效的分页游标", e);
+        }
+    }
+}
@@ -27,6 +27,8 @@ public class PageQuery {
     private Boolean isAsc = true;
     @ApiModelProperty("排序方式")
     private String sortBy;
+    @ApiModelProperty("分页游标，游标分页时使用，为空表示查询第一页，之后传入上一页返回的nextCursor")
+    private String cursor;
 
     public int from(){
         return (pageNo - 1) * pageSize;
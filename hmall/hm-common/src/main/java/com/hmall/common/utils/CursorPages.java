@@ -0,0 +1,89 @@
+package com.hmall.common.utils;
+
+import com.baomidou.mybatisplus.core.toolkit.support.SFunction;
+import com.baomidou.mybatisplus.extension.conditions.query.LambdaQueryChainWrapper;
+import com.hmall.common.domain.CursorPageDTO;
+import com.hmall.common.domain.PageCursor;
+import com.hmall.common.domain.PageQuery;
+
+import java.util.List;
+
+/**
+ * 游标分页（keyset分页）工具。
+ * <p>
+ * 以上一页最后一条数据的排序字段值和id作为条件查询下一页，
+ * 例如 WHERE (update_time &lt; ? OR (update_time = ? AND id &lt; ?)) ORDER BY update_time DESC, id DESC LIMIT n，
+ * 配合排序字段上的索引，无论翻到第几页，代价都与第一页相同，并且不需要统计总条数。
+ * 排序字段不能为NULL。
+ */
+public class CursorPages {
+
+    private CursorPages() {
+    }
+
+    /**
+     * 按id游标分页查询，适用于id随时间递增的表
+     *
+     * @param wrapper  查询条件
+     * @param query    分页参数，使用其中的pageSize和cursor
+     * @param idColumn id字段
+     * @param asc      是否升序
+     * @return 分页结果
+     */
+    public static <T> CursorPageDTO<T> page(LambdaQueryChainWrapper<T> wrapper, PageQuery query,
+                                            SFunction<T, Long> idColumn, boolean asc) {
+        PageCursor cursor = PageCursor.decode(query.getCursor());
+        if (cursor != null) {
+            if (asc) {
+                wrapper.gt(idColumn, cursor.getId());
+            } else {
+                wrapper.lt(idColumn, cursor.getId());
+            }
+        }
+        wrapper.orderBy(true, asc, idColumn);
+        return fetch(wrapper, query, null, idColumn);
+    }
+
+    /**
+     * 按排序字段+id游标分页查询
+     *
+     * @param wrapper    查询条件
+     * @param query      分页参数，使用其中的pageSize和cursor
+     * @param sortColumn 排序字段
+     * @param sortType   排序字段的类型
+     * @param idColumn   id字段，排序字段值相同时按id排序
+     * @param asc        是否升序
+     * @return 分页结果
+     */
+    public static <T, V> CursorPageDTO<T> page(LambdaQueryChainWrapper<T> wrapper, PageQuery query,
+                                               SFunction<T, V> sortColumn, Class<V> sortType,
+                                               SFunction<T, Long> idColumn, boolean asc) {
+        PageCursor cursor = PageCursor.decode(query.getCursor());
+        if (cursor != null) {
+            V value = cursor.getValue(sortType);
+            Long id = cursor.getId();
+            if (asc) {
+                wrapper.and(w -> w.gt(sortColumn, value).or(o -> o.eq(sortColumn, value).gt(idColumn, id)));
+            } else {
+                wrapper.and(w -> w.lt(sortColumn, value).or(o -> o.eq(sortColumn, value).lt(idColumn, id)));
+            }
+        }
+        wrapper.orderBy(true, asc, sortColumn).orderBy(true, asc, idColumn);
+        return fetch(wrapper, query, sortColumn, idColumn);
+    }
+
+    private static <T, V> CursorPageDTO<T> fetch(LambdaQueryChainWrapper<T> wrapper, PageQuery query,
+                                                 SFunction<T, V> sortColumn, SFunction<T, Long> idColumn) {
+        int size = query.getPageSize();
+        // 多查一条，用于判断是否还有下一页
+        List<T> records = wrapper.last("LIMIT " + (size + 1)).list();
+        boolean hasMore = records.size() > size;
+        if (!hasMore) {
+            return new CursorPageDTO<>(records, null, false);
+        }
+        records = records.subList(0, size);
+        T last = records.get(size - 1);
+        String next = PageCursor.encode(sortColumn == null ? null : sortColumn.apply(last), idColumn.apply(last));
+        return new CursorPageDTO<>(records, next, true);
+    }
+}
@@ -0,0 +1,167 @@
+package com.hmall.common.utils;
+
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.baomidou.mybatisplus.core.conditions.AbstractWrapper;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hmall.common.config.PageCountProperties;
+import com.hmall.common.domain.CountStrategy;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 分页查询的总条数统计。
+ * <p>
+ * 分页插件默认每次分页都会执行一次COUNT，对于大表或复杂条件，COUNT的代价往往高于分页查询本身。
+ * 这里按接口配置的{@link CountStrategy}决定总条数的来源：精确统计、按查询条件缓存、表统计信息估算，或者不统计。
+ */
+@Slf4j
+public class PageCounter {
+
+    private static final String TABLE_ROWS_SQL =
+            "SELECT TABLE_ROWS FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?";
+
+    private final PageCountProperties properties;
+    private final DataSource dataSource;
+    /**
+     * 总条数缓存，key为接口标识+规范化后的查询条件
+     */
+    private final Cache<String, Long> countCache;
+
+    public PageCounter(PageCountProperties properties, DataSource dataSource) {
+        this.properties = properties;
+        this.dataSource = dataSource;
+        this.countCache = Caffeine.newBuilder()
+                .expireAfterWrite(properties.getCacheTtl())
+                .maximumSize(properties.getCacheSize())
+                .build();
+    }
+
+    /**
+     * 查询指定接口使用的统计策略
+     *
+     * @param endpoint 接口标识
+     * @return 统计策略
+     */
+    public CountStrategy strategyOf(String endpoint) {
+        return properties.strategyOf(endpoint);
+    }
+
+    /**
+     * 按接口配置的统计策略分页查询
+     *
+     * @param endpoint 接口标识，对应配置hm.page.count.endpoints中的key
+     * @param service  实体对应的service
+     * @param page     分页参数
+     * @param wrapper  查询条件，可以为null
+     * @return 分页结果
+     */
+    public <T> Page<T> page(String endpoint, IService<T> service, Page<T> page, Wrapper<T> wrapper) {
+        CountStrategy strategy = strategyOf(endpoint);
+        if (strategy == CountStrategy.EXACT) {
+            return service.page(page, wrapper);
+        }
+        // 1.不统计，根据本页数据量推算总条数的下限
+        if (strategy == CountStrategy.NONE) {
+            page.setSearchCount(false);
+            service.page(page, wrapper);
+            page.setTotal(lowerBoundTotal(page.offset(), page.getSize(), page.getRecords().size()));
+            return page;
+        }
+        // 2.无查询条件时使用表统计信息估算
+        if (strategy == CountStrategy.ESTIMATED && (wrapper == null || wrapper.isEmptyOfWhere())) {
+            Long estimated = estimateRows(service.getEntityClass());
+            if (estimated != null) {
+                page.setSearchCount(false);
+                service.page(page, wrapper);
+                // 估算值可能小于实际已查到的数据量
+                page.setTotal(Math.max(estimated, page.offset() + page.getRecords().size()));
+                return page;
+            }
+        }
+        // 3.按查询条件缓存统计结果
+        String key = endpoint + ":" + normalize(wrapper);
+        Long total = countCache.getIfPresent(key);
+        if (total == null) {
+            service.page(page, wrapper);
+            countCache.put(key, page.getTotal());
+            return page;
+        }
+        page.setSearchCount(false);
+        service.page(page, wrapper);
+        page.setTotal(total);
+        return page;
+    }
+
+    /**
+     * 根据本页返回的数据量推算总条数的下限：本页满了就认为至少还有一条，保证前端能翻到下一页
+     *
+     * @param offset   本页第一条数据的偏移量
+     * @param size     每页大小
+     * @param returned 本页实际返回的数据量
+     * @return 总条数下限
+     */
+    public static long lowerBoundTotal(long offset, long size, long returned) {
+        return offset + returned + (returned >= size ? 1 : 0);
+    }
+
+    private Long estimateRows(Class<?> entityClass) {
+        TableInfo tableInfo = entityClass == null ? null : TableInfoHelper.getTableInfo(entityClass);
+        if (tableInfo == null || dataSource == null) {
+            return null;
+        }
+        String key = "table:" + tableInfo.getTableName();
+        Long rows = countCache.getIfPresent(key);
+        if (rows != null) {
+            return rows;
+        }
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(TABLE_ROWS_SQL)) {
+            ps.setString(1, tableInfo.getTableName());
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                rows = rs.getLong(1);
+            }
+        } catch (SQLException e) {
+            log.warn("查询表{}的估算行数失败，改为统计总条数", tableInfo.getTableName(), e);
+            return null;
+        }
+        countCache.put(key, rows);
+        return rows;
+    }
+
+    /**
+     * 规范化查询条件：SQL片段中的参数占位符统一替换为?，再按参数出现的顺序拼接参数值
+     */
+    private static String normalize(Wrapper<?> wrapper) {
+        if (wrapper == null) {
+            return "";
+        }
+        String sql = wrapper.getTargetSql();
+        if (!(wrapper instanceof AbstractWrapper)) {
+            return sql;
+        }
+        Map<String, Object> params = ((AbstractWrapper<?, ?, ?>) wrapper).getParamNameValuePairs();
+        // 参数名形如MPGENVAL1、MPGENVAL2，按长度+字典序即为出现顺序
+        List<Object> values = params.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey(Comparator.comparingInt(String::length).thenComparing(Comparator.naturalOrder())))
+                .map(Map.Entry::getValue)
+                .collect(Collectors.toList());
+        return sql + values;
+    }
+}
@@ -3,9 +3,11 @@ package com.hmall.item;
 import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @MapperScan("com.hmall.item.mapper")
+@EnableScheduling
 public class ItemApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,90 @@
+package com.hmall.item.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 可衰减的Count-Min Sketch，用固定大小的计数器矩阵估算每个key的访问频率。
+ * <p>
+ * 每个key在每一行中按不同的哈希落到一个计数器上，估算值取各行计数器的最小值，只会高估、不会低估。
+ * 定期调用{@link #decay()}把所有计数器减半，使估算值反映的是最近一段时间的访问频率。
+ * 计数器的并发修改通过CAS完成，衰减与累加并发执行时个别计数可能丢失，对热点判断没有影响。
+ */
+public class CountMinSketch {
+
+    private final int depth;
+    private final int mask;
+    private final AtomicLongArray counters;
+
+    /**
+     * @param width 每行的计数器数量，会向上取整为2的幂
+     * @param depth 行数，即哈希函数的数量
+     */
+    public CountMinSketch(int width, int depth) {
+        if (width <= 0 || depth <= 0) {
+            throw new IllegalArgumentException("width和depth必须大于0");
+        }
+        int w = Integer.highestOneBit(width);
+        if (w < width) {
+            w <<= 1;
+        }
+        this.depth = depth;
+        this.mask = w - 1;
+        this.counters = new AtomicLongArray(w * depth);
+    }
+
+    /**
+     * 记录一次访问
+     *
+     * @param key key
+     * @return 记录后该key的估算频率
+     */
+    public long add(long key) {
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counters.incrementAndGet(indexOf(row, key)));
+        }
+        return min;
+    }
+
+    /**
+     * 估算key的访问频率
+     *
+     * @param key key
+     * @return 估算频率
+     */
+    public long estimate(long key) {
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counters.get(indexOf(row, key)));
+        }
+        return min;
+    }
+
+    /**
+     * 所有计数器减半
+     */
+    public void decay() {
+        for (int i = 0; i < counters.length(); i++) {
+            long value;
+            do {
+                value = counters.get(i);
+            } while (value != 0 && !counters.compareAndSet(i, value, value >>> 1));
+        }
+    }
+
+    private int indexOf(int row, long key) {
+        return row * (mask + 1) + (int) (mix(key + row * 0x9E3779B97F4A7C15L) & mask);
+    }
+
+    /**
+     * 64位哈希混淆函数（MurmurHash3 fmix64），使相邻的id均匀分散
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93fe53a87e5L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
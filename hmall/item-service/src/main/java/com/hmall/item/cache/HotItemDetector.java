@@ -0,0 +1,68 @@
+package com.hmall.item.cache;
+
+import com.hmall.item.config.ItemCacheProperties;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 热点商品探测器，基于可衰减的Count-Min Sketch统计每个商品最近的访问频率。
+ * <p>
+ * 估算频率达到阈值的商品成为热点商品；每个衰减周期所有频率减半，减半后低于阈值一半的商品不再是热点。
+ * 热点商品的数量有上限，达到上限后新的商品要等已有热点冷却后才能加入。
+ */
+public class HotItemDetector {
+
+    private final ItemCacheProperties.Hot properties;
+    private final CountMinSketch sketch;
+    /**
+     * 当前的热点商品，value为最近一次的估算频率
+     */
+    private final Map<Long, Long> hotItems = new ConcurrentHashMap<>();
+
+    public HotItemDetector(ItemCacheProperties.Hot properties) {
+        this.properties = properties;
+        this.sketch = new CountMinSketch(properties.getSketchWidth(), properties.getSketchDepth());
+    }
+
+    /**
+     * 记录一次商品访问
+     *
+     * @param id 商品id
+     * @return 该商品当前是否为热点商品
+     */
+    public boolean record(Long id) {
+        long frequency = sketch.add(id);
+        if (frequency < properties.getThreshold()) {
+            return hotItems.containsKey(id);
+        }
+        if (hotItems.containsKey(id) || hotItems.size() < properties.getMaxItems()) {
+            hotItems.put(id, frequency);
+            return true;
+        }
+        return false;
+    }
+
+    public boolean isHot(Long id) {
+        return hotItems.containsKey(id);
+    }
+
+    /**
+     * 当前的热点商品及其估算频率
+     */
+    public Map<Long, Long> hotItems() {
+        return Collections.unmodifiableMap(hotItems);
+    }
+
+    /**
+     * 定期衰减访问频率，并移除已经冷却的热点商品
+     */
+    @Scheduled(fixedDelayString = "${hm.item.cache.hot.decay-interval:1000}")
+    public void decay() {
+        sketch.decay();
+        hotItems.replaceAll((id, frequency) -> sketch.estimate(id));
+        hotItems.values().removeIf(frequency -> frequency * 2 < properties.getThreshold());
+    }
+}
@@ -0,0 +1,325 @@
+package com.hmall.item.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hmall.api.dto.ItemDTO;
+import com.hmall.common.utils.CollUtils;
+import com.hmall.item.config.ItemCacheProperties;
+import com.hmall.item.domain.vo.HotItemVO;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 商品的二级读穿缓存：一级为进程内的Caffeine缓存，按数量淘汰并设置过期时间；二级为可选的共享缓存。
+ * <p>
+ * 批量查询时依次查询一级、二级缓存，只有都未命中的商品才会交给loader查询数据库，查询结果回填到两级缓存中。
+ * 缓存中的对象是共享的，调用者不能修改返回的商品。
+ * <p>
+ * 启用热点探测时，被判定为热点的商品会额外放入一个容量很小、过期时间很短的热点缓存，热点缓存不受库存变更的影响，
+ * 避免大促时热点商品的库存频繁变化导致缓存反复失效、大量请求同时穿透到数据库。
+ * <p>
+ * 每次删除缓存都会递增本地版本号，并为被删除的商品留下一段时间的删除标记。查询开始时记录当时的版本号，
+ * 查询结束回填缓存时，若商品在查询期间被删除过，说明查到的可能是旧数据，只返回不回填，避免旧数据被写回缓存。
+ */
+public class ItemCache {
+
+    private final Cache<Long, ItemDTO> local;
+    private final ItemCacheStore shared;
+    private final HotItemDetector detector;
+    private final Cache<Long, ItemDTO> pinned;
+    /**
+     * 本地版本号，每次删除缓存时递增
+     */
+    private final AtomicLong version = new AtomicLong();
+    /**
+     * 删除标记，key为商品id，value为删除时的版本号
+     */
+    private final Cache<Long, Long> tombstones;
+    /**
+     * 最近一次清空本地缓存时的版本号，此前开始的查询都不回填缓存
+     */
+    private volatile long clearedVersion;
+
+    /**
+     * @param properties 缓存配置
+     * @param shared     二级缓存，为null表示不启用
+     */
+    public ItemCache(ItemCacheProperties properties, ItemCacheStore shared) {
+        this(properties, shared, null);
+    }
+
+    /**
+     * @param properties 缓存配置
+     * @param shared     二级缓存，为null表示不启用
+     * @param detector   热点商品探测器，为null表示不启用
+     */
+    public ItemCache(ItemCacheProperties properties, ItemCacheStore shared, HotItemDetector detector) {
+        this.local = Caffeine.newBuilder()
+                .maximumSize(properties.getLocalSize())
+                .expireAfterWrite(properties.getLocalTtl())
+                .build();
+        this.shared = shared;
+        this.detector = detector;
+        this.pinned = Caffeine.newBuilder()
+                .maximumSize(properties.getHot().getMaxItems())
+                .expireAfterWrite(properties.getHot().getPinnedTtl())
+                .build();
+        this.tombstones = Caffeine.newBuilder()
+                .expireAfterWrite(properties.getTombstoneTtl())
+                .build();
+    }
+
+    /**
+     * 根据id查询商品
+     *
+     * @param id     商品id
+     * @param loader 缓存未命中时，根据id批量查询商品的函数
+     * @return 商品，不存在时返回null
+     */
+    public ItemDTO get(Long id, Function<Collection<Long>, List<ItemDTO>> loader) {
+        long readVersion = version.get();
+        if (detector != null && detector.record(id)) {
+            // 热点商品未命中热点缓存时，同一商品的并发请求只有一个会继续向下查询
+            ItemDTO item = pinned.get(id, key -> first(resolve(Set.of(key), new HashMap<>(), loader, readVersion)));
+            if (item != null && !isFresh(id, readVersion)) {
+                pinned.asMap().remove(id, item);
+            }
+            return item;
+        }
+        return first(resolve(Set.of(id), new HashMap<>(), loader, readVersion));
+    }
+
+    /**
+     * 根据id批量查询商品
+     *
+     * @param ids    商品id集合
+     * @param loader 缓存未命中时，根据id批量查询商品的函数
+     * @return 商品列表，按ids的顺序排列，不存在的商品会被忽略
+     */
+    public List<ItemDTO> getAll(Collection<Long> ids, Function<Collection<Long>, List<ItemDTO>> loader) {
+        if (CollUtils.isEmpty(ids)) {
+            return CollUtils.emptyList();
+        }
+        Set<Long> keys = new LinkedHashSet<>(ids);
+        long readVersion = version.get();
+        // 1.查询热点缓存
+        List<Long> hotKeys = recordAccess(keys);
+        Map<Long, ItemDTO> found = new HashMap<>(pinned.getAllPresent(hotKeys));
+        // 2.查询一级、二级缓存和数据库
+        List<ItemDTO> result = resolve(keys, found, loader, readVersion);
+        // 3.热点商品放入热点缓存，已存在的不覆盖，以免延长其过期时间
+        for (Long id : hotKeys) {
+            ItemDTO item = found.get(id);
+            if (item != null && isFresh(id, readVersion)) {
+                pinned.asMap().putIfAbsent(id, item);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 只查询缓存中已有的商品，不查询数据库，也不回填缓存
+     *
+     * @param ids 商品id集合
+     * @return 缓存中的商品，key为商品id
+     */
+    public Map<Long, ItemDTO> getAllPresent(Collection<Long> ids) {
+        if (CollUtils.isEmpty(ids)) {
+            return CollUtils.emptyMap();
+        }
+        Set<Long> keys = new LinkedHashSet<>(ids);
+        Map<Long, ItemDTO> found = new HashMap<>(pinned.getAllPresent(keys));
+        if (found.size() < keys.size()) {
+            found.putAll(local.getAllPresent(missing(keys, found)));
+        }
+        if (shared != null && found.size() < keys.size()) {
+            found.putAll(shared.getAll(missing(keys, found)));
+        }
+        return found;
+    }
+
+    /**
+     * 依次查询一级缓存、二级缓存和数据库
+     *
+     * @param keys   商品id集合
+     * @param found  已经查到的商品，查询结果也会放入其中
+     * @param loader      根据id批量查询商品的函数
+     * @param readVersion 查询开始时的版本号，查询期间被删除过的商品不回填缓存
+     * @return 商品列表，按keys的顺序排列
+     */
+    private List<ItemDTO> resolve(Set<Long> keys, Map<Long, ItemDTO> found,
+                                  Function<Collection<Long>, List<ItemDTO>> loader, long readVersion) {
+        // 1.查询一级缓存
+        if (found.size() < keys.size()) {
+            found.putAll(local.getAllPresent(missing(keys, found)));
+        }
+        // 2.查询二级缓存
+        if (shared != null && found.size() < keys.size()) {
+            Map<Long, ItemDTO> hits = shared.getAll(missing(keys, found));
+            local.putAll(fresh(hits, readVersion));
+            found.putAll(hits);
+        }
+        // 3.查询数据库
+        if (found.size() < keys.size()) {
+            Map<Long, ItemDTO> loaded = new HashMap<>();
+            for (ItemDTO item : loader.apply(missing(keys, found))) {
+                loaded.put(item.getId(), item);
+            }
+            if (!loaded.isEmpty()) {
+                Map<Long, ItemDTO> fresh = fresh(loaded, readVersion);
+                local.putAll(fresh);
+                if (shared != null && !fresh.isEmpty()) {
+                    shared.putAll(fresh);
+                }
+                found.putAll(loaded);
+            }
+        }
+        // 4.按查询顺序返回
+        List<ItemDTO> result = new ArrayList<>(keys.size());
+        for (Long id : keys) {
+            ItemDTO item = found.get(id);
+            if (item != null) {
+                result.add(item);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 删除各级缓存中的商品
+     *
+     * @param ids 商品id集合
+     */
+    public void evictAll(Collection<Long> ids) {
+        evictAll(ids, false);
+    }
+
+    /**
+     * 删除各级缓存中的商品
+     *
+     * @param ids        商品id集合
+     * @param keepPinned 是否保留热点缓存，只有库存变化时才可以保留，热点缓存过期后自然会读到新的库存
+     */
+    public void evictAll(Collection<Long> ids, boolean keepPinned) {
+        if (CollUtils.isEmpty(ids)) {
+            return;
+        }
+        evictLocal(ids, keepPinned);
+        if (shared != null) {
+            shared.evictAll(ids);
+        }
+    }
+
+    /**
+     * 只删除本实例的缓存，用于处理其它实例广播的缓存失效，二级缓存已由发起方删除
+     *
+     * @param ids        商品id集合
+     * @param keepPinned 是否保留热点缓存
+     */
+    public void evictLocal(Collection<Long> ids, boolean keepPinned) {
+        if (CollUtils.isEmpty(ids)) {
+            return;
+        }
+        // 先留下删除标记，再删除缓存，保证正在进行的查询不会回填旧数据
+        long v = version.incrementAndGet();
+        for (Long id : ids) {
+            tombstones.put(id, v);
+        }
+        if (!keepPinned) {
+            pinned.invalidateAll(ids);
+        }
+        local.invalidateAll(ids);
+    }
+
+    /**
+     * 清空本实例的缓存，错过了其它实例的失效广播时使用
+     */
+    public void clearLocal() {
+        clearedVersion = version.incrementAndGet();
+        local.invalidateAll();
+        pinned.invalidateAll();
+    }
+
+    /**
+     * 查询当前的热点商品，按访问频率倒序排列
+     *
+     * @return 热点商品，未启用热点探测时为空
+     */
+    public List<HotItemVO> hotItems() {
+        if (detector == null) {
+            return CollUtils.emptyList();
+        }
+        List<HotItemVO> list = new ArrayList<>();
+        detector.hotItems().forEach((id, frequency) -> {
+            HotItemVO vo = new HotItemVO();
+            vo.setItemId(id);
+            vo.setFrequency(frequency);
+            vo.setPinned(pinned.getIfPresent(id) != null);
+            list.add(vo);
+        });
+        list.sort(Comparator.comparing(HotItemVO::getFrequency).reversed());
+        return list;
+    }
+
+    /**
+     * 记录商品访问
+     *
+     * @return 其中的热点商品
+     */
+    private List<Long> recordAccess(Set<Long> keys) {
+        if (detector == null) {
+            return CollUtils.emptyList();
+        }
+        List<Long> hotKeys = new ArrayList<>();
+        for (Long id : keys) {
+            if (detector.record(id)) {
+                hotKeys.add(id);
+            }
+        }
+        return hotKeys;
+    }
+
+    private boolean isFresh(Long id, long readVersion) {
+        if (readVersion < clearedVersion) {
+            return false;
+        }
+        Long deletedAt = tombstones.getIfPresent(id);
+        return deletedAt == null || deletedAt <= readVersion;
+    }
+
+    private Map<Long, ItemDTO> fresh(Map<Long, ItemDTO> items, long readVersion) {
+        if (readVersion >= clearedVersion && tombstones.estimatedSize() == 0) {
+            return items;
+        }
+        Map<Long, ItemDTO> fresh = new HashMap<>(items.size());
+        items.forEach((id, item) -> {
+            if (isFresh(id, readVersion)) {
+                fresh.put(id, item);
+            }
+        });
+        return fresh;
+    }
+
+    private static ItemDTO first(List<ItemDTO> items) {
+        return items.isEmpty() ? null : items.get(0);
+    }
+
+    private static List<Long> missing(Set<Long> keys, Map<Long, ItemDTO> found) {
+        List<Long> missing = new ArrayList<>(keys.size() - found.size());
+        for (Long id : keys) {
+            if (!found.containsKey(id)) {
+                missing.add(id);
+            }
+        }
+        return missing;
+    }
+}
@@ -0,0 +1,153 @@
+package com.hmall.item.cache;
+
+import cn.hutool.core.util.IdUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hmall.common.utils.CollUtils;
+import com.hmall.common.utils.RabbitMqHelper;
+import com.hmall.item.config.ItemCacheProperties;
+import com.hmall.item.constants.MQConstants;
+import com.hmall.item.domain.dto.ItemCacheInvalidationDTO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 商品缓存失效总线。
+ * <p>
+ * 删除本实例缓存的同时，把失效的商品id攒起来，定时合并为一条消息广播给其它实例。
+ * 每个实例的消息带有从1开始递增的序号，接收方发现序号不连续时说明错过了消息，直接清空本地缓存；
+ * 首次收到某个实例的消息时序号不是1，同样说明错过了它之前的消息。长时间没有消息的实例不再记录序号，
+ * 它再次发来消息时按首次收到处理。
+ * 配合{@link ItemCache}的版本号与删除标记，迟到的消息只会多删一次缓存，不会让旧数据重新回到缓存中。
+ * 索引库数据变化也通过同一条消息通知其它实例，使其搜索结果缓存失效。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ItemCacheInvalidator {
+
+    private final ItemCache itemCache;
+    private final RabbitMqHelper rabbitMqHelper;
+    private final ItemCacheProperties properties;
+    private final SearchResultCache searchResultCache;
+
+    /**
+     * 本实例的标识，每次启动都不同
+     */
+    private final String origin = IdUtil.fastSimpleUUID();
+    private final AtomicLong sequence = new AtomicLong();
+    /**
+     * 待广播的商品id
+     */
+    private final Set<Long> pendingIds = ConcurrentHashMap.newKeySet();
+    private final Set<Long> pendingStockIds = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean pendingSearch = new AtomicBoolean();
+    /**
+     * 收到的每个实例的最大消息序号
+     */
+    private Cache<String, Long> receivedSequences;
+
+    @PostConstruct
+    public void initReceivedSequences() {
+        receivedSequences = Caffeine.newBuilder()
+                .expireAfterWrite(properties.getOriginTtl())
+                .build();
+    }
+
+    /**
+     * 删除商品缓存，并通知其它实例
+     *
+     * @param ids        商品id集合
+     * @param keepPinned 是否保留热点缓存，只有库存、销量变化时才可以保留
+     */
+    public void invalidate(Collection<Long> ids, boolean keepPinned) {
+        if (CollUtils.isEmpty(ids)) {
+            return;
+        }
+        itemCache.evictAll(ids, keepPinned);
+        if (Boolean.TRUE.equals(properties.getBroadcastEnabled())) {
+            (keepPinned ? pendingStockIds : pendingIds).addAll(ids);
+        }
+    }
+
+    /**
+     * 索引库数据变化后，使本实例和其它实例的搜索结果缓存失效
+     */
+    public void invalidateSearch() {
+        searchResultCache.bumpVersion();
+        if (Boolean.TRUE.equals(properties.getBroadcastEnabled())) {
+            pendingSearch.set(true);
+        }
+    }
+
+    /**
+     * 定时广播攒下的缓存失效
+     */
+    @Scheduled(fixedDelayString = "${hm.item.cache.broadcast-interval:200}")
+    public synchronized void flush() {
+        if (pendingIds.isEmpty() && pendingStockIds.isEmpty() && !pendingSearch.get()) {
+            return;
+        }
+        // 序号先递增，发送失败时接收方会因为序号不连续而清空本地缓存
+        ItemCacheInvalidationDTO msg = new ItemCacheInvalidationDTO(origin, sequence.incrementAndGet(),
+                drain(pendingIds), drain(pendingStockIds), pendingSearch.getAndSet(false));
+        try {
+            rabbitMqHelper.sendMessage(MQConstants.CACHE_INVALIDATION_EXCHANGE_NAME, "", msg);
+        } catch (Exception e) {
+            log.error("广播商品缓存失效失败，序号：{}，商品数量：{}", msg.getSequence(),
+                    msg.getIds().size() + msg.getStockIds().size(), e);
+        }
+    }
+
+    /**
+     * 处理其它实例广播的缓存失效
+     *
+     * @param msg 缓存失效消息
+     */
+    public void onInvalidation(ItemCacheInvalidationDTO msg) {
+        if (origin.equals(msg.getOrigin())) {
+            return;
+        }
+        // 1.检查序号是否连续，首次收到的实例视为上一个序号是0
+        long[] last = new long[1];
+        receivedSequences.asMap().compute(msg.getOrigin(), (k, v) -> {
+            last[0] = v == null ? 0 : v;
+            return Math.max(last[0], msg.getSequence());
+        });
+        if (msg.getSequence() > last[0] + 1) {
+            log.warn("实例{}的缓存失效消息不连续，期望序号{}，实际序号{}，清空本地缓存",
+                    msg.getOrigin(), last[0] + 1, msg.getSequence());
+            itemCache.clearLocal();
+            searchResultCache.bumpVersion();
+            return;
+        }
+        // 2.删除本地缓存，重复或迟到的消息只会多删一次
+        itemCache.evictLocal(msg.getIds(), false);
+        itemCache.evictLocal(msg.getStockIds(), true);
+        if (Boolean.TRUE.equals(msg.getSearch())) {
+            searchResultCache.bumpVersion();
+        }
+    }
+
+    private static List<Long> drain(Set<Long> ids) {
+        List<Long> list = new ArrayList<>(ids.size());
+        Iterator<Long> it = ids.iterator();
+        while (it.hasNext()) {
+            list.add(it.next());
+            it.remove();
+        }
+        return list;
+    }
+}
@@ -0,0 +1,34 @@
+package com.hmall.item.cache;
+
+import com.hmall.api.dto.ItemDTO;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 商品的共享二级缓存，多个服务实例共用同一份数据，可以基于Redis等实现
+ */
+public interface ItemCacheStore {
+
+    /**
+     * 批量查询缓存
+     *
+     * @param ids 商品id集合
+     * @return 命中的商品，key为商品id
+     */
+    Map<Long, ItemDTO> getAll(Collection<Long> ids);
+
+    /**
+     * 批量写入缓存
+     *
+     * @param items 商品，key为商品id
+     */
+    void putAll(Map<Long, ItemDTO> items);
+
+    /**
+     * 批量删除缓存
+     *
+     * @param ids 商品id集合
+     */
+    void evictAll(Collection<Long> ids);
+}
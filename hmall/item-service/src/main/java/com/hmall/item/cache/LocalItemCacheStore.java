@@ -0,0 +1,36 @@
+package com.hmall.item.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hmall.api.dto.ItemDTO;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 基于进程内存的二级缓存实现，用于本地开发和测试，生产环境应替换为共享的缓存实现
+ */
+public class LocalItemCacheStore implements ItemCacheStore {
+
+    private final Cache<Long, ItemDTO> cache;
+
+    public LocalItemCacheStore(Duration ttl) {
+        this.cache = Caffeine.newBuilder().expireAfterWrite(ttl).build();
+    }
+
+    @Override
+    public Map<Long, ItemDTO> getAll(Collection<Long> ids) {
+        return cache.getAllPresent(ids);
+    }
+
+    @Override
+    public void putAll(Map<Long, ItemDTO> items) {
+        cache.putAll(items);
+    }
+
+    @Override
+    public void evictAll(Collection<Long> ids) {
+        cache.invalidateAll(ids);
+    }
+}
@@ -0,0 +1,82 @@
+package com.hmall.item.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.hmall.api.dto.ItemDTO;
+import com.hmall.common.domain.PageDTO;
+import com.hmall.item.config.EsProperties;
+import com.hmall.item.domain.query.ItemPageQuery;
+import com.hmall.item.domain.vo.SearchCacheStatsVO;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 搜索结果缓存，key为数据版本+规范化后的查询条件。
+ * <p>
+ * 索引库中的商品数据变化后递增数据版本，之前版本的缓存不会再被命中，等待按容量或过期时间淘汰。
+ * 只有库存、销量变化时不递增版本，这类数据在搜索结果中允许在缓存时长内有延迟。
+ */
+@Component
+public class SearchResultCache {
+
+    private final EsProperties.Results properties;
+    private final Cache<String, PageDTO<ItemDTO>> cache;
+    private final AtomicLong version = new AtomicLong();
+
+    public SearchResultCache(EsProperties esProperties) {
+        this.properties = esProperties.getResults();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getSize())
+                .expireAfterWrite(properties.getTtl())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 查询缓存的搜索结果，未命中时执行查询并缓存
+     *
+     * @param query  查询条件
+     * @param search 执行查询的函数，返回null表示结果不可缓存
+     * @return 搜索结果
+     */
+    public PageDTO<ItemDTO> get(ItemPageQuery query, Supplier<PageDTO<ItemDTO>> search) {
+        if (!Boolean.TRUE.equals(properties.getEnabled())) {
+            return search.get();
+        }
+        // 先取版本号再查询，查询期间数据变化时结果会缓存在旧版本下，不会被命中
+        String key = version.get() + "#" + query.cacheKey();
+        PageDTO<ItemDTO> result = cache.getIfPresent(key);
+        if (result != null) {
+            return result;
+        }
+        result = search.get();
+        if (result != null) {
+            cache.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * 递增数据版本，使已缓存的搜索结果全部失效
+     */
+    public void bumpVersion() {
+        version.incrementAndGet();
+    }
+
+    public SearchCacheStatsVO stats() {
+        CacheStats stats = cache.stats();
+        SearchCacheStatsVO vo = new SearchCacheStatsVO();
+        vo.setEnabled(properties.getEnabled());
+        vo.setHitCount(stats.hitCount());
+        vo.setMissCount(stats.missCount());
+        vo.setHitRate(stats.hitRate());
+        vo.setMissRate(stats.missRate());
+        vo.setEvictionCount(stats.evictionCount());
+        vo.setSize(cache.estimatedSize());
+        vo.setVersion(version.get());
+        return vo;
+    }
+}
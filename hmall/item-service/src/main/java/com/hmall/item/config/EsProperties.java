@@ -0,0 +1,174 @@
+package com.hmall.item.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "hm.es")
+public class EsProperties {
+    /**
+     * 是否启用ES搜索，关闭后搜索直接走数据库
+     */
+    private Boolean enabled = true;
+    /**
+     * 商品索引库名称
+     */
+    private String index = "items";
+    /**
+     * 广告商品的算分权重
+     */
+    private Float adBoost = 10f;
+    /**
+     * ES访问失败后，降级走数据库查询的持续时长
+     */
+    private Duration fallbackCooldown = Duration.ofSeconds(30);
+    /**
+     * 增量同步配置
+     */
+    private Sync sync = new Sync();
+    /**
+     * 全量重建索引配置
+     */
+    private Reindex reindex = new Reindex();
+    /**
+     * 搜索过滤项聚合配置
+     */
+    private Facets facets = new Facets();
+    /**
+     * 搜索结果缓存配置
+     */
+    private Results results = new Results();
+    /**
+     * 深度分页配置
+     */
+    private Scroll scroll = new Scroll();
+    /**
+     * 搜索框的搜索建议
+     */
+    private Suggest suggest = new Suggest();
+
+    @Data
+    public static class Sync {
+        /**
+         * 每个BulkRequest最多包含的文档数量
+         */
+        private Integer batchSize = 500;
+        /**
+         * 单个文档同步失败后的最大重试次数
+         */
+        private Integer maxRetries = 3;
+    }
+
+    @Data
+    public static class Reindex {
+        /**
+         * 并行读取数据库的线程数
+         */
+        private Integer readers = 4;
+        /**
+         * 商品id区间切分的分片数量，应大于读取线程数，以便线程间均衡负载
+         */
+        private Integer chunks = 32;
+        /**
+         * 每次按id游标读取的数据量
+         */
+        private Integer pageSize = 1000;
+        /**
+         * 每个BulkRequest最多包含的文档数量
+         */
+        private Integer bulkActions = 1000;
+        /**
+         * 每个BulkRequest的最大体积
+         */
+        private DataSize bulkSize = DataSize.ofMegabytes(5);
+        /**
+         * 同时在途的BulkRequest数量，达到上限后读取线程会阻塞等待
+         */
+        private Integer concurrentRequests = 4;
+        /**
+         * 导入完成后新索引库的副本数量
+         */
+        private Integer replicas = 1;
+        /**
+         * 切换别名后是否删除旧索引库
+         */
+        private Boolean deleteOld = true;
+    }
+
+    @Data
+    public static class Facets {
+        /**
+         * 品牌、分类最多返回的过滤项数量
+         */
+        private Integer size = 20;
+        /**
+         * 价格区间的步长，单位为分
+         */
+        private Integer priceInterval = 10000;
+        /**
+         * 聚合结果的缓存时长
+         */
+        private Duration cacheTtl = Duration.ofSeconds(30);
+        /**
+         * 最多缓存的查询条件数量
+         */
+        private Long cacheSize = 10000L;
+    }
+
+    @Data
+    public static class Results {
+        /**
+         * 是否缓存搜索结果
+         */
+        private Boolean enabled = true;
+        /**
+         * 最多缓存的查询条件数量，超出后淘汰最少使用的
+         */
+        private Long size = 10000L;
+        /**
+         * 搜索结果的缓存时长
+         */
+        private Duration ttl = Duration.ofSeconds(60);
+    }
+
+    @Data
+    public static class Scroll {
+        /**
+         * 时间点（PIT）的保留时长，每次翻页都会续期，超过该时长未翻页则游标失效
+         */
+        private Duration keepAlive = Duration.ofMinutes(1);
+    }
+
+    @Data
+    public static class Suggest {
+        /**
+         * 是否启用搜索建议
+         */
+        private Boolean enabled = true;
+        /**
+         * 每次最多返回的建议数量
+         */
+        private Integer size = 10;
+        /**
+         * 参与匹配的前缀最大长度，更长的部分会被截掉
+         */
+        private Integer maxPrefixLength = 20;
+        /**
+         * 全量加载和增量刷新时每次查询的商品数量
+         */
+        private Integer batchSize = 1000;
+        /**
+         * 最多缓存的前缀数量
+         */
+        private Long cacheSize = 10000L;
+        /**
+         * 前缀查询结果的缓存时长，商品变化后缓存会立即清空
+         */
+        private Duration cacheTtl = Duration.ofMinutes(10);
+    }
+}
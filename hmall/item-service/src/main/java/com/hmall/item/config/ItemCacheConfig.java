@@ -0,0 +1,37 @@
+package com.hmall.item.config;
+
+import com.hmall.item.cache.ItemCache;
+import com.hmall.item.cache.HotItemDetector;
+import com.hmall.item.cache.ItemCacheStore;
+import com.hmall.item.cache.LocalItemCacheStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ItemCacheConfig {
+
+    /**
+     * 默认的二级缓存实现，声明其它ItemCacheStore类型的Bean即可替换
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public ItemCacheStore itemCacheStore(ItemCacheProperties properties) {
+        return new LocalItemCacheStore(properties.getSharedTtl());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "hm.item.cache.hot", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public HotItemDetector hotItemDetector(ItemCacheProperties properties) {
+        return new HotItemDetector(properties.getHot());
+    }
+
+    @Bean
+    public ItemCache itemCache(ItemCacheProperties properties, ObjectProvider<ItemCacheStore> store,
+                               ObjectProvider<HotItemDetector> detector) {
+        return new ItemCache(properties, Boolean.TRUE.equals(properties.getSharedEnabled()) ? store.getIfAvailable() : null,
+                detector.getIfAvailable());
+    }
+}
@@ -0,0 +1,73 @@
+package com.hmall.item.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "hm.item.cache")
+public class ItemCacheProperties {
+    /**
+     * 本地缓存最多缓存的商品数量
+     */
+    private Long localSize = 10000L;
+    /**
+     * 本地缓存的过期时长
+     */
+    private Duration localTtl = Duration.ofSeconds(60);
+    /**
+     * 是否启用共享的二级缓存
+     */
+    private Boolean sharedEnabled = false;
+    /**
+     * 二级缓存的过期时长
+     */
+    private Duration sharedTtl = Duration.ofMinutes(10);
+    /**
+     * 缓存删除标记的保留时长，应大于一次数据库查询的最长耗时
+     */
+    private Duration tombstoneTtl = Duration.ofSeconds(10);
+    /**
+     * 是否向其它实例广播缓存失效
+     */
+    private Boolean broadcastEnabled = true;
+    /**
+     * 记录其它实例消息序号的时长，超过该时长没有消息的实例再次发来消息时按首次收到处理
+     */
+    private Duration originTtl = Duration.ofHours(1);
+    /**
+     * 热点商品探测
+     */
+    private Hot hot = new Hot();
+
+    @Data
+    public static class Hot {
+        /**
+         * 是否启用热点商品探测
+         */
+        private Boolean enabled = true;
+        /**
+         * 成为热点商品的估算访问频率，频率每个衰减周期减半，稳定状态下约为每周期访问次数的2倍
+         */
+        private Long threshold = 200L;
+        /**
+         * Count-Min Sketch每行的计数器数量
+         */
+        private Integer sketchWidth = 4096;
+        /**
+         * Count-Min Sketch的行数
+         */
+        private Integer sketchDepth = 4;
+        /**
+         * 最多同时存在的热点商品数量
+         */
+        private Integer maxItems = 100;
+        /**
+         * 热点商品在本地缓存中的存活时长，期间库存变更不会使其失效
+         */
+        private Duration pinnedTtl = Duration.ofSeconds(1);
+    }
+}
@@ -0,0 +1,19 @@
+package com.hmall.item.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "hm.item.import")
+public class ItemImportProperties {
+    /**
+     * 每批写入数据库的商品数量，同时也是内存中最多缓存的行数
+     */
+    private Integer batchSize = 1000;
+    /**
+     * 导入结果中最多返回的错误行数，超出的只计数
+     */
+    private Integer maxErrors = 100;
+}
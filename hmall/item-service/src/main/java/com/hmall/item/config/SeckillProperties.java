@@ -0,0 +1,20 @@
+package com.hmall.item.config;
+
+import com.hmall.item.seckill.SeckillRouting;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "hm.seckill")
+public class SeckillProperties {
+    /**
+     * 每个秒杀商品的库存分桶数量，默认为CPU核数
+     */
+    private Integer buckets = Runtime.getRuntime().availableProcessors();
+    /**
+     * 扣减库存时选择分桶的策略
+     */
+    private SeckillRouting routing = SeckillRouting.THREAD;
+}
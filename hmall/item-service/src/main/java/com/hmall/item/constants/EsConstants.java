@@ -0,0 +1,48 @@
+package com.hmall.item.constants;
+
+public interface EsConstants {
+
+    // 版本化索引库名称中的分隔符，完整名称为：别名_v时间戳
+    String REINDEX_VERSION_SEPARATOR = "_v";
+
+    // 商品索引库的映射
+    String ITEM_MAPPING = "{\n" +
+            "  \"properties\": {\n" +
+            "    \"id\": {\n" +
+            "      \"type\": \"keyword\"\n" +
+            "    },\n" +
+            "    \"name\":{\n" +
+            "      \"type\": \"text\",\n" +
+            "      \"analyzer\": \"ik_max_word\"\n" +
+            "    },\n" +
+            "    \"price\":{\n" +
+            "      \"type\": \"integer\"\n" +
+            "    },\n" +
+            "    \"stock\":{\n" +
+            "      \"type\": \"integer\"\n" +
+            "    },\n" +
+            "    \"image\":{\n" +
+            "      \"type\": \"keyword\",\n" +
+            "      \"index\": false\n" +
+            "    },\n" +
+            "    \"category\":{\n" +
+            "      \"type\": \"keyword\"\n" +
+            "    },\n" +
+            "    \"brand\":{\n" +
+            "      \"type\": \"keyword\"\n" +
+            "    },\n" +
+            "    \"sold\":{\n" +
+            "      \"type\": \"integer\"\n" +
+            "    },\n" +
+            "    \"commentCount\":{\n" +
+            "      \"type\": \"integer\"\n" +
+            "    },\n" +
+            "    \"isAD\":{\n" +
+            "      \"type\": \"boolean\"\n" +
+            "    },\n" +
+            "    \"updateTime\":{\n" +
+            "      \"type\": \"date\"\n" +
+            "    }\n" +
+            "  }\n" +
+            "}";
+}
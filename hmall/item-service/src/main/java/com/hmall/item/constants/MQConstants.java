@@ -0,0 +1,11 @@
+package com.hmall.item.constants;
+
+public interface MQConstants {
+
+    // 商品索引库同步队列
+    String ES_SYNC_QUEUE_NAME = "item.es.sync.queue";
+    // 商品销量累加队列
+    String SOLD_QUEUE_NAME = "item.sold.queue";
+    // 商品缓存失效广播交换机，每个实例绑定一个匿名队列
+    String CACHE_INVALIDATION_EXCHANGE_NAME = "item.cache.fanout";
+}
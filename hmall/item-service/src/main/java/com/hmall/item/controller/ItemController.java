@@ -1,19 +1,37 @@
 package com.hmall.item.controller;
 
-import cn.hutool.core.thread.ThreadUtil;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.hmall.api.dto.ItemDTO;
+import com.hmall.api.dto.ItemSnapshotsDTO;
 import com.hmall.api.dto.OrderDetailDTO;
+import com.hmall.api.dto.StockCommandDTO;
+import com.hmall.api.dto.StockResultDTO;
+import com.hmall.api.enums.ItemChangeType;
+import com.hmall.common.domain.CursorPageDTO;
 import com.hmall.common.domain.PageDTO;
 import com.hmall.common.domain.PageQuery;
 import com.hmall.common.utils.BeanUtils;
+import com.hmall.common.utils.CursorPages;
+import com.hmall.common.utils.PageCounter;
+import com.hmall.item.cache.ItemCache;
 import com.hmall.item.domain.po.Item;
+import com.hmall.item.domain.vo.HotItemVO;
+import com.hmall.item.domain.vo.ItemImportResultVO;
+import com.hmall.item.importer.ItemImportFormat;
+import com.hmall.item.service.IItemImportService;
 import com.hmall.item.service.IItemService;
+import com.hmall.item.sync.ItemChangePublisher;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Api(tags = "商品管理相关接口")
@@ -23,16 +41,33 @@ import java.util.List;
 public class ItemController {
 
     private final IItemService itemService;
+    private final ItemChangePublisher itemChangePublisher;
+    private final PageCounter pageCounter;
+    private final ItemCache itemCache;
+    private final IItemImportService itemImportService;
 
     @ApiOperation("分页查询商品")
     @GetMapping("/page")
     public PageDTO<ItemDTO> queryItemByPage(PageQuery query) {
         // 1.分页查询
-        Page<Item> result = itemService.page(query.toMpPage("update_time", false));
+        Page<Item> result = pageCounter.page("item-page", itemService, query.toMpPage("update_time", false), null);
         // 2.封装并返回
         return PageDTO.of(result, ItemDTO.class);
     }
 
+    @ApiOperation("游标分页查询商品，按更新时间倒序")
+    @GetMapping("/scroll")
+    public CursorPageDTO<ItemDTO> scrollItems(PageQuery query) {
+        return CursorPages.page(itemService.lambdaQuery(), query, Item::getUpdateTime, LocalDateTime.class, Item::getId, false)
+                .convert(ItemDTO.class);
+    }
+
+    @ApiOperation("查询本实例当前的热点商品")
+    @GetMapping("/hot")
+    public List<HotItemVO> queryHotItems() {
+        return itemCache.hotItems();
+    }
+
     /**
      * 根据id批量查询商品
      *
@@ -42,11 +77,15 @@ public class ItemController {
     @ApiOperation("根据id批量查询商品")
     @GetMapping
     public List<ItemDTO> queryItemByIds(@RequestParam("ids") List<Long> ids){
-        // 模拟业务延迟
-        ThreadUtil.sleep(500);
         return itemService.queryItemByIds(ids);
     }
 
+    @ApiOperation("根据id批量查询商品快照，只包含价格、库存、状态，供内部服务使用")
+    @GetMapping("/snapshots")
+    public ItemSnapshotsDTO queryItemSnapshots(@RequestParam("ids") List<Long> ids) {
+        return itemService.queryItemSnapshots(ids);
+    }
+
     /**
      * 根据id查询商品
      *
@@ -56,14 +95,32 @@ public class ItemController {
     @ApiOperation("根据id查询商品")
     @GetMapping("{id}")
     public ItemDTO queryItemById(@PathVariable("id") Long id) {
-        return BeanUtils.copyBean(itemService.getById(id), ItemDTO.class);
+        return itemService.queryItemById(id);
     }
 
     @ApiOperation("新增商品")
     @PostMapping
     public void saveItem(@RequestBody ItemDTO item) {
         // 新增
-        itemService.save(BeanUtils.copyBean(item, Item.class));
+        Item po = BeanUtils.copyBean(item, Item.class);
+        itemService.save(po);
+        itemChangePublisher.publish(po.getId(), ItemChangeType.SAVE);
+    }
+
+    /**
+     * 流式批量导入商品，请求体直接是文件内容，不使用multipart，边读边写入，不会把整个文件读入内存
+     *
+     * @param format  文件格式，ndjson或csv，为空时根据Content-Type推断
+     * @param request 请求，请求体为UTF-8编码的文件内容
+     * @return 导入结果，包含错误行明细
+     */
+    @ApiOperation("批量导入或更新商品，支持NDJSON和CSV")
+    @PostMapping("/import")
+    public ItemImportResultVO importItems(
+            @RequestParam(value = "format", required = false) String format, HttpServletRequest request) throws IOException {
+        ItemImportFormat importFormat = ItemImportFormat.of(format, request.getContentType());
+        BufferedReader reader = new BufferedReader(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8));
+        return itemImportService.importItems(importFormat, reader);
     }
 
     @ApiOperation("更新商品状态")
@@ -73,6 +130,7 @@ public class ItemController {
         item.setId(id);
         item.setStatus(status);
         itemService.updateById(item);
+        itemChangePublisher.publish(id, ItemChangeType.STATUS);
     }
 
     @ApiOperation("更新商品")
@@ -82,12 +140,14 @@ public class ItemController {
         item.setStatus(null);
         // 更新
         itemService.updateById(BeanUtils.copyBean(item, Item.class));
+        itemChangePublisher.publish(item.getId(), ItemChangeType.UPDATE);
     }
 
     @ApiOperation("根据id删除商品")
     @DeleteMapping("{id}")
     public void deleteItemById(@PathVariable("id") Long id) {
         itemService.removeById(id);
+        itemChangePublisher.publish(id, ItemChangeType.DELETE);
     }
 
     @ApiOperation("批量扣减库存")
@@ -101,4 +161,16 @@ public class ItemController {
     public void restoreStock(@RequestBody List<OrderDetailDTO> items){
         itemService.restoreStock(items);
     }
+
+    @ApiOperation("按订单预留库存，同一订单只扣减一次")
+    @PutMapping("/stock/reserve")
+    public StockResultDTO reserveStock(@RequestBody StockCommandDTO cmd){
+        return itemService.reserveStock(cmd);
+    }
+
+    @ApiOperation("按订单归还预留的库存，同一订单只归还一次")
+    @PutMapping("/stock/reserve/cancel")
+    public StockResultDTO cancelStockReservation(@RequestBody StockCommandDTO cmd){
+        return itemService.cancelStockReservation(cmd);
+    }
 }
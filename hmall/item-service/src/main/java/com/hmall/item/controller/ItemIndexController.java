@@ -0,0 +1,32 @@
+package com.hmall.item.controller;
+
+import com.hmall.item.domain.vo.ReindexStatusVO;
+import com.hmall.item.service.IItemIndexService;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@Api(tags = "商品索引库管理接口")
+@RestController
+@RequestMapping("/items/index")
+@RequiredArgsConstructor
+public class ItemIndexController {
+
+    private final IItemIndexService itemIndexService;
+
+    @ApiOperation("全量重建商品索引库")
+    @PostMapping("/rebuild")
+    public ReindexStatusVO reindex() {
+        return itemIndexService.reindex();
+    }
+
+    @ApiOperation("查询索引库重建进度")
+    @GetMapping("/rebuild")
+    public ReindexStatusVO queryReindexStatus() {
+        return itemIndexService.queryReindexStatus();
+    }
+}
@@ -1,40 +1,59 @@
 package com.hmall.item.controller;
 
 
-import cn.hutool.core.util.StrUtil;
-import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.hmall.api.dto.ItemDTO;
+import com.hmall.common.domain.CursorPageDTO;
 import com.hmall.common.domain.PageDTO;
-import com.hmall.item.domain.po.Item;
 import com.hmall.item.domain.query.ItemPageQuery;
-import com.hmall.item.service.IItemService;
+import com.hmall.item.domain.vo.ItemFiltersVO;
+import com.hmall.item.domain.vo.SearchCacheStatsVO;
+import com.hmall.item.domain.vo.SuggestionVO;
+import com.hmall.item.service.IItemSearchService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+
 @Api(tags = "搜索相关接口")
 @RestController
 @RequestMapping("/search")
 @RequiredArgsConstructor
 public class SearchController {
 
-    private final IItemService itemService;
+    private final IItemSearchService searchService;
 
     @ApiOperation("搜索商品")
     @GetMapping("/list")
     public PageDTO<ItemDTO> search(ItemPageQuery query) {
-        // 分页查询
-        Page<Item> result = itemService.lambdaQuery()
-                .like(StrUtil.isNotBlank(query.getKey()), Item::getName, query.getKey())
-                .eq(StrUtil.isNotBlank(query.getBrand()), Item::getBrand, query.getBrand())
-                .eq(StrUtil.isNotBlank(query.getCategory()), Item::getCategory, query.getCategory())
-                .eq(Item::getStatus, 1)
-                .between(query.getMaxPrice() != null, Item::getPrice, query.getMinPrice(), query.getMaxPrice())
-                .page(query.toMpPage("update_time", false));
-        // 封装并返回
-        return PageDTO.of(result, ItemDTO.class);
+        return searchService.search(query);
+    }
+
+    @ApiOperation("游标分页搜索商品，适合深度翻页")
+    @GetMapping("/scroll")
+    public CursorPageDTO<ItemDTO> scroll(ItemPageQuery query) {
+        return searchService.scroll(query);
+    }
+
+    @ApiOperation("查询搜索过滤项")
+    @GetMapping("/filters")
+    public ItemFiltersVO queryFilters(ItemPageQuery query) {
+        return searchService.queryFilters(query);
+    }
+
+    @ApiOperation("查询搜索框的搜索建议")
+    @GetMapping("/suggest")
+    public List<SuggestionVO> suggest(@RequestParam(value = "prefix", required = false) String prefix) {
+        return searchService.suggest(prefix);
+    }
+
+    @ApiOperation("查询搜索结果缓存的统计数据")
+    @GetMapping("/cache/stats")
+    public SearchCacheStatsVO queryCacheStats() {
+        return searchService.queryCacheStats();
     }
 }
@@ -0,0 +1,37 @@
+package com.hmall.item.controller;
+
+import com.hmall.item.domain.vo.SeckillStockVO;
+import com.hmall.item.seckill.SeckillStockManager;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@Api(tags = "秒杀库存管理接口")
+@RestController
+@RequestMapping("/items/seckill")
+@RequiredArgsConstructor
+public class SeckillController {
+
+    private final SeckillStockManager seckillStockManager;
+
+    @ApiOperation("商品加入秒杀，库存加载到内存")
+    @PostMapping("{id}")
+    public SeckillStockVO load(@PathVariable("id") Long id, @RequestParam(value = "buckets", required = false) Integer buckets) {
+        return seckillStockManager.load(id, buckets);
+    }
+
+    @ApiOperation("商品结束秒杀，恢复直接扣减数据库库存")
+    @DeleteMapping("{id}")
+    public void unload(@PathVariable("id") Long id) {
+        seckillStockManager.unload(id);
+    }
+
+    @ApiOperation("查询秒杀中的商品库存")
+    @GetMapping
+    public List<SeckillStockVO> list() {
+        return seckillStockManager.list();
+    }
+}
@@ -0,0 +1,26 @@
+package com.hmall.item.domain.dto;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "商品缓存失效广播消息")
+public class ItemCacheInvalidationDTO {
+    @ApiModelProperty("发送消息的实例标识")
+    private String origin;
+    @ApiModelProperty("发送实例内递增的消息序号，用于发现丢失的消息")
+    private Long sequence;
+    @ApiModelProperty("需要删除全部缓存的商品id")
+    private List<Long> ids;
+    @ApiModelProperty("只有库存、销量变化的商品id，保留热点缓存")
+    private List<Long> stockIds;
+    @ApiModelProperty("索引库数据是否变化，变化时搜索结果缓存失效")
+    private Boolean search;
+}
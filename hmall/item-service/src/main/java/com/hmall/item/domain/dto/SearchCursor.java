@@ -0,0 +1,142 @@
+package com.hmall.item.domain.dto;
+
+import cn.hutool.core.codec.Base64;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.hmall.common.exception.BadRequestException;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 搜索游标，对前端来说是不透明的字符串。
+ * <p>
+ * ES游标记录时间点（PIT）id和上一页最后一条数据的排序值，用于search_after；
+ * 数据库游标在ES不可用时使用，记录按更新时间游标分页的游标。
+ * 游标同时记录生成它的查询条件摘要，条件变化后游标不能继续使用。
+ */
+@Data
+@NoArgsConstructor
+public class SearchCursor {
+
+    public static final String TYPE_ES = "es";
+    public static final String TYPE_DB = "db";
+
+    /**
+     * 游标类型，es或db
+     */
+    private String type;
+    /**
+     * 查询条件摘要
+     */
+    private String query;
+    /**
+     * ES时间点id
+     */
+    private String pit;
+    /**
+     * 上一页最后一条数据的排序值
+     */
+    private Object[] after;
+    /**
+     * 数据库游标分页的游标
+     */
+    private String cursor;
+
+    public static SearchCursor es(String query, String pit, Object[] after) {
+        SearchCursor c = new SearchCursor();
+        c.type = TYPE_ES;
+        c.query = query;
+        c.pit = pit;
+        c.after = after;
+        return c;
+    }
+
+    public static SearchCursor db(String query, String cursor) {
+        SearchCursor c = new SearchCursor();
+        c.type = TYPE_DB;
+        c.query = query;
+        c.cursor = cursor;
+        return c;
+    }
+
+    public String encode() {
+        JSONObject json = new JSONObject();
+        json.set("t", type);
+        json.set("q", query);
+        if (TYPE_ES.equals(type)) {
+            json.set("p", pit);
+            json.set("a", new JSONArray(after));
+        } else {
+            json.set("c", cursor);
+        }
+        return Base64.encodeUrlSafe(json.toString(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 解析游标字符串，并校验游标与本次查询条件是否一致
+     *
+     * @param token 游标
+     * @param query 本次查询条件的摘要
+     * @return 游标，token为空时返回null
+     * @throws BadRequestException 游标格式错误或与查询条件不一致
+     */
+    public static SearchCursor decode(String token, String query) {
+        if (StrUtil.isBlank(token)) {
+            return null;
+        }
+        SearchCursor c = new SearchCursor();
+        try {
+            JSONObject json = JSONUtil.parseObj(Base64.decodeStr(token, StandardCharsets.UTF_8));
+            c.type = json.getStr("t");
+            c.query = json.getStr("q");
+            if (TYPE_ES.equals(c.type)) {
+                c.pit = json.getStr("p");
+                c.after = toSortValues(json.getJSONArray("a"));
+            } else if (TYPE_DB.equals(c.type)) {
+                c.cursor = json.getStr("c");
+            }
+        } catch (Exception e) {
+            throw new BadRequestException("无效的搜索游标", e);
+        }
+        boolean valid = TYPE_ES.equals(c.type) ? StrUtil.isNotBlank(c.pit) && c.after != null && c.after.length > 0
+                : TYPE_DB.equals(c.type) && StrUtil.isNotBlank(c.cursor);
+        if (!valid) {
+            throw new BadRequestException("无效的搜索游标");
+        }
+        if (!StrUtil.equals(c.query, query)) {
+            throw new BadRequestException("搜索条件已变化，请重新搜索");
+        }
+        return c;
+    }
+
+    /**
+     * JSON中的数字还原为ES能识别的排序值类型
+     */
+    private static Object[] toSortValues(JSONArray array) {
+        if (array == null) {
+            return null;
+        }
+        List<Object> values = new ArrayList<>(array.size());
+        for (Object v : array) {
+            if (v instanceof BigDecimal) {
+                v = ((BigDecimal) v).doubleValue();
+            } else if (v instanceof BigInteger) {
+                v = ((BigInteger) v).longValue();
+            } else if (v instanceof Integer) {
+                v = ((Integer) v).longValue();
+            } else if (v != null && !(v instanceof Number) && !(v instanceof String) && !(v instanceof Boolean)) {
+                throw new BadRequestException("无效的搜索游标");
+            }
+            values.add(v);
+        }
+        return values.toArray();
+    }
+}
@@ -0,0 +1,48 @@
+package com.hmall.item.domain.po;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.experimental.Accessors;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * <p>
+ * 秒杀商品登记表，有记录的商品在每个实例上都会先扣减内存库存，再扣减数据库库存
+ * </p>
+ */
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Accessors(chain = true)
+@TableName("item_seckill")
+public class ItemSeckill implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 商品id
+     */
+    @TableId(value = "item_id", type = IdType.INPUT)
+    private Long itemId;
+
+    /**
+     * 内存库存的分桶数量
+     */
+    private Integer buckets;
+
+    /**
+     * 加入秒杀的时间
+     */
+    private LocalDateTime createTime;
+
+    /**
+     * 商品在数据库中的库存，只在联表查询时填充
+     */
+    @TableField(exist = false)
+    private Integer stock;
+}
@@ -0,0 +1,56 @@
+package com.hmall.item.domain.po;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.experimental.Accessors;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * <p>
+ * 库存命令执行记录表，同一订单的同一命令只有一条记录
+ * </p>
+ */
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Accessors(chain = true)
+@TableName("stock_reservation")
+public class StockReservation implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 记录id
+     */
+    @TableId(value = "id", type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 订单id
+     */
+    private Long orderId;
+
+    /**
+     * 命令，1、预留库存 2、归还库存
+     */
+    private Integer action;
+
+    /**
+     * 是否执行成功
+     */
+    private Boolean success;
+
+    /**
+     * 失败原因
+     */
+    private String reason;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createTime;
+}
@@ -1,5 +1,6 @@
 package com.hmall.item.domain.query;
 
+import cn.hutool.core.util.StrUtil;
 import com.hmall.common.domain.PageQuery;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
@@ -20,4 +21,43 @@ public class ItemPageQuery extends PageQuery {
     private Integer minPrice;
     @ApiModelProperty("价格最大值")
     private Integer maxPrice;
+
+    /**
+     * 规范化过滤条件和排序字段：去掉首尾空白，空白的条件视为未指定。
+     * 查询和缓存key都必须基于规范化后的条件，否则缓存key相同的两个查询可能得到不同的结果
+     *
+     * @return 当前对象
+     */
+    public ItemPageQuery normalize() {
+        key = StrUtil.trimToNull(key);
+        category = StrUtil.trimToNull(category);
+        brand = StrUtil.trimToNull(brand);
+        setSortBy(StrUtil.trimToNull(getSortBy()));
+        return this;
+    }
+
+    /**
+     * 忽略分页、排序参数，把过滤条件拼接为字符串，调用前需要先{@link #normalize()}
+     */
+    public String filterKey() {
+        return StrUtil.join("|",
+                StrUtil.nullToEmpty(key).toLowerCase(),
+                StrUtil.nullToEmpty(category),
+                StrUtil.nullToEmpty(brand),
+                minPrice == null ? "" : minPrice,
+                maxPrice == null ? "" : maxPrice);
+    }
+
+    /**
+     * 把过滤条件、分页、排序参数拼接为字符串，未指定排序字段时忽略排序方向，调用前需要先{@link #normalize()}
+     */
+    public String cacheKey() {
+        String sortBy = StrUtil.nullToEmpty(getSortBy());
+        return StrUtil.join("|",
+                filterKey(),
+                getPageNo(),
+                getPageSize(),
+                sortBy,
+                sortBy.isEmpty() ? "" : !Boolean.FALSE.equals(getIsAsc()));
+    }
 }
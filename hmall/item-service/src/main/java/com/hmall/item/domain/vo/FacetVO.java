@@ -0,0 +1,18 @@
+package com.hmall.item.domain.vo;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "过滤项VO")
+public class FacetVO {
+    @ApiModelProperty("过滤项的值，如品牌名称、分类名称")
+    private String name;
+    @ApiModelProperty("符合条件的商品数量")
+    private Long count;
+}
@@ -0,0 +1,16 @@
+package com.hmall.item.domain.vo;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+
+@Data
+@ApiModel(description = "热点商品VO")
+public class HotItemVO {
+    @ApiModelProperty("商品id")
+    private Long itemId;
+    @ApiModelProperty("估算的访问频率，每个衰减周期减半")
+    private Long frequency;
+    @ApiModelProperty("是否已放入本实例的热点缓存")
+    private Boolean pinned;
+}
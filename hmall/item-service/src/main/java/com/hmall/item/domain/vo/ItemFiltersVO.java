@@ -0,0 +1,19 @@
+package com.hmall.item.domain.vo;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@ApiModel(description = "搜索过滤项VO")
+public class ItemFiltersVO {
+    @ApiModelProperty("品牌过滤项")
+    private List<FacetVO> brands = new ArrayList<>();
+    @ApiModelProperty("分类过滤项")
+    private List<FacetVO> categories = new ArrayList<>();
+    @ApiModelProperty("价格区间过滤项")
+    private List<PriceRangeVO> prices = new ArrayList<>();
+}
@@ -0,0 +1,18 @@
+package com.hmall.item.domain.vo;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "商品导入错误行VO")
+public class ItemImportErrorVO {
+    @ApiModelProperty("行号，从1开始，CSV的表头也计入行号")
+    private Long line;
+    @ApiModelProperty("错误原因")
+    private String message;
+}
@@ -0,0 +1,27 @@
+package com.hmall.item.domain.vo;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@ApiModel(description = "商品批量导入结果VO")
+public class ItemImportResultVO {
+    @ApiModelProperty("读取的数据行数，不含空行和表头")
+    private long total;
+    @ApiModelProperty("新增的商品数，即没有指定id的行")
+    private long inserted;
+    @ApiModelProperty("按id新增或更新的商品数")
+    private long upserted;
+    @ApiModelProperty("失败的行数")
+    private long failed;
+    @ApiModelProperty("耗时，单位：毫秒")
+    private long elapsedMillis;
+    @ApiModelProperty("错误行明细，最多返回hm.item.import.max-errors条")
+    private List<ItemImportErrorVO> errors = new ArrayList<>();
+    @ApiModelProperty("错误行是否超出上限而未全部返回")
+    private boolean errorsTruncated;
+}
@@ -0,0 +1,20 @@
+package com.hmall.item.domain.vo;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "价格区间VO")
+public class PriceRangeVO {
+    @ApiModelProperty("价格下限（含），单位为分")
+    private Integer minPrice;
+    @ApiModelProperty("价格上限（不含），单位为分")
+    private Integer maxPrice;
+    @ApiModelProperty("符合条件的商品数量")
+    private Long count;
+}
@@ -0,0 +1,34 @@
+package com.hmall.item.domain.vo;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@ApiModel(description = "索引库重建进度VO")
+public class ReindexStatusVO {
+    @ApiModelProperty("任务状态，RUNNING、SUCCESS、FAILED，从未执行过时为空")
+    private String state;
+    @ApiModelProperty("别名，即搜索时使用的索引库名称")
+    private String alias;
+    @ApiModelProperty("本次写入的新索引库")
+    private String index;
+    @ApiModelProperty("已从数据库读取的文档数")
+    private Long read;
+    @ApiModelProperty("已成功写入的文档数")
+    private Long indexed;
+    @ApiModelProperty("写入失败的文档数")
+    private Long failed;
+    @ApiModelProperty("被ES拒绝（429）的次数，被拒绝的文档会退避重试")
+    private Long rejected;
+    @ApiModelProperty("写入速度，单位：文档/秒")
+    private Long docsPerSecond;
+    @ApiModelProperty("开始时间")
+    private LocalDateTime startTime;
+    @ApiModelProperty("结束时间")
+    private LocalDateTime endTime;
+    @ApiModelProperty("失败原因")
+    private String error;
+}
@@ -0,0 +1,26 @@
+package com.hmall.item.domain.vo;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+
+@Data
+@ApiModel(description = "搜索结果缓存统计VO")
+public class SearchCacheStatsVO {
+    @ApiModelProperty("是否启用")
+    private Boolean enabled;
+    @ApiModelProperty("命中次数")
+    private Long hitCount;
+    @ApiModelProperty("未命中次数")
+    private Long missCount;
+    @ApiModelProperty("命中率")
+    private Double hitRate;
+    @ApiModelProperty("未命中率")
+    private Double missRate;
+    @ApiModelProperty("因容量或过期被淘汰的数量")
+    private Long evictionCount;
+    @ApiModelProperty("当前缓存的查询条件数量")
+    private Long size;
+    @ApiModelProperty("当前的数据版本，商品变更后递增，旧版本的缓存不再使用")
+    private Long version;
+}
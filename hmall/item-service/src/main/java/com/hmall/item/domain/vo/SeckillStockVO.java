@@ -0,0 +1,18 @@
+package com.hmall.item.domain.vo;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+
+@Data
+@ApiModel(description = "秒杀商品库存VO")
+public class SeckillStockVO {
+    @ApiModelProperty("商品id")
+    private Long itemId;
+    @ApiModelProperty("内存中的剩余库存")
+    private Long remaining;
+    @ApiModelProperty("最近一次同步时数据库中的库存")
+    private Long stock;
+    @ApiModelProperty("库存分桶数量")
+    private Integer buckets;
+}
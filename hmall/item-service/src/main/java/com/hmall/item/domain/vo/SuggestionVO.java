@@ -0,0 +1,18 @@
+package com.hmall.item.domain.vo;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "搜索建议VO")
+public class SuggestionVO {
+    @ApiModelProperty("建议的搜索词")
+    private String text;
+    @ApiModelProperty("搜索词来源，name-商品名称，brand-品牌，category-分类")
+    private String type;
+}
@@ -0,0 +1,36 @@
+package com.hmall.item.importer;
+
+import com.hmall.common.exception.BadRequestException;
+
+/**
+ * 商品批量导入支持的文件格式
+ */
+public enum ItemImportFormat {
+    /**
+     * 每行一个JSON对象，字段与ItemDTO一致
+     */
+    NDJSON,
+    /**
+     * 第一行为表头的CSV，列名与ItemDTO的字段名一致，未知列会被忽略
+     */
+    CSV;
+
+    /**
+     * 解析导入格式，未指定时根据请求的Content-Type推断，默认为NDJSON
+     *
+     * @param format      请求参数中的格式
+     * @param contentType 请求的Content-Type
+     * @return 导入格式
+     */
+    public static ItemImportFormat of(String format, String contentType) {
+        if (format == null || format.isBlank()) {
+            return contentType != null && contentType.toLowerCase().contains("csv") ? CSV : NDJSON;
+        }
+        for (ItemImportFormat value : values()) {
+            if (value.name().equalsIgnoreCase(format.trim())) {
+                return value;
+            }
+        }
+        throw new BadRequestException("不支持的导入格式：" + format);
+    }
+}
@@ -0,0 +1,183 @@
+package com.hmall.item.importer;
+
+import cn.hutool.core.text.csv.CsvParser;
+import cn.hutool.core.text.csv.CsvReadConfig;
+import cn.hutool.core.text.csv.CsvRow;
+import cn.hutool.core.util.StrUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hmall.api.dto.ItemDTO;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+
+/**
+ * 商品导入文件的流式读取器，每次只解析一行，内存占用与文件大小无关。
+ * <p>
+ * 解析失败的行不会中断读取，而是以错误行的形式返回，由调用方汇总。
+ * 读取时只做格式解析和字段校验，不访问数据库。
+ */
+public class ItemImportReader implements Closeable {
+
+    private final ItemImportFormat format;
+    private final BufferedReader reader;
+    private final ObjectMapper objectMapper;
+    private final CsvParser csvParser;
+    /**
+     * NDJSON已读取的行号
+     */
+    private long lineNumber;
+
+    public ItemImportReader(ItemImportFormat format, BufferedReader reader, ObjectMapper objectMapper) {
+        this.format = format;
+        this.reader = reader;
+        this.objectMapper = objectMapper;
+        this.csvParser = format == ItemImportFormat.CSV
+                ? new CsvParser(reader, CsvReadConfig.defaultConfig().setContainsHeader(true))
+                : null;
+    }
+
+    /**
+     * 读取下一行数据，空行会被跳过
+     *
+     * @return 下一行数据，已读完时返回null
+     */
+    public ItemImportRow next() {
+        return format == ItemImportFormat.CSV ? nextCsv() : nextJson();
+    }
+
+    private ItemImportRow nextJson() {
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                ItemDTO item;
+                try {
+                    item = objectMapper.readValue(line, ItemDTO.class);
+                } catch (JsonProcessingException e) {
+                    return ItemImportRow.fail(lineNumber, "JSON格式错误：" + e.getOriginalMessage());
+                }
+                return check(lineNumber, item);
+            }
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ItemImportRow nextCsv() {
+        CsvRow row = csvParser.nextRow();
+        if (row == null) {
+            return null;
+        }
+        // CsvRow的原始行号从0开始，表头为第0行
+        long line = row.getOriginalLineNumber() + 1;
+        ItemDTO item;
+        try {
+            item = toItem(row.getFieldMap());
+        } catch (IllegalArgumentException e) {
+            return ItemImportRow.fail(line, e.getMessage());
+        }
+        return check(line, item);
+    }
+
+    private static ItemDTO toItem(Map<String, String> fields) {
+        ItemDTO item = new ItemDTO();
+        fields.forEach((column, value) -> {
+            if (StrUtil.isBlank(value) || column == null) {
+                return;
+            }
+            switch (column.trim()) {
+                case "id":
+                    item.setId(parseLong(column, value));
+                    break;
+                case "name":
+                    item.setName(value);
+                    break;
+                case "price":
+                    item.setPrice(parseInt(column, value));
+                    break;
+                case "stock":
+                    item.setStock(parseInt(column, value));
+                    break;
+                case "image":
+                    item.setImage(value);
+                    break;
+                case "category":
+                    item.setCategory(value);
+                    break;
+                case "brand":
+                    item.setBrand(value);
+                    break;
+                case "spec":
+                    item.setSpec(value);
+                    break;
+                case "status":
+                    item.setStatus(parseInt(column, value));
+                    break;
+                case "isAD":
+                    item.setIsAD(Boolean.parseBoolean(value.trim()));
+                    break;
+                default:
+                    // 未知列忽略
+            }
+        });
+        return item;
+    }
+
+    private static Long parseLong(String column, String value) {
+        try {
+            return Long.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(column + "不是合法的数字：" + value);
+        }
+    }
+
+    private static Integer parseInt(String column, String value) {
+        try {
+            return Integer.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(column + "不是合法的数字：" + value);
+        }
+    }
+
+    /**
+     * 校验字段。没有id的行是新增，必须有名称和价格；有id的行按id新增或更新，只校验出现的字段
+     */
+    static ItemImportRow check(long line, ItemDTO item) {
+        if (item.getId() == null) {
+            if (StrUtil.isBlank(item.getName())) {
+                return ItemImportRow.fail(line, "新增商品的name不能为空");
+            }
+            if (item.getPrice() == null) {
+                return ItemImportRow.fail(line, "新增商品的price不能为空");
+            }
+        } else if (item.getId() <= 0) {
+            return ItemImportRow.fail(line, "id必须大于0");
+        }
+        if (item.getPrice() != null && item.getPrice() < 0) {
+            return ItemImportRow.fail(line, "price不能小于0");
+        }
+        if (item.getStock() != null && item.getStock() < 0) {
+            return ItemImportRow.fail(line, "stock不能小于0");
+        }
+        if (item.getStatus() != null && (item.getStatus() < 1 || item.getStatus() > 3)) {
+            return ItemImportRow.fail(line, "status只能是1、2、3");
+        }
+        return ItemImportRow.ok(line, item);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (csvParser != null) {
+            csvParser.close();
+        }
+        reader.close();
+    }
+}
@@ -0,0 +1,37 @@
+package com.hmall.item.importer;
+
+import com.hmall.api.dto.ItemDTO;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 导入文件中解析出的一行数据
+ */
+@Data
+@AllArgsConstructor
+public class ItemImportRow {
+    /**
+     * 行号，从1开始
+     */
+    private long line;
+    /**
+     * 解析出的商品，解析失败时为空
+     */
+    private ItemDTO item;
+    /**
+     * 解析或校验失败的原因，成功时为空
+     */
+    private String error;
+
+    public static ItemImportRow ok(long line, ItemDTO item) {
+        return new ItemImportRow(line, item, null);
+    }
+
+    public static ItemImportRow fail(long line, String error) {
+        return new ItemImportRow(line, null, error);
+    }
+
+    public boolean isOk() {
+        return error == null;
+    }
+}
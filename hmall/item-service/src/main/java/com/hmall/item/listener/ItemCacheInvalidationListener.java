@@ -0,0 +1,31 @@
+package com.hmall.item.listener;
+
+import com.hmall.item.cache.ItemCacheInvalidator;
+import com.hmall.item.constants.MQConstants;
+import com.hmall.item.domain.dto.ItemCacheInvalidationDTO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.amqp.core.ExchangeTypes;
+import org.springframework.amqp.rabbit.annotation.Exchange;
+import org.springframework.amqp.rabbit.annotation.Queue;
+import org.springframework.amqp.rabbit.annotation.QueueBinding;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class ItemCacheInvalidationListener {
+
+    private final ItemCacheInvalidator itemCacheInvalidator;
+
+    /**
+     * 监听其它实例广播的缓存失效，每个实例使用自己的匿名队列，实例下线后队列自动删除
+     * @param msg 缓存失效消息
+     */
+    @RabbitListener(bindings = @QueueBinding(
+            value = @Queue,
+            exchange = @Exchange(name = MQConstants.CACHE_INVALIDATION_EXCHANGE_NAME, type = ExchangeTypes.FANOUT)
+    ))
+    public void listenInvalidation(ItemCacheInvalidationDTO msg){
+        itemCacheInvalidator.onInvalidation(msg);
+    }
+}
@@ -0,0 +1,33 @@
+package com.hmall.item.listener;
+
+import com.hmall.api.constants.ItemMQConstants;
+import com.hmall.api.dto.ItemChangeDTO;
+import com.hmall.item.constants.MQConstants;
+import com.hmall.item.sync.ItemIndexSyncer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.amqp.core.ExchangeTypes;
+import org.springframework.amqp.rabbit.annotation.Exchange;
+import org.springframework.amqp.rabbit.annotation.Queue;
+import org.springframework.amqp.rabbit.annotation.QueueBinding;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class ItemChangeListener {
+
+    private final ItemIndexSyncer itemIndexSyncer;
+
+    /**
+     * 监听商品变更消息，同步商品索引库
+     * @param msg 商品变更消息
+     */
+    @RabbitListener(bindings = @QueueBinding(
+            value = @Queue(name = MQConstants.ES_SYNC_QUEUE_NAME, durable = "true"),
+            exchange = @Exchange(name = ItemMQConstants.EXCHANGE_NAME, type = ExchangeTypes.TOPIC),
+            key = ItemMQConstants.CHANGE_KEY
+    ))
+    public void listenItemChange(ItemChangeDTO msg){
+        itemIndexSyncer.markDirty(msg.getIds(), msg.getType());
+    }
+}
@@ -0,0 +1,50 @@
+package com.hmall.item.listener;
+
+import com.hmall.api.constants.ItemMQConstants;
+import com.hmall.api.dto.ItemChangeDTO;
+import com.hmall.api.dto.ItemSoldDTO;
+import com.hmall.api.dto.OrderDetailDTO;
+import com.hmall.item.sync.ItemIndexSyncer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.amqp.core.ExchangeTypes;
+import org.springframework.amqp.rabbit.annotation.Exchange;
+import org.springframework.amqp.rabbit.annotation.Queue;
+import org.springframework.amqp.rabbit.annotation.QueueBinding;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+import java.util.stream.Collectors;
+
+@Component
+@RequiredArgsConstructor
+public class ItemIndexMirrorListener {
+
+    private final ItemIndexSyncer itemIndexSyncer;
+
+    /**
+     * 监听所有商品变更，记录全量重建期间变更过的商品。每个实例使用自己的匿名队列，
+     * 其它实例从同步队列消费的变更，正在重建的实例也能收到
+     * @param msg 商品变更消息
+     */
+    @RabbitListener(bindings = @QueueBinding(
+            value = @Queue,
+            exchange = @Exchange(name = ItemMQConstants.EXCHANGE_NAME, type = ExchangeTypes.TOPIC),
+            key = ItemMQConstants.CHANGE_KEY
+    ))
+    public void listenItemChange(ItemChangeDTO msg){
+        itemIndexSyncer.recordMirror(msg.getIds());
+    }
+
+    /**
+     * 监听所有商品销量变更，记录全量重建期间销量变化的商品
+     * @param msg 商品销量增加消息
+     */
+    @RabbitListener(bindings = @QueueBinding(
+            value = @Queue,
+            exchange = @Exchange(name = ItemMQConstants.EXCHANGE_NAME, type = ExchangeTypes.TOPIC),
+            key = ItemMQConstants.SOLD_KEY
+    ))
+    public void listenItemSold(ItemSoldDTO msg){
+        itemIndexSyncer.recordMirror(msg.getItems().stream().map(OrderDetailDTO::getItemId).collect(Collectors.toList()));
+    }
+}
@@ -0,0 +1,33 @@
+package com.hmall.item.listener;
+
+import com.hmall.api.constants.ItemMQConstants;
+import com.hmall.api.dto.ItemSoldDTO;
+import com.hmall.item.constants.MQConstants;
+import com.hmall.item.sales.ItemSalesAccumulator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.amqp.core.ExchangeTypes;
+import org.springframework.amqp.rabbit.annotation.Exchange;
+import org.springframework.amqp.rabbit.annotation.Queue;
+import org.springframework.amqp.rabbit.annotation.QueueBinding;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class ItemSoldListener {
+
+    private final ItemSalesAccumulator itemSalesAccumulator;
+
+    /**
+     * 监听订单支付成功后的销量消息，累加商品销量
+     * @param msg 商品销量增加消息
+     */
+    @RabbitListener(bindings = @QueueBinding(
+            value = @Queue(name = MQConstants.SOLD_QUEUE_NAME, durable = "true"),
+            exchange = @Exchange(name = ItemMQConstants.EXCHANGE_NAME, type = ExchangeTypes.TOPIC),
+            key = ItemMQConstants.SOLD_KEY
+    ))
+    public void listenItemSold(ItemSoldDTO msg){
+        itemSalesAccumulator.add(msg.getItems());
+    }
+}
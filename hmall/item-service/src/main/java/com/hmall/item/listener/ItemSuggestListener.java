@@ -0,0 +1,38 @@
+package com.hmall.item.listener;
+
+import com.hmall.api.constants.ItemMQConstants;
+import com.hmall.api.dto.ItemChangeDTO;
+import com.hmall.api.enums.ItemChangeType;
+import com.hmall.item.suggest.ItemSuggester;
+import lombok.RequiredArgsConstructor;
+import org.springframework.amqp.core.ExchangeTypes;
+import org.springframework.amqp.rabbit.annotation.Exchange;
+import org.springframework.amqp.rabbit.annotation.Queue;
+import org.springframework.amqp.rabbit.annotation.QueueBinding;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class ItemSuggestListener {
+
+    private final ItemSuggester itemSuggester;
+
+    /**
+     * 监听商品变更消息，刷新本实例的搜索建议。搜索建议保存在每个实例的内存中，
+     * 所以每个实例使用自己的匿名队列，都能收到全部变更。
+     * 库存变更不影响建议的内容，直接忽略，避免下单频繁清空建议缓存
+     * @param msg 商品变更消息
+     */
+    @RabbitListener(bindings = @QueueBinding(
+            value = @Queue,
+            exchange = @Exchange(name = ItemMQConstants.EXCHANGE_NAME, type = ExchangeTypes.TOPIC),
+            key = ItemMQConstants.CHANGE_KEY
+    ))
+    public void listenItemChange(ItemChangeDTO msg){
+        if (msg.getType() == ItemChangeType.STOCK) {
+            return;
+        }
+        itemSuggester.markDirty(msg.getIds());
+    }
+}
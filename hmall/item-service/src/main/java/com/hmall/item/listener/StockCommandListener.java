@@ -0,0 +1,57 @@
+package com.hmall.item.listener;
+
+import com.hmall.api.constants.StockMQConstants;
+import com.hmall.api.dto.StockCommandDTO;
+import com.hmall.api.dto.StockResultDTO;
+import com.hmall.common.utils.RabbitMqHelper;
+import com.hmall.item.service.IItemService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.amqp.rabbit.annotation.Exchange;
+import org.springframework.amqp.rabbit.annotation.Queue;
+import org.springframework.amqp.rabbit.annotation.QueueBinding;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * 处理交易服务下单流程中的库存命令，处理完成后回复结果。
+ * <p>
+ * 消息可能重复投递到任意实例，命令的执行结果记录在stock_reservation表中，重复的命令直接回复记录的结果，
+ * 不会重复扣减或归还库存。执行出现库存不足以外的异常时不记录结果，消息重新投递后再次执行。
+ */
+@Component
+@RequiredArgsConstructor
+public class StockCommandListener {
+
+    private final IItemService itemService;
+    private final RabbitMqHelper rabbitMqHelper;
+
+    /**
+     * 监听预留库存命令
+     * @param cmd 预留库存命令
+     */
+    @RabbitListener(bindings = @QueueBinding(
+            value = @Queue(name = StockMQConstants.RESERVE_QUEUE_NAME, durable = "true"),
+            exchange = @Exchange(name = StockMQConstants.EXCHANGE_NAME),
+            key = StockMQConstants.RESERVE_KEY
+    ))
+    public void listenReserve(StockCommandDTO cmd){
+        reply(itemService.reserveStock(cmd));
+    }
+
+    /**
+     * 监听归还库存命令
+     * @param cmd 归还库存命令
+     */
+    @RabbitListener(bindings = @QueueBinding(
+            value = @Queue(name = StockMQConstants.RESTORE_QUEUE_NAME, durable = "true"),
+            exchange = @Exchange(name = StockMQConstants.EXCHANGE_NAME),
+            key = StockMQConstants.RESTORE_KEY
+    ))
+    public void listenRestore(StockCommandDTO cmd){
+        reply(itemService.cancelStockReservation(cmd));
+    }
+
+    private void reply(StockResultDTO result) {
+        rabbitMqHelper.sendMessage(StockMQConstants.EXCHANGE_NAME, StockMQConstants.RESULT_KEY, result);
+    }
+}
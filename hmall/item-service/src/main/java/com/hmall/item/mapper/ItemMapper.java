@@ -4,8 +4,14 @@ package com.hmall.item.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.hmall.api.dto.OrderDetailDTO;
 import com.hmall.item.domain.po.Item;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Update;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * <p>
  * 商品表 Mapper 接口
@@ -16,9 +22,84 @@ import org.apache.ibatis.annotations.Update;
  */
 public interface ItemMapper extends BaseMapper<Item> {
 
-    @Update("UPDATE item SET stock = stock - #{num} WHERE id = #{itemId}")
-    void updateStock(OrderDetailDTO orderDetail);
+    /**
+     * 一条语句扣减多个商品的库存，只有库存充足的商品才会被扣减
+     *
+     * @param items 扣减明细，同一商品只能出现一次
+     * @return 扣减成功的商品数量
+     */
+    @Update({"<script>",
+            "UPDATE item SET stock = stock - CASE id",
+            "<foreach collection='items' item='i'> WHEN #{i.itemId} THEN #{i.num}</foreach>",
+            "END",
+            "WHERE id IN <foreach collection='items' item='i' open='(' separator=',' close=')'>#{i.itemId}</foreach>",
+            "AND stock &gt;= CASE id",
+            "<foreach collection='items' item='i'> WHEN #{i.itemId} THEN #{i.num}</foreach>",
+            "END",
+            "</script>"})
+    int deductStockBatch(@Param("items") Collection<OrderDetailDTO> items);
+
+    /**
+     * 一条语句恢复多个商品的库存
+     *
+     * @param items 恢复明细，同一商品只能出现一次
+     * @return 恢复成功的商品数量
+     */
+    @Update({"<script>",
+            "UPDATE item SET stock = stock + CASE id",
+            "<foreach collection='items' item='i'> WHEN #{i.itemId} THEN #{i.num}</foreach>",
+            "END",
+            "WHERE id IN <foreach collection='items' item='i' open='(' separator=',' close=')'>#{i.itemId}</foreach>",
+            "</script>"})
+    int restoreStockBatch(@Param("items") Collection<OrderDetailDTO> items);
+
+    /**
+     * 一条语句增加多个商品的销量
+     *
+     * @param items 销量增量，同一商品只能出现一次
+     * @return 更新成功的商品数量
+     */
+    @Update({"<script>",
+            "UPDATE item SET sold = IFNULL(sold, 0) + CASE id",
+            "<foreach collection='items' item='i'> WHEN #{i.itemId} THEN #{i.num}</foreach>",
+            "END",
+            "WHERE id IN <foreach collection='items' item='i' open='(' separator=',' close=')'>#{i.itemId}</foreach>",
+            "</script>"})
+    int increaseSoldBatch(@Param("items") Collection<OrderDetailDTO> items);
+
+    /**
+     * 一条语句新增多个商品，自增id会回填到商品对象中
+     *
+     * @param items 新增的商品，id必须为空
+     * @return 新增的商品数量
+     */
+    @Insert({"<script>",
+            "INSERT INTO item (name, price, stock, image, category, brand, spec, sold, comment_count, isAD, status, create_time, update_time) VALUES",
+            "<foreach collection='items' item='i' separator=','>",
+            "(#{i.name}, #{i.price}, #{i.stock}, #{i.image}, #{i.category}, #{i.brand}, #{i.spec},",
+            "#{i.sold}, #{i.commentCount}, #{i.isAD}, #{i.status}, #{i.createTime}, #{i.updateTime})",
+            "</foreach>",
+            "</script>"})
+    @Options(useGeneratedKeys = true, keyProperty = "items.id", keyColumn = "id")
+    int insertBatch(@Param("items") List<Item> items);
 
-    @Update("UPDATE item SET stock = stock + #{num} WHERE id = #{itemId}")
-    void restoreStock(OrderDetailDTO orderDetail);
+    /**
+     * 一条语句按id新增或更新多个商品。已存在的商品只更新导入数据中出现的字段，销量、评论数、创建时间保持不变
+     *
+     * @param items 商品，id不能为空
+     * @return MySQL的影响行数，新增的行计1，更新的行计2
+     */
+    @Insert({"<script>",
+            "INSERT INTO item (id, name, price, stock, image, category, brand, spec, sold, comment_count, isAD, status, create_time, update_time) VALUES",
+            "<foreach collection='items' item='i' separator=','>",
+            "(#{i.id}, #{i.name}, #{i.price}, #{i.stock}, #{i.image}, #{i.category}, #{i.brand}, #{i.spec},",
+            "#{i.sold}, #{i.commentCount}, #{i.isAD}, #{i.status}, #{i.createTime}, #{i.updateTime})",
+            "</foreach>",
+            "ON DUPLICATE KEY UPDATE",
+            "name = IFNULL(VALUES(name), name), price = IFNULL(VALUES(price), price), stock = IFNULL(VALUES(stock), stock),",
+            "image = IFNULL(VALUES(image), image), category = IFNULL(VALUES(category), category),",
+            "brand = IFNULL(VALUES(brand), brand), spec = IFNULL(VALUES(spec), spec),",
+            "isAD = IFNULL(VALUES(isAD), isAD), status = IFNULL(VALUES(status), status), update_time = VALUES(update_time)",
+            "</script>"})
+    int upsertBatch(@Param("items") List<Item> items);
 }
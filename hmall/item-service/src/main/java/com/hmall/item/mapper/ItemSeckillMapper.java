@@ -0,0 +1,23 @@
+package com.hmall.item.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.hmall.item.domain.po.ItemSeckill;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
+
+/**
+ * <p>
+ * 秒杀商品登记 Mapper 接口
+ * </p>
+ */
+public interface ItemSeckillMapper extends BaseMapper<ItemSeckill> {
+
+    /**
+     * 查询所有秒杀商品及其数据库库存，普通的快照读，不加锁
+     *
+     * @return 秒杀商品，stock为数据库中的库存
+     */
+    @Select("SELECT s.item_id, s.buckets, i.stock FROM item_seckill s JOIN item i ON i.id = s.item_id")
+    List<ItemSeckill> selectWithStock();
+}
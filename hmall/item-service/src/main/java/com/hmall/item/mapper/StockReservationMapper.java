@@ -0,0 +1,24 @@
+package com.hmall.item.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.hmall.item.domain.po.StockReservation;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+/**
+ * <p>
+ * 库存命令执行记录 Mapper 接口
+ * </p>
+ */
+public interface StockReservationMapper extends BaseMapper<StockReservation> {
+
+    /**
+     * 查询订单某个命令的执行记录
+     *
+     * @param orderId 订单id
+     * @param action  命令
+     * @return 执行记录，没有执行过返回null
+     */
+    @Select("SELECT * FROM stock_reservation WHERE order_id = #{orderId} AND action = #{action}")
+    StockReservation selectByOrder(@Param("orderId") Long orderId, @Param("action") Integer action);
+}
@@ -0,0 +1,126 @@
+package com.hmall.item.sales;
+
+import com.hmall.api.dto.OrderDetailDTO;
+import com.hmall.common.utils.CollUtils;
+import com.hmall.item.cache.ItemCacheInvalidator;
+import com.hmall.item.domain.po.Item;
+import com.hmall.item.mapper.ItemMapper;
+import com.hmall.item.seckill.StripedReadWriteLock;
+import com.hmall.item.service.IItemService;
+import com.hmall.item.sync.ItemIndexSyncer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Collectors;
+
+/**
+ * 商品销量累加器。
+ * <p>
+ * 订单支付成功后的销量增量先在内存中按商品累加，定时批量写回：每个周期用一条UPDATE语句更新所有变化的商品，
+ * 再以局部更新的方式把最新销量写入索引库。秒杀期间同一商品的成千上万次销量变化会被合并为一次行更新。
+ * <p>
+ * 累加时持有分段读锁，写回时持有写锁替换累加表，保证每个增量只会被写回一次。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ItemSalesAccumulator {
+
+    /**
+     * 每条UPDATE语句最多包含的商品数量
+     */
+    private static final int BATCH_SIZE = 500;
+
+    private final ItemMapper itemMapper;
+    private final IItemService itemService;
+    private final ItemCacheInvalidator itemCacheInvalidator;
+    private final ItemIndexSyncer itemIndexSyncer;
+
+    private final StripedReadWriteLock lock = new StripedReadWriteLock(Runtime.getRuntime().availableProcessors());
+    /**
+     * 尚未写回的销量增量，key为商品id
+     */
+    private volatile Map<Long, LongAdder> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 累加商品销量
+     *
+     * @param items 销量增量
+     */
+    public void add(Collection<OrderDetailDTO> items) {
+        if (CollUtils.isEmpty(items)) {
+            return;
+        }
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            Map<Long, LongAdder> counters = pending;
+            for (OrderDetailDTO item : items) {
+                if (item.getItemId() != null && item.getNum() != null && item.getNum() > 0) {
+                    counters.computeIfAbsent(item.getItemId(), id -> new LongAdder()).add(item.getNum());
+                }
+            }
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * 定时把累加的销量写回数据库和索引库，服务停止前也会写回一次
+     */
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${hm.item.sales.flush-interval:5000}")
+    public synchronized void flush() {
+        // 1.取出累加结果，换上新的累加表
+        Map<Long, LongAdder> counters;
+        lock.lockWrite();
+        try {
+            if (pending.isEmpty()) {
+                return;
+            }
+            counters = pending;
+            pending = new ConcurrentHashMap<>();
+        } finally {
+            lock.unlockWrite();
+        }
+        List<OrderDetailDTO> deltas = counters.entrySet().stream()
+                .map(e -> new OrderDetailDTO().setItemId(e.getKey()).setNum(Math.toIntExact(e.getValue().sum())))
+                .collect(Collectors.toList());
+        // 2.分批写回
+        for (List<OrderDetailDTO> batch : CollUtils.split(deltas, BATCH_SIZE)) {
+            writeBack(batch);
+        }
+    }
+
+    private void writeBack(List<OrderDetailDTO> batch) {
+        // 1.更新数据库，失败时放回累加器，等下个周期重试
+        try {
+            itemMapper.increaseSoldBatch(batch);
+        } catch (Exception e) {
+            log.error("商品销量写回数据库失败，{}个商品等待重试", batch.size(), e);
+            add(batch);
+            return;
+        }
+        List<Long> ids = batch.stream().map(OrderDetailDTO::getItemId).collect(Collectors.toList());
+        // 2.删除缓存，销量与库存一样允许热点缓存短暂延迟
+        itemCacheInvalidator.invalidate(ids, true);
+        // 3.查询最新销量，局部更新索引库
+        Map<Long, Integer> soldMap = new HashMap<>(ids.size());
+        for (Item item : itemService.lambdaQuery().select(Item::getId, Item::getSold).in(Item::getId, ids).list()) {
+            if (item.getSold() != null) {
+                soldMap.put(item.getId(), item.getSold());
+            }
+        }
+        itemIndexSyncer.updateSold(soldMap);
+    }
+}
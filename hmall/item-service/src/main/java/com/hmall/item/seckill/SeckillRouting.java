@@ -0,0 +1,29 @@
+package com.hmall.item.seckill;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 扣减库存时选择分桶的策略
+ */
+public enum SeckillRouting {
+    /**
+     * 按线程路由，同一线程总是落在同一个桶，缓存亲和性更好
+     */
+    THREAD {
+        @Override
+        public int route(int buckets) {
+            return (int) (Thread.currentThread().getId() % buckets);
+        }
+    },
+    /**
+     * 随机路由，线程数少于分桶数时分布更均匀
+     */
+    RANDOM {
+        @Override
+        public int route(int buckets) {
+            return ThreadLocalRandom.current().nextInt(buckets);
+        }
+    };
+
+    public abstract int route(int buckets);
+}
@@ -0,0 +1,222 @@
+package com.hmall.item.seckill;
+
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.hmall.api.dto.OrderDetailDTO;
+import com.hmall.common.exception.BadRequestException;
+import com.hmall.common.exception.BizIllegalException;
+import com.hmall.common.utils.CollUtils;
+import com.hmall.item.config.SeckillProperties;
+import com.hmall.item.domain.po.Item;
+import com.hmall.item.domain.po.ItemSeckill;
+import com.hmall.item.domain.vo.SeckillStockVO;
+import com.hmall.item.mapper.ItemMapper;
+import com.hmall.item.mapper.ItemSeckillMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 秒杀库存管理器。
+ * <p>
+ * 加入秒杀的商品登记在item_seckill表中，每个实例定时读取登记的商品及其数据库库存，在内存中维护分桶计数器。
+ * 下单时先无锁地扣减内存库存，成功后再在同一个请求中扣减数据库库存，数据库扣减失败时归还内存库存。
+ * 商品售罄后的请求直接在内存中被拒绝，不再竞争商品的行锁。
+ * <p>
+ * 数据库库存始终是准确的，内存库存只是它的近似值，用来尽早拒绝请求：
+ * <ul>
+ *     <li>每次扣减都同步写入数据库，实例宕机不会丢失扣减，多个实例同时秒杀同一商品也不会超卖</li>
+ *     <li>每个实例各自计数，其它实例的扣减、归还以及直接修改数据库库存，要到下次同步时才反映到内存库存中</li>
+ *     <li>内存库存偏大时，多出的请求会被数据库扣减拒绝；偏小时，最多在一个同步周期内误报库存不足</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class SeckillStockManager {
+
+    private final ItemMapper itemMapper;
+    private final ItemSeckillMapper seckillMapper;
+    private final SeckillProperties properties;
+
+    /**
+     * 正在秒杀的商品库存，key为商品id
+     */
+    private final Map<Long, SeckillStock> stocks = new ConcurrentHashMap<>();
+
+    public SeckillStockManager(ItemMapper itemMapper, ItemSeckillMapper seckillMapper, SeckillProperties properties) {
+        this.itemMapper = itemMapper;
+        this.seckillMapper = seckillMapper;
+        this.properties = properties;
+    }
+
+    /**
+     * 扣减秒杀商品的内存库存，非秒杀商品会被忽略。任意商品库存不足时，已扣减的会被归还
+     *
+     * @param lines 扣减明细，同一商品只能出现一次
+     * @return 扣减了内存库存的明细，数据库扣减失败时需要归还
+     */
+    public List<OrderDetailDTO> reserve(Collection<OrderDetailDTO> lines) {
+        if (stocks.isEmpty()) {
+            return CollUtils.emptyList();
+        }
+        List<OrderDetailDTO> reserved = new ArrayList<>();
+        for (OrderDetailDTO line : lines) {
+            SeckillStock stock = stocks.get(line.getItemId());
+            if (stock == null) {
+                continue;
+            }
+            if (!stock.counter.tryReserve(stock.route(), line.getNum())) {
+                release(reserved);
+                throw new BizIllegalException(StrUtil.format("库存不足：秒杀商品(id:{})剩余{}件，需要{}件",
+                        line.getItemId(), stock.counter.sum(), line.getNum()));
+            }
+            reserved.add(line);
+        }
+        return reserved;
+    }
+
+    /**
+     * 归还秒杀商品的内存库存，非秒杀商品会被忽略
+     *
+     * @param lines 归还明细
+     */
+    public void release(Collection<OrderDetailDTO> lines) {
+        if (stocks.isEmpty() || CollUtils.isEmpty(lines)) {
+            return;
+        }
+        for (OrderDetailDTO line : lines) {
+            SeckillStock stock = stocks.get(line.getItemId());
+            if (stock != null) {
+                stock.counter.release(stock.route(), line.getNum());
+            }
+        }
+    }
+
+    /**
+     * 判断商品是否正在秒杀
+     *
+     * @param itemId 商品id
+     * @return 当前实例已加载该商品时返回true
+     */
+    public boolean contains(Long itemId) {
+        return stocks.containsKey(itemId);
+    }
+
+    /**
+     * 把商品加入秒杀，其它实例在下次同步时加载
+     *
+     * @param itemId  商品id
+     * @param buckets 分桶数量，为空时使用默认配置
+     * @return 秒杀库存
+     */
+    public SeckillStockVO load(Long itemId, Integer buckets) {
+        int n = buckets == null ? properties.getBuckets() : buckets;
+        if (n <= 0) {
+            throw new BadRequestException("分桶数量必须大于0");
+        }
+        // 1.查询数据库库存
+        Item item = itemMapper.selectOne(new LambdaQueryWrapper<Item>()
+                .select(Item::getId, Item::getStock)
+                .eq(Item::getId, itemId));
+        if (item == null) {
+            throw new BadRequestException("商品不存在");
+        }
+        // 2.登记秒杀商品
+        try {
+            seckillMapper.insert(new ItemSeckill().setItemId(itemId).setBuckets(n));
+        } catch (DuplicateKeyException e) {
+            throw new BizIllegalException("商品已在秒杀中");
+        }
+        // 3.当前实例立即加载
+        SeckillStock stock = new SeckillStock(itemId, n, item.getStock());
+        stocks.put(itemId, stock);
+        log.info("商品{}加入秒杀，库存{}，分桶数量{}", itemId, item.getStock(), n);
+        return stock.toVO();
+    }
+
+    /**
+     * 结束商品的秒杀，其它实例在下次同步时停止扣减内存库存
+     *
+     * @param itemId 商品id
+     */
+    public void unload(Long itemId) {
+        seckillMapper.deleteById(itemId);
+        if (stocks.remove(itemId) != null) {
+            log.info("商品{}结束秒杀", itemId);
+        }
+    }
+
+    public List<SeckillStockVO> list() {
+        return stocks.values().stream().map(SeckillStock::toVO).collect(Collectors.toList());
+    }
+
+    /**
+     * 定时同步登记的秒杀商品，并把内存库存校正为数据库库存
+     */
+    @Scheduled(fixedDelayString = "${hm.seckill.sync-interval:1000}")
+    public void sync() {
+        List<ItemSeckill> registered;
+        try {
+            registered = seckillMapper.selectWithStock();
+        } catch (Exception e) {
+            log.error("同步秒杀商品失败，等待下次重试", e);
+            return;
+        }
+        // 1.登记已被删除的商品停止扣减内存库存
+        Set<Long> itemIds = registered.stream().map(ItemSeckill::getItemId).collect(Collectors.toSet());
+        stocks.keySet().retainAll(itemIds);
+        // 2.新登记的商品加载到内存，已加载的商品重置为数据库库存
+        for (ItemSeckill seckill : registered) {
+            int total = seckill.getStock() == null ? 0 : Math.max(seckill.getStock(), 0);
+            SeckillStock stock = stocks.get(seckill.getItemId());
+            if (stock == null || stock.counter.buckets() != seckill.getBuckets()) {
+                stocks.put(seckill.getItemId(), new SeckillStock(seckill.getItemId(), seckill.getBuckets(), total));
+            } else {
+                stock.reset(total);
+            }
+        }
+    }
+
+    private class SeckillStock {
+        private final Long itemId;
+        private final StripedStockCounter counter;
+        /**
+         * 最近一次同步时数据库中的库存
+         */
+        private volatile long stock;
+
+        SeckillStock(Long itemId, int buckets, long stock) {
+            this.itemId = itemId;
+            this.counter = new StripedStockCounter(stock, buckets);
+            this.stock = stock;
+        }
+
+        int route() {
+            return properties.getRouting().route(counter.buckets());
+        }
+
+        void reset(long stock) {
+            // 进行中的请求可能已扣减内存库存、尚未扣减数据库库存，重置后内存库存会暂时偏大，由数据库扣减兜底
+            counter.reset(stock);
+            this.stock = stock;
+        }
+
+        SeckillStockVO toVO() {
+            SeckillStockVO vo = new SeckillStockVO();
+            vo.setItemId(itemId);
+            vo.setRemaining(counter.sum());
+            vo.setStock(stock);
+            vo.setBuckets(counter.buckets());
+            return vo;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.hmall.item.seckill;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 分段读写锁：读锁只锁当前线程对应的一段，读线程之间几乎没有竞争；写锁需要锁住所有段。
+ * 适合读非常频繁、写极少的场景
+ */
+public class StripedReadWriteLock {
+
+    private final ReentrantReadWriteLock[] stripes;
+
+    public StripedReadWriteLock(int stripes) {
+        this.stripes = new ReentrantReadWriteLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    /**
+     * 获取当前线程的读锁，加锁与解锁必须在同一个线程中
+     */
+    public Lock readLock() {
+        return stripes[(int) (Thread.currentThread().getId() % stripes.length)].readLock();
+    }
+
+    public void lockWrite() {
+        for (ReentrantReadWriteLock stripe : stripes) {
+            stripe.writeLock().lock();
+        }
+    }
+
+    public void unlockWrite() {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.hmall.item.seckill;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 分桶的库存计数器。
+ * <p>
+ * 库存被平均分到多个桶中，不同线程优先从各自路由到的桶中通过CAS扣减，互不竞争，
+ * 因此单个商品的扣减吞吐量可以随CPU核数增长。每个桶独占一个缓存行，避免伪共享。
+ * 某个桶不够时依次尝试其它桶，单个桶都不够时再从多个桶凑齐，只要总库存足够就能扣减成功。
+ * 从多个桶凑齐时加锁串行执行，避免两个请求各自拿到一部分库存、都凑不齐而同时失败。
+ */
+public class StripedStockCounter {
+
+    /**
+     * 相邻两个桶在数组中的间隔，16个long即128字节，保证每个桶独占缓存行
+     */
+    private static final int PAD = 16;
+
+    private final AtomicLongArray cells;
+    private final int buckets;
+    /**
+     * 从多个桶凑齐库存时持有的锁，单个桶的扣减不需要加锁
+     */
+    private final ReentrantLock gatherLock = new ReentrantLock();
+
+    public StripedStockCounter(long total, int buckets) {
+        if (total < 0 || buckets <= 0) {
+            throw new IllegalArgumentException("库存不能小于0，分桶数量必须大于0");
+        }
+        this.buckets = buckets;
+        this.cells = new AtomicLongArray(buckets * PAD);
+        for (int i = 0; i < buckets; i++) {
+            cells.set(i * PAD, total / buckets + (i < total % buckets ? 1 : 0));
+        }
+    }
+
+    /**
+     * 尝试扣减库存
+     *
+     * @param bucket 优先扣减的桶
+     * @param num    扣减数量
+     * @return 库存足够并扣减成功返回true，否则不做任何扣减并返回false
+     */
+    public boolean tryReserve(int bucket, long num) {
+        // 1.依次尝试从单个桶中扣减
+        for (int i = 0; i < buckets; i++) {
+            if (tryTake((bucket + i) % buckets, num)) {
+                return true;
+            }
+        }
+        // 2.单个桶都不够，从多个桶中凑齐
+        return gather(num);
+    }
+
+    /**
+     * 归还库存
+     *
+     * @param bucket 归还到的桶
+     * @param num    归还数量
+     */
+    public void release(int bucket, long num) {
+        cells.addAndGet((bucket % buckets) * PAD, num);
+    }
+
+    /**
+     * 把库存总量重置为指定值，平均分到各个桶中
+     *
+     * @param total 库存总量
+     */
+    public void reset(long total) {
+        if (total < 0) {
+            throw new IllegalArgumentException("库存不能小于0");
+        }
+        gatherLock.lock();
+        try {
+            for (int i = 0; i < buckets; i++) {
+                cells.set(i * PAD, total / buckets + (i < total % buckets ? 1 : 0));
+            }
+        } finally {
+            gatherLock.unlock();
+        }
+    }
+
+    /**
+     * 剩余库存总量，并发扣减时只是一个近似的快照
+     */
+    public long sum() {
+        long sum = 0;
+        for (int i = 0; i < buckets; i++) {
+            sum += cells.get(i * PAD);
+        }
+        return sum;
+    }
+
+    public int buckets() {
+        return buckets;
+    }
+
+    private boolean tryTake(int bucket, long num) {
+        int index = bucket * PAD;
+        while (true) {
+            long current = cells.get(index);
+            if (current < num) {
+                return false;
+            }
+            if (cells.compareAndSet(index, current, current - num)) {
+                return true;
+            }
+        }
+    }
+
+    private boolean gather(long num) {
+        gatherLock.lock();
+        try {
+            long[] taken = new long[buckets];
+            long need = num;
+            // 1.逐个桶拿取，一轮有收获但仍不够时再来一轮，期间其它线程归还的库存也能被拿到
+            boolean progress = true;
+            while (need > 0 && progress) {
+                progress = false;
+                for (int i = 0; i < buckets && need > 0; i++) {
+                    long take = takeUpTo(i, need);
+                    if (take > 0) {
+                        taken[i] += take;
+                        need -= take;
+                        progress = true;
+                    }
+                }
+            }
+            if (need <= 0) {
+                return true;
+            }
+            // 2.总库存不足，归还已经拿到的部分
+            for (int i = 0; i < buckets; i++) {
+                if (taken[i] > 0) {
+                    cells.addAndGet(i * PAD, taken[i]);
+                }
+            }
+            return false;
+        } finally {
+            gatherLock.unlock();
+        }
+    }
+
+    /**
+     * 从桶中拿取不超过max的库存
+     *
+     * @return 实际拿到的数量
+     */
+    private long takeUpTo(int bucket, long max) {
+        int index = bucket * PAD;
+        while (true) {
+            long current = cells.get(index);
+            long take = Math.min(current, max);
+            if (take <= 0) {
+                return 0;
+            }
+            if (cells.compareAndSet(index, current, current - take)) {
+                return take;
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.hmall.item.service;
+
+import com.hmall.item.domain.vo.ItemImportResultVO;
+import com.hmall.item.importer.ItemImportFormat;
+
+import java.io.BufferedReader;
+
+/**
+ * 商品批量导入服务
+ */
+public interface IItemImportService {
+
+    /**
+     * 流式导入商品：逐行解析，按批写入数据库，再通过商品变更消息批量写入索引库。
+     * 没有id的行作为新商品插入，有id的行按id新增或更新。
+     * 每批独立提交，失败的批次会逐行重试以定位错误行，其它行不受影响
+     *
+     * @param format 文件格式
+     * @param reader 文件内容
+     * @return 导入结果
+     */
+    ItemImportResultVO importItems(ItemImportFormat format, BufferedReader reader);
+}
@@ -0,0 +1,24 @@
+package com.hmall.item.service;
+
+import com.hmall.item.domain.vo.ReindexStatusVO;
+
+/**
+ * 商品索引库管理服务
+ */
+public interface IItemIndexService {
+
+    /**
+     * 异步全量重建商品索引库：数据写入新的版本化索引库，完成后原子地切换别名，
+     * 重建期间搜索继续使用旧索引库
+     *
+     * @return 任务进度
+     */
+    ReindexStatusVO reindex();
+
+    /**
+     * 查询最近一次重建任务的进度
+     *
+     * @return 任务进度
+     */
+    ReindexStatusVO queryReindexStatus();
+}
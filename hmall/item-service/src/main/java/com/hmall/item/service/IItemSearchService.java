@@ -0,0 +1,57 @@
+package com.hmall.item.service;
+
+import com.hmall.api.dto.ItemDTO;
+import com.hmall.common.domain.CursorPageDTO;
+import com.hmall.common.domain.PageDTO;
+import com.hmall.item.domain.query.ItemPageQuery;
+import com.hmall.item.domain.vo.ItemFiltersVO;
+import com.hmall.item.domain.vo.SearchCacheStatsVO;
+import com.hmall.item.domain.vo.SuggestionVO;
+
+import java.util.List;
+
+/**
+ * 商品搜索服务
+ */
+public interface IItemSearchService {
+
+    /**
+     * 搜索商品，优先走ES，ES不可用时降级为数据库查询
+     *
+     * @param query 搜索条件
+     * @return 分页结果
+     */
+    PageDTO<ItemDTO> search(ItemPageQuery query);
+
+    /**
+     * 游标分页搜索商品，基于时间点快照和search_after，翻到多深的页都与第一页代价相同。
+     * ES不可用时降级为数据库游标分页，按更新时间倒序排列
+     *
+     * @param query 搜索条件，页码被忽略，cursor为上一页返回的nextCursor
+     * @return 分页结果，不统计总条数
+     */
+    CursorPageDTO<ItemDTO> scroll(ItemPageQuery query);
+
+    /**
+     * 查询搜索条件下的品牌、分类、价格区间过滤项及对应的商品数量，结果会短暂缓存，ES不可用时返回空的过滤项
+     *
+     * @param query 搜索条件，分页与排序参数会被忽略
+     * @return 过滤项
+     */
+    ItemFiltersVO queryFilters(ItemPageQuery query);
+
+    /**
+     * 查询搜索结果缓存的命中率等统计数据
+     *
+     * @return 统计数据
+     */
+    SearchCacheStatsVO queryCacheStats();
+
+    /**
+     * 查询搜索框的搜索建议，基于本实例内存中的前缀索引，不访问ES和数据库
+     *
+     * @param prefix 用户已输入的内容
+     * @return 以其开头的商品名称、品牌、分类，按热度倒序
+     */
+    List<SuggestionVO> suggest(String prefix);
+}
@@ -3,7 +3,10 @@ package com.hmall.item.service;
 import com.baomidou.mybatisplus.extension.service.IService;
 
 import com.hmall.api.dto.ItemDTO;
+import com.hmall.api.dto.ItemSnapshotsDTO;
 import com.hmall.api.dto.OrderDetailDTO;
+import com.hmall.api.dto.StockCommandDTO;
+import com.hmall.api.dto.StockResultDTO;
 import com.hmall.item.domain.po.Item;
 
 import java.util.Collection;
@@ -23,5 +26,32 @@ public interface IItemService extends IService<Item> {
 
     List<ItemDTO> queryItemByIds(Collection<Long> ids);
 
+    ItemDTO queryItemById(Long id);
+
+    /**
+     * 批量查询商品的价格、库存、状态，优先使用缓存，未命中的只查询这几个字段
+     *
+     * @param ids 商品id集合
+     * @return 商品快照，按ids的顺序排列，不存在的商品会被忽略
+     */
+    ItemSnapshotsDTO queryItemSnapshots(Collection<Long> ids);
+
     void restoreStock(List<OrderDetailDTO> items);
+
+    /**
+     * 为订单预留库存。扣减库存与执行记录在同一个本地事务中提交，同一订单只会扣减一次，
+     * 重复的命令返回第一次执行的结果
+     *
+     * @param cmd 预留库存命令
+     * @return 执行结果
+     */
+    StockResultDTO reserveStock(StockCommandDTO cmd);
+
+    /**
+     * 归还订单预留的库存。同一订单只会归还一次，预留失败的订单不会归还，归还失败时不记录，可以重试
+     *
+     * @param cmd 归还库存命令
+     * @return 执行结果
+     */
+    StockResultDTO cancelStockReservation(StockCommandDTO cmd);
 }
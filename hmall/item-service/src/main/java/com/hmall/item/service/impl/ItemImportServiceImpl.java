@@ -0,0 +1,247 @@
+package com.hmall.item.service.impl;
+
+import cn.hutool.core.exceptions.ExceptionUtil;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hmall.api.dto.ItemDTO;
+import com.hmall.api.enums.ItemChangeType;
+import com.hmall.common.utils.CollUtils;
+import com.hmall.item.config.ItemImportProperties;
+import com.hmall.item.domain.po.Item;
+import com.hmall.item.domain.po.ItemSeckill;
+import com.hmall.item.domain.vo.ItemImportErrorVO;
+import com.hmall.item.domain.vo.ItemImportResultVO;
+import com.hmall.item.importer.ItemImportFormat;
+import com.hmall.item.importer.ItemImportReader;
+import com.hmall.item.importer.ItemImportRow;
+import com.hmall.item.mapper.ItemMapper;
+import com.hmall.item.mapper.ItemSeckillMapper;
+import com.hmall.item.service.IItemImportService;
+import com.hmall.item.sync.ItemChangePublisher;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+/**
+ * 商品批量导入服务实现类。
+ * <p>
+ * 内存中最多只保留一个批次的数据，导入百万商品时堆内存占用保持不变。
+ * 每批用一条多值INSERT写入，写入成功的商品id通过商品变更消息交给索引库同步器，由它合并后批量写入ES。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ItemImportServiceImpl implements IItemImportService {
+
+    private final ItemMapper itemMapper;
+    private final ItemSeckillMapper itemSeckillMapper;
+    private final ItemChangePublisher itemChangePublisher;
+    private final ItemImportProperties importProperties;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public ItemImportResultVO importItems(ItemImportFormat format, BufferedReader reader) {
+        long begin = System.currentTimeMillis();
+        ItemImportResultVO result = new ItemImportResultVO();
+        int batchSize = importProperties.getBatchSize();
+        List<ItemImportRow> inserts = new ArrayList<>(batchSize);
+        List<ItemImportRow> upserts = new ArrayList<>(batchSize);
+        try (ItemImportReader rows = new ItemImportReader(format, reader, objectMapper)) {
+            ItemImportRow row;
+            while ((row = rows.next()) != null) {
+                result.setTotal(result.getTotal() + 1);
+                // 1.解析失败的行直接记录错误
+                if (!row.isOk()) {
+                    addError(result, row.getLine(), row.getError());
+                    continue;
+                }
+                // 2.按是否有id分到不同批次，批次满了就写入
+                if (row.getItem().getId() == null) {
+                    inserts.add(row);
+                    if (inserts.size() >= batchSize) {
+                        writeInserts(inserts, result);
+                    }
+                } else {
+                    upserts.add(row);
+                    if (upserts.size() >= batchSize) {
+                        writeUpserts(upserts, result);
+                    }
+                }
+            }
+            // 3.写入剩余数据
+            writeInserts(inserts, result);
+            writeUpserts(upserts, result);
+        } catch (IOException | UncheckedIOException e) {
+            log.error("读取商品导入文件失败", e);
+            addError(result, result.getTotal() + 1, "读取文件失败：" + e.getMessage());
+        }
+        result.setElapsedMillis(System.currentTimeMillis() - begin);
+        log.info("商品导入完成，共{}行，新增{}，新增或更新{}，失败{}，耗时{}ms",
+                result.getTotal(), result.getInserted(), result.getUpserted(), result.getFailed(), result.getElapsedMillis());
+        return result;
+    }
+
+    private void writeInserts(List<ItemImportRow> rows, ItemImportResultVO result) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<Item> items = new ArrayList<>(rows.size());
+        for (ItemImportRow row : rows) {
+            items.add(toNewItem(row.getItem(), now));
+        }
+        List<Long> ids = write(rows, items, itemMapper::insertBatch, result);
+        result.setInserted(result.getInserted() + ids.size());
+        itemChangePublisher.publish(ids, ItemChangeType.SAVE);
+        rows.clear();
+    }
+
+    private void writeUpserts(List<ItemImportRow> rows, ItemImportResultVO result) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        // 1.查询已存在的商品，不存在的按新增处理，需要补全默认值；正在秒杀的商品不能导入库存
+        Set<Long> existing = queryExistingIds(rows);
+        Set<Long> seckill = querySeckillIds(rows);
+        LocalDateTime now = LocalDateTime.now();
+        List<ItemImportRow> valid = new ArrayList<>(rows.size());
+        List<Item> items = new ArrayList<>(rows.size());
+        for (ItemImportRow row : rows) {
+            ItemDTO dto = row.getItem();
+            if (dto.getStock() != null && seckill.contains(dto.getId())) {
+                addError(result, row.getLine(), "商品" + dto.getId() + "正在秒杀，不能导入库存");
+                continue;
+            }
+            if (existing.contains(dto.getId())) {
+                items.add(toUpdatedItem(dto, now));
+            } else if (dto.getName() == null || dto.getPrice() == null) {
+                addError(result, row.getLine(), "商品" + dto.getId() + "不存在，新增商品的name和price不能为空");
+                continue;
+            } else {
+                Item item = toNewItem(dto, now);
+                item.setId(dto.getId());
+                items.add(item);
+            }
+            valid.add(row);
+        }
+        // 2.写入
+        List<Long> ids = write(valid, items, itemMapper::upsertBatch, result);
+        result.setUpserted(result.getUpserted() + ids.size());
+        itemChangePublisher.publish(ids, ItemChangeType.UPDATE);
+        rows.clear();
+    }
+
+    /**
+     * 整批写入，失败时逐行重试，定位出错的行
+     *
+     * @return 写入成功的商品id
+     */
+    private List<Long> write(List<ItemImportRow> rows, List<Item> items,
+                             ToIntFunction<List<Item>> writer, ItemImportResultVO result) {
+        if (items.isEmpty()) {
+            return List.of();
+        }
+        try {
+            writer.applyAsInt(items);
+            return items.stream().map(Item::getId).collect(Collectors.toList());
+        } catch (RuntimeException e) {
+            log.warn("批量写入{}个商品失败，逐行重试，原因：{}", items.size(), rootMessage(e));
+        }
+        List<Long> ids = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            Item item = items.get(i);
+            try {
+                writer.applyAsInt(List.of(item));
+                ids.add(item.getId());
+            } catch (RuntimeException e) {
+                addError(result, rows.get(i).getLine(), rootMessage(e));
+            }
+        }
+        return ids;
+    }
+
+    private Set<Long> queryExistingIds(List<ItemImportRow> rows) {
+        List<Long> ids = rows.stream().map(r -> r.getItem().getId()).collect(Collectors.toList());
+        List<Object> existing = itemMapper.selectObjs(Wrappers.<Item>query().select("id").in("id", ids));
+        if (CollUtils.isEmpty(existing)) {
+            return Set.of();
+        }
+        Set<Long> set = new HashSet<>(existing.size());
+        for (Object id : existing) {
+            set.add(((Number) id).longValue());
+        }
+        return set;
+    }
+
+    /**
+     * 查询正在秒杀的商品，秒杀期间库存由下单请求扣减，导入的库存会覆盖已售出的部分
+     */
+    private Set<Long> querySeckillIds(List<ItemImportRow> rows) {
+        List<Long> ids = rows.stream()
+                .filter(r -> r.getItem().getStock() != null)
+                .map(r -> r.getItem().getId())
+                .collect(Collectors.toList());
+        if (ids.isEmpty()) {
+            return Set.of();
+        }
+        return itemSeckillMapper.selectBatchIds(ids).stream().map(ItemSeckill::getItemId).collect(Collectors.toSet());
+    }
+
+    private static Item toNewItem(ItemDTO dto, LocalDateTime now) {
+        Item item = toUpdatedItem(dto, now);
+        item.setId(null);
+        item.setStock(dto.getStock() == null ? 0 : dto.getStock());
+        item.setIsAD(dto.getIsAD() != null && dto.getIsAD());
+        item.setStatus(dto.getStatus() == null ? 1 : dto.getStatus());
+        item.setCreateTime(now);
+        return item;
+    }
+
+    /**
+     * 只复制导入数据中的字段，销量和评论数不允许导入。
+     * 新增时销量和评论数为0，更新时这两个字段不会被修改
+     */
+    private static Item toUpdatedItem(ItemDTO dto, LocalDateTime now) {
+        Item item = new Item();
+        item.setId(dto.getId());
+        item.setName(dto.getName());
+        item.setPrice(dto.getPrice());
+        item.setStock(dto.getStock());
+        item.setImage(dto.getImage());
+        item.setCategory(dto.getCategory());
+        item.setBrand(dto.getBrand());
+        item.setSpec(dto.getSpec());
+        item.setIsAD(dto.getIsAD());
+        item.setStatus(dto.getStatus());
+        item.setSold(0);
+        item.setCommentCount(0);
+        item.setCreateTime(now);
+        item.setUpdateTime(now);
+        return item;
+    }
+
+    private void addError(ItemImportResultVO result, long line, String message) {
+        result.setFailed(result.getFailed() + 1);
+        if (result.getErrors().size() < importProperties.getMaxErrors()) {
+            result.getErrors().add(new ItemImportErrorVO(line, message));
+        } else {
+            result.setErrorsTruncated(true);
+        }
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable cause = ExceptionUtil.getRootCause(e);
+        return cause.getMessage() == null ? cause.getClass().getSimpleName() : cause.getMessage();
+    }
+}
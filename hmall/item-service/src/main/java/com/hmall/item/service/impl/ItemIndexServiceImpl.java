@@ -0,0 +1,367 @@
+package com.hmall.item.service.impl;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import cn.hutool.json.JSONUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hmall.common.exception.BizIllegalException;
+import com.hmall.common.utils.BeanUtils;
+import com.hmall.common.utils.CollUtils;
+import com.hmall.item.cache.ItemCacheInvalidator;
+import com.hmall.item.config.EsProperties;
+import com.hmall.item.constants.EsConstants;
+import com.hmall.item.domain.po.Item;
+import com.hmall.item.domain.po.ItemDoc;
+import com.hmall.item.domain.vo.ReindexStatusVO;
+import com.hmall.item.service.IItemIndexService;
+import com.hmall.item.service.IItemService;
+import com.hmall.item.sync.ItemIndexSyncer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest;
+import org.elasticsearch.action.admin.indices.alias.get.GetAliasesRequest;
+import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
+import org.elasticsearch.action.admin.indices.refresh.RefreshRequest;
+import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequest;
+import org.elasticsearch.action.bulk.BackoffPolicy;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.GetAliasesResponse;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.indices.CreateIndexRequest;
+import org.elasticsearch.client.indices.GetIndexRequest;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.rest.RestStatus;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 商品索引库管理服务实现类。
+ * <p>
+ * 全量重建的流程：
+ * <ol>
+ *     <li>创建版本化的新索引库，导入期间关闭刷新、不设副本；</li>
+ *     <li>把商品id区间切分为多个分片，由读取线程池按id游标并行读取数据库；</li>
+ *     <li>读取到的数据交给BulkProcessor批量写入，在途请求数达到上限时读取线程阻塞，形成背压，
+ *     被ES拒绝的请求按指数退避重试；</li>
+ *     <li>导入完成后恢复刷新与副本设置，重放导入期间发生过变更的商品，最后原子地把别名切换到新索引库；
+ *     有文档写入失败或等待写入完成超时时放弃切换。</li>
+ *     <li>切换后再重放一次切换前发生变更的商品，这些变更可能已被其它实例只写入了旧索引库。</li>
+ * </ol>
+ * 整个过程中搜索始终通过别名访问旧索引库，不受影响。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ItemIndexServiceImpl implements IItemIndexService {
+
+    private final RestHighLevelClient client;
+    private final IItemService itemService;
+    private final EsProperties esProperties;
+    private final ItemIndexSyncer itemIndexSyncer;
+    private final ItemCacheInvalidator itemCacheInvalidator;
+
+    /**
+     * 最近一次重建任务
+     */
+    private volatile ReindexJob job;
+
+    @Override
+    public synchronized ReindexStatusVO reindex() {
+        if (job != null && job.running) {
+            throw new BizIllegalException("已有重建任务正在执行");
+        }
+        String alias = esProperties.getIndex();
+        job = new ReindexJob(alias, alias + EsConstants.REINDEX_VERSION_SEPARATOR + System.currentTimeMillis());
+        ReindexJob current = job;
+        CompletableFuture.runAsync(() -> runJob(current), runnable -> {
+            Thread thread = new Thread(runnable, "item-reindex");
+            thread.setDaemon(true);
+            thread.start();
+        });
+        return current.toVO();
+    }
+
+    @Override
+    public ReindexStatusVO queryReindexStatus() {
+        ReindexJob current = job;
+        return current == null ? new ReindexStatusVO() : current.toVO();
+    }
+
+    private void runJob(ReindexJob job) {
+        EsProperties.Reindex config = esProperties.getReindex();
+        log.info("开始重建商品索引库，新索引库：{}", job.index);
+        boolean created = false;
+        try {
+            // 1.创建新索引库，并开始同步增量变更
+            createIndex(job.index);
+            created = true;
+            itemIndexSyncer.startMirror(job.index);
+            // 2.并行导入数据
+            load(job, config);
+            if (job.failed.get() > 0) {
+                throw new IllegalStateException("有" + job.failed.get() + "条文档写入失败");
+            }
+            // 3.恢复索引库设置
+            client.indices().putSettings(new UpdateSettingsRequest(job.index).settings(Settings.builder()
+                    .putNull("index.refresh_interval")
+                    .put("index.number_of_replicas", config.getReplicas())), RequestOptions.DEFAULT);
+            // 4.重放导入期间变更过的商品
+            if (!itemIndexSyncer.replayMirror()) {
+                throw new IllegalStateException("重放增量变更失败");
+            }
+            client.indices().refresh(new RefreshRequest(job.index), RequestOptions.DEFAULT);
+            // 5.切换别名
+            switchAlias(job.alias, job.index, config.getDeleteOld());
+            // 6.重放切换前发生的变更，写入失败的商品留在增量同步中重试，会写入别名指向的新索引库
+            if (!itemIndexSyncer.replayMirror()) {
+                log.warn("别名切换后重放增量变更未全部成功，等待增量同步重试");
+            }
+            job.finish("SUCCESS", null);
+            log.info("商品索引库重建完成，共写入{}条文档，耗时{}秒，速度{}条/秒，被拒绝{}次",
+                    job.indexed.get(), job.elapsed().getSeconds(), job.docsPerSecond(), job.rejected.get());
+        } catch (Exception e) {
+            log.error("商品索引库重建失败，新索引库：{}", job.index, e);
+            job.finish("FAILED", e.getMessage());
+            if (created) {
+                deleteQuietly(job.index);
+            }
+        } finally {
+            itemIndexSyncer.stopMirror();
+        }
+    }
+
+    private void createIndex(String index) throws IOException {
+        CreateIndexRequest request = new CreateIndexRequest(index);
+        // 导入期间关闭刷新、不设副本，以提升写入速度
+        request.settings(Settings.builder()
+                .put("index.refresh_interval", "-1")
+                .put("index.number_of_replicas", 0));
+        request.mapping(EsConstants.ITEM_MAPPING, XContentType.JSON);
+        client.indices().create(request, RequestOptions.DEFAULT);
+    }
+
+    private void load(ReindexJob job, EsProperties.Reindex config) throws InterruptedException {
+        // 1.查询商品id区间
+        List<Map<String, Object>> range = itemService.listMaps(new QueryWrapper<Item>()
+                .select("MIN(id) AS min_id", "MAX(id) AS max_id").eq("status", 1));
+        if (CollUtils.isEmpty(range) || range.get(0) == null || range.get(0).get("min_id") == null) {
+            return;
+        }
+        long minId = ((Number) range.get(0).get("min_id")).longValue();
+        long maxId = ((Number) range.get(0).get("max_id")).longValue();
+        // 2.创建BulkProcessor，concurrentRequests限制在途请求数，add在达到上限时阻塞
+        BulkProcessor processor = BulkProcessor.builder((request, listener) ->
+                        client.bulkAsync(request, RequestOptions.DEFAULT, countRejections(job, listener)),
+                        new ReindexListener(job))
+                .setBulkActions(config.getBulkActions())
+                .setBulkSize(new ByteSizeValue(config.getBulkSize().toBytes()))
+                .setConcurrentRequests(config.getConcurrentRequests())
+                .setBackoffPolicy(BackoffPolicy.exponentialBackoff(TimeValue.timeValueMillis(100), 8))
+                .build();
+        // 3.切分id区间，交给读取线程池并行读取
+        int chunks = Math.max(1, config.getChunks());
+        long step = Math.max(1, (maxId - minId + chunks) / chunks);
+        ExecutorService readers = Executors.newFixedThreadPool(config.getReaders(),
+                ThreadFactoryBuilder.create().setNamePrefix("item-reindex-reader-").build());
+        List<CompletableFuture<Void>> futures = new ArrayList<>(chunks);
+        boolean closed;
+        try {
+            for (long start = minId - 1; start < maxId; start += step) {
+                long from = start;
+                long to = Math.min(maxId, start + step);
+                futures.add(CompletableFuture.runAsync(() -> loadChunk(job, processor, from, to, config.getPageSize()), readers));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } finally {
+            readers.shutdownNow();
+            closed = processor.awaitClose(10, TimeUnit.MINUTES);
+        }
+        // 4.仍有在途请求时写入结果未知，不能切换别名
+        if (!closed) {
+            throw new IllegalStateException("等待批量写入完成超时");
+        }
+    }
+
+    /**
+     * 按id游标读取(from, to]区间内的商品并写入BulkProcessor
+     */
+    private void loadChunk(ReindexJob job, BulkProcessor processor, long from, long to, int pageSize) {
+        long lastId = from;
+        while (true) {
+            List<Item> items = itemService.lambdaQuery()
+                    .select(Item::getId, Item::getName, Item::getPrice, Item::getStock, Item::getImage,
+                            Item::getCategory, Item::getBrand, Item::getSold, Item::getCommentCount,
+                            Item::getIsAD, Item::getUpdateTime)
+                    .gt(Item::getId, lastId)
+                    .le(Item::getId, to)
+                    .eq(Item::getStatus, 1)
+                    .orderByAsc(Item::getId)
+                    .last("LIMIT " + pageSize)
+                    .list();
+            for (Item item : items) {
+                ItemDoc itemDoc = BeanUtils.copyBean(item, ItemDoc.class);
+                processor.add(new IndexRequest(job.index).id(itemDoc.getId())
+                        .source(JSONUtil.toJsonStr(itemDoc), XContentType.JSON));
+            }
+            job.read.addAndGet(items.size());
+            if (items.size() < pageSize) {
+                return;
+            }
+            lastId = items.get(items.size() - 1).getId();
+        }
+    }
+
+    /**
+     * 统计每次请求中被ES拒绝的文档，BulkProcessor会对这些文档退避重试，重试结果不影响此处计数
+     */
+    private ActionListener<BulkResponse> countRejections(ReindexJob job, ActionListener<BulkResponse> listener) {
+        return ActionListener.wrap(response -> {
+            if (response.hasFailures()) {
+                for (BulkItemResponse item : response.getItems()) {
+                    if (item.isFailed() && item.status() == RestStatus.TOO_MANY_REQUESTS) {
+                        job.rejected.incrementAndGet();
+                    }
+                }
+            }
+            listener.onResponse(response);
+        }, listener::onFailure);
+    }
+
+    private void switchAlias(String alias, String index, boolean deleteOld) throws IOException {
+        IndicesAliasesRequest request = new IndicesAliasesRequest();
+        request.addAliasAction(IndicesAliasesRequest.AliasActions.add().index(index).alias(alias));
+        Set<String> oldIndices = Set.of();
+        GetAliasesResponse aliases = client.indices().getAlias(new GetAliasesRequest(alias), RequestOptions.DEFAULT);
+        if (!aliases.getAliases().isEmpty()) {
+            // 别名已存在，从旧索引库上移除
+            oldIndices = aliases.getAliases().keySet();
+            for (String old : oldIndices) {
+                request.addAliasAction(IndicesAliasesRequest.AliasActions.remove().index(old).alias(alias));
+            }
+        } else if (client.indices().exists(new GetIndexRequest(alias), RequestOptions.DEFAULT)) {
+            // 旧索引库直接使用了别名的名称，需要在同一个请求中删除它，别名才能生效
+            request.addAliasAction(IndicesAliasesRequest.AliasActions.removeIndex().index(alias));
+        }
+        client.indices().updateAliases(request, RequestOptions.DEFAULT);
+        log.info("别名{}已切换到索引库{}，旧索引库：{}", alias, index, oldIndices);
+        itemCacheInvalidator.invalidateSearch();
+        if (deleteOld) {
+            oldIndices.forEach(this::deleteQuietly);
+        }
+    }
+
+    private void deleteQuietly(String index) {
+        try {
+            client.indices().delete(new DeleteIndexRequest(index), RequestOptions.DEFAULT);
+        } catch (Exception e) {
+            log.warn("删除索引库{}失败", index, e);
+        }
+    }
+
+    private static class ReindexListener implements BulkProcessor.Listener {
+        private final ReindexJob job;
+
+        ReindexListener(ReindexJob job) {
+            this.job = job;
+        }
+
+        @Override
+        public void beforeBulk(long executionId, BulkRequest request) {
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, BulkResponse response) {
+            int failed = 0;
+            if (response.hasFailures()) {
+                for (BulkItemResponse item : response.getItems()) {
+                    if (item.isFailed()) {
+                        failed++;
+                        log.warn("重建索引写入文档失败，商品id：{}，原因：{}", item.getId(), item.getFailureMessage());
+                    }
+                }
+            }
+            job.failed.addAndGet(failed);
+            job.indexed.addAndGet(request.numberOfActions() - failed);
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, Throwable failure) {
+            log.error("重建索引批量写入失败，{}条文档", request.numberOfActions(), failure);
+            job.failed.addAndGet(request.numberOfActions());
+        }
+    }
+
+    private static class ReindexJob {
+        private final String alias;
+        private final String index;
+        private final LocalDateTime startTime = LocalDateTime.now();
+        private final long startNanos = System.nanoTime();
+        private final AtomicLong read = new AtomicLong();
+        private final AtomicLong indexed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private volatile boolean running = true;
+        private volatile String state = "RUNNING";
+        private volatile String error;
+        private volatile LocalDateTime endTime;
+        private volatile long endNanos;
+
+        ReindexJob(String alias, String index) {
+            this.alias = alias;
+            this.index = index;
+        }
+
+        void finish(String state, String error) {
+            this.endNanos = System.nanoTime();
+            this.endTime = LocalDateTime.now();
+            this.error = error;
+            this.state = state;
+            this.running = false;
+        }
+
+        Duration elapsed() {
+            return Duration.ofNanos((running ? System.nanoTime() : endNanos) - startNanos);
+        }
+
+        long docsPerSecond() {
+            long millis = Math.max(1, elapsed().toMillis());
+            return indexed.get() * 1000 / millis;
+        }
+
+        ReindexStatusVO toVO() {
+            ReindexStatusVO vo = new ReindexStatusVO();
+            vo.setState(state);
+            vo.setAlias(alias);
+            vo.setIndex(index);
+            vo.setRead(read.get());
+            vo.setIndexed(indexed.get());
+            vo.setFailed(failed.get());
+            vo.setRejected(rejected.get());
+            vo.setDocsPerSecond(docsPerSecond());
+            vo.setStartTime(startTime);
+            vo.setEndTime(endTime);
+            vo.setError(error);
+            return vo;
+        }
+    }
+}
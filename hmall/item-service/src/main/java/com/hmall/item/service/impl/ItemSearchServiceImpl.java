@@ -0,0 +1,481 @@
+package com.hmall.item.service.impl;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hmall.api.dto.ItemDTO;
+import com.hmall.common.domain.CountStrategy;
+import com.hmall.common.domain.CursorPageDTO;
+import com.hmall.common.domain.PageDTO;
+import com.hmall.common.domain.PageQuery;
+import com.hmall.common.exception.BadRequestException;
+import com.hmall.common.exception.BizIllegalException;
+import com.hmall.common.utils.BeanUtils;
+import com.hmall.common.utils.CursorPages;
+import com.hmall.common.utils.PageCounter;
+import com.hmall.item.cache.SearchResultCache;
+import com.hmall.item.config.EsProperties;
+import com.hmall.item.domain.dto.SearchCursor;
+import com.hmall.item.domain.po.Item;
+import com.hmall.item.domain.po.ItemDoc;
+import com.hmall.item.domain.query.ItemPageQuery;
+import com.hmall.item.domain.vo.FacetVO;
+import com.hmall.item.domain.vo.ItemFiltersVO;
+import com.hmall.item.domain.vo.PriceRangeVO;
+import com.hmall.item.domain.vo.SearchCacheStatsVO;
+import com.hmall.item.domain.vo.SuggestionVO;
+import com.hmall.item.service.IItemSearchService;
+import com.hmall.item.service.IItemService;
+import com.hmall.item.suggest.ItemSuggester;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.lucene.search.function.CombineFunction;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.query.RangeQueryBuilder;
+import org.elasticsearch.index.query.functionscore.FunctionScoreQueryBuilder;
+import org.elasticsearch.index.query.functionscore.ScoreFunctionBuilders;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.bucket.filter.Filter;
+import org.elasticsearch.search.aggregations.bucket.histogram.Histogram;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.builder.PointInTimeBuilder;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.search.sort.SortOrder;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * 商品搜索服务实现类
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ItemSearchServiceImpl implements IItemSearchService {
+
+    /**
+     * 前端排序字段与索引库字段的映射，不在其中的排序字段一律按默认排序处理
+     */
+    private static final Map<String, String> SORT_FIELDS = Map.of(
+            "sold", "sold",
+            "price", "price",
+            "commentCount", "commentCount",
+            "comment_count", "commentCount",
+            "updateTime", "updateTime",
+            "update_time", "updateTime"
+    );
+    /**
+     * 统计总条数时使用的接口标识
+     */
+    private static final String COUNT_ENDPOINT = "item-search";
+
+    private static final String BRAND_AGG = "brand_agg";
+    private static final String CATEGORY_AGG = "category_agg";
+    private static final String PRICE_AGG = "price_agg";
+
+    private final RestHighLevelClient client;
+    private final IItemService itemService;
+    private final EsProperties esProperties;
+    private final PageCounter pageCounter;
+    private final SearchResultCache searchResultCache;
+    private final ItemSuggester itemSuggester;
+
+    /**
+     * 过滤项聚合结果缓存，key为规范化后的查询条件
+     */
+    private Cache<String, ItemFiltersVO> filtersCache;
+    /**
+     * ES不可用时，在该时间点之前直接降级走数据库
+     */
+    private volatile long fallbackUntil;
+
+    @PostConstruct
+    public void init() {
+        filtersCache = Caffeine.newBuilder()
+                .expireAfterWrite(esProperties.getFacets().getCacheTtl())
+                .maximumSize(esProperties.getFacets().getCacheSize())
+                .build();
+    }
+
+    @Override
+    public PageDTO<ItemDTO> search(ItemPageQuery query) {
+        // 查询条件和缓存key使用同一份规范化后的条件
+        query.normalize();
+        if (isEsAvailable()) {
+            // 只缓存ES的搜索结果，降级查询数据库的结果不缓存
+            PageDTO<ItemDTO> result = searchResultCache.get(query, () -> {
+                try {
+                    return searchByEs(query);
+                } catch (IOException | ElasticsearchException e) {
+                    handleEsFailure(e);
+                    return null;
+                }
+            });
+            if (result != null) {
+                return result;
+            }
+        }
+        return searchByDb(query);
+    }
+
+    @Override
+    public SearchCacheStatsVO queryCacheStats() {
+        return searchResultCache.stats();
+    }
+
+    @Override
+    public List<SuggestionVO> suggest(String prefix) {
+        return itemSuggester.suggest(prefix);
+    }
+
+    private PageDTO<ItemDTO> searchByEs(ItemPageQuery query) throws IOException {
+        // 1.准备Request
+        SearchRequest request = new SearchRequest(esProperties.getIndex());
+        // 2.组织DSL参数
+        SearchSourceBuilder source = request.source()
+                .query(buildQuery(query))
+                .from(query.from())
+                .size(query.getPageSize());
+        // 3.排序
+        applySort(source, query);
+        // 4.不需要总条数时，关闭命中数统计
+        boolean countless = pageCounter.strategyOf(COUNT_ENDPOINT) == CountStrategy.NONE;
+        if (countless) {
+            source.trackTotalHits(false);
+        }
+        // 5.发送请求
+        SearchResponse response = client.search(request, RequestOptions.DEFAULT);
+        // 6.解析结果
+        PageDTO<ItemDTO> result = parseResponse(response, query.getPageSize());
+        if (countless) {
+            long total = PageCounter.lowerBoundTotal(query.from(), query.getPageSize(), result.getList().size());
+            result.setTotal(total);
+            result.setPages((total + query.getPageSize() - 1) / query.getPageSize());
+        }
+        return result;
+    }
+
+    private void applySort(SearchSourceBuilder source, ItemPageQuery query) {
+        String sortField = SORT_FIELDS.get(StrUtil.nullToEmpty(query.getSortBy()));
+        if (sortField != null) {
+            source.sort(sortField, Boolean.FALSE.equals(query.getIsAsc()) ? SortOrder.DESC : SortOrder.ASC);
+        } else {
+            // 默认按相关度算分排序，算分相同的按更新时间倒序
+            source.sort(SortBuilders.scoreSort());
+            source.sort("updateTime", SortOrder.DESC);
+        }
+    }
+
+    @Override
+    public CursorPageDTO<ItemDTO> scroll(ItemPageQuery query) {
+        String digest = scrollDigest(query.normalize());
+        SearchCursor cursor = SearchCursor.decode(query.getCursor(), digest);
+        // 1.数据库游标只能继续走数据库
+        if (cursor != null && SearchCursor.TYPE_DB.equals(cursor.getType())) {
+            return scrollByDb(query, digest, cursor);
+        }
+        // 2.ES游标
+        if (isEsAvailable()) {
+            try {
+                return scrollByEs(query, digest, cursor);
+            } catch (ElasticsearchStatusException e) {
+                if (cursor != null && e.status() == RestStatus.NOT_FOUND) {
+                    throw new BadRequestException("搜索游标已过期，请重新搜索");
+                }
+                handleEsFailure(e);
+            } catch (IOException | ElasticsearchException e) {
+                handleEsFailure(e);
+            }
+        }
+        if (cursor != null) {
+            // 时间点快照只存在于ES中，无法在数据库中接着翻页
+            throw new BizIllegalException("搜索服务暂不可用，请重新搜索");
+        }
+        // 3.首页时ES不可用，降级为数据库游标分页
+        return scrollByDb(query, digest, null);
+    }
+
+    private CursorPageDTO<ItemDTO> scrollByEs(ItemPageQuery query, String digest, SearchCursor cursor) throws IOException {
+        TimeValue keepAlive = TimeValue.timeValueMillis(esProperties.getScroll().getKeepAlive().toMillis());
+        int size = query.getPageSize();
+        // 1.首页时创建时间点，之后的翻页都基于同一个快照
+        String pit = cursor == null ? openPointInTime(keepAlive) : cursor.getPit();
+        // 2.准备Request，使用时间点时不能指定索引库
+        SearchRequest request = new SearchRequest();
+        SearchSourceBuilder source = request.source()
+                .query(buildQuery(query))
+                .size(size + 1)
+                .trackTotalHits(false)
+                .pointInTimeBuilder(new PointInTimeBuilder(pit).setKeepAlive(keepAlive));
+        // 3.排序，最后按id排序保证顺序唯一
+        applySort(source, query);
+        source.sort("id", SortOrder.ASC);
+        if (cursor != null) {
+            source.searchAfter(cursor.getAfter());
+        }
+        // 4.发送请求，多查一条用于判断是否还有下一页
+        SearchResponse response = client.search(request, RequestOptions.DEFAULT);
+        SearchHit[] hits = response.getHits().getHits();
+        if (response.pointInTimeId() != null) {
+            pit = response.pointInTimeId();
+        }
+        // 5.解析结果
+        boolean hasMore = hits.length > size;
+        int count = Math.min(hits.length, size);
+        List<ItemDTO> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            list.add(toItemDTO(hits[i]));
+        }
+        if (!hasMore) {
+            closePointInTime(pit);
+            return new CursorPageDTO<>(list, null, false);
+        }
+        String next = SearchCursor.es(digest, pit, hits[size - 1].getSortValues()).encode();
+        return new CursorPageDTO<>(list, next, true);
+    }
+
+    private CursorPageDTO<ItemDTO> scrollByDb(ItemPageQuery query, String digest, SearchCursor cursor) {
+        PageQuery page = new PageQuery()
+                .setPageSize(query.getPageSize())
+                .setCursor(cursor == null ? null : cursor.getCursor());
+        CursorPageDTO<ItemDTO> result = CursorPages.page(
+                itemService.lambdaQuery()
+                        .like(StrUtil.isNotBlank(query.getKey()), Item::getName, query.getKey())
+                        .eq(StrUtil.isNotBlank(query.getBrand()), Item::getBrand, query.getBrand())
+                        .eq(StrUtil.isNotBlank(query.getCategory()), Item::getCategory, query.getCategory())
+                        .eq(Item::getStatus, 1)
+                        .between(query.getMaxPrice() != null, Item::getPrice, query.getMinPrice(), query.getMaxPrice()),
+                page, Item::getUpdateTime, LocalDateTime.class, Item::getId, false).convert(ItemDTO.class);
+        if (result.getNextCursor() != null) {
+            result.setNextCursor(SearchCursor.db(digest, result.getNextCursor()).encode());
+        }
+        return result;
+    }
+
+    /**
+     * 查询条件和排序方式的摘要，游标只能在相同的条件下继续使用
+     */
+    private static String scrollDigest(ItemPageQuery query) {
+        String sortField = SORT_FIELDS.get(StrUtil.nullToEmpty(query.getSortBy()));
+        String key = StrUtil.join("|", query.filterKey(), sortField == null ? "" : sortField,
+                sortField == null ? "" : !Boolean.FALSE.equals(query.getIsAsc()));
+        return Integer.toHexString(key.hashCode());
+    }
+
+    private String openPointInTime(TimeValue keepAlive) throws IOException {
+        Request request = new Request("POST", "/" + esProperties.getIndex() + "/_pit");
+        request.addParameter("keep_alive", keepAlive.getStringRep());
+        Response response = client.getLowLevelClient().performRequest(request);
+        return JSONUtil.parseObj(EntityUtils.toString(response.getEntity())).getStr("id");
+    }
+
+    private void closePointInTime(String pit) {
+        Request request = new Request("DELETE", "/_pit");
+        request.setJsonEntity(JSONUtil.createObj().set("id", pit).toString());
+        try {
+            client.getLowLevelClient().performRequest(request);
+        } catch (IOException e) {
+            // 关闭失败时，时间点会在保留时长后自动释放
+            log.warn("关闭ES时间点失败，原因：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 构建搜索条件：关键字全文检索，品牌、分类、价格过滤，广告商品加权
+     */
+    private QueryBuilder buildQuery(ItemPageQuery query) {
+        // 1.关键字搜索
+        BoolQueryBuilder bool = QueryBuilders.boolQuery().must(buildKeywordQuery(query));
+        // 2.品牌、分类、价格过滤
+        Stream.of(buildBrandFilter(query), buildCategoryFilter(query), buildPriceFilter(query))
+                .filter(Objects::nonNull)
+                .forEach(bool::filter);
+        // 3.广告商品算分加权
+        return QueryBuilders.functionScoreQuery(bool, new FunctionScoreQueryBuilder.FilterFunctionBuilder[]{
+                new FunctionScoreQueryBuilder.FilterFunctionBuilder(
+                        QueryBuilders.termQuery("isAD", true),
+                        ScoreFunctionBuilders.weightFactorFunction(esProperties.getAdBoost()))
+        }).boostMode(CombineFunction.MULTIPLY);
+    }
+
+    private QueryBuilder buildKeywordQuery(ItemPageQuery query) {
+        if (StrUtil.isNotBlank(query.getKey())) {
+            return QueryBuilders.matchQuery("name", query.getKey()).analyzer("ik_max_word");
+        }
+        return QueryBuilders.matchAllQuery();
+    }
+
+    private QueryBuilder buildBrandFilter(ItemPageQuery query) {
+        return StrUtil.isNotBlank(query.getBrand()) ? QueryBuilders.termQuery("brand", query.getBrand()) : null;
+    }
+
+    private QueryBuilder buildCategoryFilter(ItemPageQuery query) {
+        return StrUtil.isNotBlank(query.getCategory()) ? QueryBuilders.termQuery("category", query.getCategory()) : null;
+    }
+
+    private QueryBuilder buildPriceFilter(ItemPageQuery query) {
+        if (query.getMinPrice() == null && query.getMaxPrice() == null) {
+            return null;
+        }
+        RangeQueryBuilder range = QueryBuilders.rangeQuery("price");
+        if (query.getMinPrice() != null) {
+            range.gte(query.getMinPrice());
+        }
+        if (query.getMaxPrice() != null) {
+            range.lte(query.getMaxPrice());
+        }
+        return range;
+    }
+
+    /**
+     * 把多个过滤条件合并为一个，全部为空时匹配所有文档
+     */
+    private static QueryBuilder allOf(QueryBuilder... filters) {
+        BoolQueryBuilder bool = QueryBuilders.boolQuery();
+        Stream.of(filters).filter(Objects::nonNull).forEach(bool::filter);
+        return bool;
+    }
+
+    private PageDTO<ItemDTO> parseResponse(SearchResponse response, int pageSize) {
+        SearchHits searchHits = response.getHits();
+        // 1.总条数
+        long total = searchHits.getTotalHits() == null ? 0 : searchHits.getTotalHits().value;
+        // 2.文档数据
+        SearchHit[] hits = searchHits.getHits();
+        List<ItemDTO> list = new ArrayList<>(hits.length);
+        for (SearchHit hit : hits) {
+            list.add(toItemDTO(hit));
+        }
+        return new PageDTO<>(total, (total + pageSize - 1) / pageSize, list);
+    }
+
+    private static ItemDTO toItemDTO(SearchHit hit) {
+        ItemDoc itemDoc = JSONUtil.toBean(hit.getSourceAsString(), ItemDoc.class);
+        ItemDTO item = BeanUtils.copyBean(itemDoc, ItemDTO.class);
+        // 索引库中只有正常上架的商品
+        item.setStatus(1);
+        return item;
+    }
+
+    @Override
+    public ItemFiltersVO queryFilters(ItemPageQuery query) {
+        // 查询条件和缓存key使用同一份规范化后的条件
+        String key = query.normalize().filterKey();
+        ItemFiltersVO filters = filtersCache.getIfPresent(key);
+        if (filters != null) {
+            return filters;
+        }
+        if (!isEsAvailable()) {
+            // ES不可用时不返回过滤项，不影响商品列表的展示
+            return new ItemFiltersVO();
+        }
+        try {
+            filters = queryFiltersByEs(query);
+        } catch (IOException | ElasticsearchException e) {
+            handleEsFailure(e);
+            return new ItemFiltersVO();
+        }
+        filtersCache.put(key, filters);
+        return filters;
+    }
+
+    private ItemFiltersVO queryFiltersByEs(ItemPageQuery query) throws IOException {
+        EsProperties.Facets config = esProperties.getFacets();
+        QueryBuilder brand = buildBrandFilter(query);
+        QueryBuilder category = buildCategoryFilter(query);
+        QueryBuilder price = buildPriceFilter(query);
+        // 1.准备Request，只需要聚合结果，不需要文档
+        SearchRequest request = new SearchRequest(esProperties.getIndex());
+        // 2.每个聚合只应用其它维度的过滤条件，这样选中某个品牌后，依然能看到其它品牌的数量
+        request.source()
+                .query(buildKeywordQuery(query))
+                .size(0)
+                .trackTotalHits(false)
+                .aggregation(AggregationBuilders.filter(BRAND_AGG, allOf(category, price))
+                        .subAggregation(AggregationBuilders.terms(BRAND_AGG).field("brand").size(config.getSize())))
+                .aggregation(AggregationBuilders.filter(CATEGORY_AGG, allOf(brand, price))
+                        .subAggregation(AggregationBuilders.terms(CATEGORY_AGG).field("category").size(config.getSize())))
+                .aggregation(AggregationBuilders.filter(PRICE_AGG, allOf(brand, category))
+                        .subAggregation(AggregationBuilders.histogram(PRICE_AGG).field("price")
+                                .interval(config.getPriceInterval()).minDocCount(1)));
+        // 3.发送请求
+        SearchResponse response = client.search(request, RequestOptions.DEFAULT);
+        // 4.解析结果
+        Aggregations aggregations = response.getAggregations();
+        ItemFiltersVO filters = new ItemFiltersVO();
+        filters.setBrands(parseTerms(aggregations, BRAND_AGG));
+        filters.setCategories(parseTerms(aggregations, CATEGORY_AGG));
+        Histogram histogram = ((Filter) aggregations.get(PRICE_AGG)).getAggregations().get(PRICE_AGG);
+        for (Histogram.Bucket bucket : histogram.getBuckets()) {
+            int min = ((Number) bucket.getKey()).intValue();
+            filters.getPrices().add(new PriceRangeVO(min, min + config.getPriceInterval(), bucket.getDocCount()));
+        }
+        return filters;
+    }
+
+    private List<FacetVO> parseTerms(Aggregations aggregations, String name) {
+        Terms terms = ((Filter) aggregations.get(name)).getAggregations().get(name);
+        List<FacetVO> list = new ArrayList<>(terms.getBuckets().size());
+        for (Terms.Bucket bucket : terms.getBuckets()) {
+            list.add(new FacetVO(bucket.getKeyAsString(), bucket.getDocCount()));
+        }
+        return list;
+    }
+
+    /**
+     * 数据库降级查询
+     */
+    private PageDTO<ItemDTO> searchByDb(ItemPageQuery query) {
+        // 分页查询
+        Page<Item> result = pageCounter.page(COUNT_ENDPOINT, itemService, query.toMpPage("update_time", false),
+                Wrappers.lambdaQuery(Item.class)
+                        .like(StrUtil.isNotBlank(query.getKey()), Item::getName, query.getKey())
+                        .eq(StrUtil.isNotBlank(query.getBrand()), Item::getBrand, query.getBrand())
+                        .eq(StrUtil.isNotBlank(query.getCategory()), Item::getCategory, query.getCategory())
+                        .eq(Item::getStatus, 1)
+                        .between(query.getMaxPrice() != null, Item::getPrice, query.getMinPrice(), query.getMaxPrice()));
+        // 封装并返回
+        return PageDTO.of(result, ItemDTO.class);
+    }
+
+    private boolean isEsAvailable() {
+        return Boolean.TRUE.equals(esProperties.getEnabled()) && System.currentTimeMillis() >= fallbackUntil;
+    }
+
+    private void handleEsFailure(Exception e) {
+        if (e instanceof ElasticsearchStatusException && ((ElasticsearchStatusException) e).status().getStatus() < 500) {
+            // 4xx说明是本次请求参数的问题（如超出分页窗口），只对本次请求降级
+            log.warn("ES搜索请求异常，本次降级为数据库查询，原因：{}", e.getMessage());
+            return;
+        }
+        fallbackUntil = System.currentTimeMillis() + esProperties.getFallbackCooldown().toMillis();
+        log.error("ES搜索不可用，{}秒内降级为数据库查询", esProperties.getFallbackCooldown().getSeconds(), e);
+    }
+}
@@ -1,56 +1,331 @@
 package com.hmall.item.service.impl;
 
+import cn.hutool.core.util.StrUtil;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.hmall.api.dto.ItemDTO;
+import com.hmall.api.dto.ItemSnapshotsDTO;
 import com.hmall.api.dto.OrderDetailDTO;
+import com.hmall.api.dto.StockCommandDTO;
+import com.hmall.api.dto.StockResultDTO;
+import com.hmall.api.enums.ItemChangeType;
+import com.hmall.api.enums.StockAction;
+import com.hmall.common.exception.BadRequestException;
 import com.hmall.common.exception.BizIllegalException;
 import com.hmall.common.utils.BeanUtils;
+import com.hmall.common.utils.CollUtils;
+import com.hmall.item.cache.ItemCache;
 import com.hmall.item.domain.po.Item;
+import com.hmall.item.domain.po.StockReservation;
 import com.hmall.item.mapper.ItemMapper;
+import com.hmall.item.mapper.StockReservationMapper;
+import com.hmall.item.seckill.SeckillStockManager;
 import com.hmall.item.service.IItemService;
+import com.hmall.item.sync.ItemChangePublisher;
 import io.seata.spring.annotation.GlobalTransactional;
+import io.seata.tm.api.transaction.Propagation;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
-
-import static com.baomidou.mybatisplus.extension.toolkit.SqlHelper.executeBatch;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * 商品表 服务实现类
  */
 @Service
+@RequiredArgsConstructor
 public class ItemServiceImpl extends ServiceImpl<ItemMapper, Item> implements IItemService {
 
+    private final ItemChangePublisher itemChangePublisher;
+    private final ItemCache itemCache;
+    private final SeckillStockManager seckillStockManager;
+    private final TransactionTemplate transactionTemplate;
+    private final StockReservationMapper stockReservationMapper;
+
+    /**
+     * 扣减库存。秒杀商品先扣减内存库存，售罄时直接拒绝，不再访问数据库；
+     * 然后所有商品在一条条件更新语句中扣减数据库库存，库存不足的商品不会被扣减，只要有一个商品不足就整体回滚，
+     * 并归还已扣减的内存库存。单条语句按主键顺序加锁，每个商品只加一次行锁；
+     * 扣减是本地事务，不注册Seata分支事务，没有undo log开销
+     */
     @Override
-    @GlobalTransactional
+    @GlobalTransactional(propagation = Propagation.NOT_SUPPORTED)
     public void deductStock(List<OrderDetailDTO> items) {
-        String sqlStatement = "com.hmall.item.mapper.ItemMapper.updateStock";
-        boolean r = false;
+        // 1.合并同一商品的多个明细
+        Collection<OrderDetailDTO> lines = mergeLines(items);
+        if (lines.isEmpty()) {
+            return;
+        }
+        // 2.秒杀商品扣减内存库存
+        List<OrderDetailDTO> reserved = seckillStockManager.reserve(lines);
+        // 3.扣减数据库库存，失败时归还内存库存
+        boolean success;
         try {
-            r = executeBatch(items, (sqlSession, entity) -> sqlSession.update(sqlStatement, entity));
-        } catch (Exception e) {
-            throw new BizIllegalException("更新库存异常，可能是库存不足!", e);
+            success = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                if (baseMapper.deductStockBatch(lines) < lines.size()) {
+                    // 有商品库存不足，撤销已扣减的商品
+                    status.setRollbackOnly();
+                    return false;
+                }
+                return true;
+            }));
+        } catch (RuntimeException e) {
+            seckillStockManager.release(reserved);
+            throw e;
         }
-        if (!r) {
-            throw new BizIllegalException("库存不足！");
+        if (!success) {
+            seckillStockManager.release(reserved);
+            throw new BizIllegalException("库存不足：" + describeShortages(lines));
         }
+        itemChangePublisher.publish(collectItemIds(lines), ItemChangeType.STOCK);
     }
 
     @Override
-    @GlobalTransactional
+    @GlobalTransactional(propagation = Propagation.NOT_SUPPORTED)
     public void restoreStock(List<OrderDetailDTO> items) {
-        String sqlStatement = "com.hmall.item.mapper.ItemMapper.restoreStock";
-        boolean success = executeBatch(items, (sqlSession, entity) -> 
-            sqlSession.update(sqlStatement, entity));
-        if (!success) {
-            throw new BizIllegalException("恢复库存失败！");
+        Collection<OrderDetailDTO> lines = mergeLines(items);
+        if (lines.isEmpty()) {
+            return;
+        }
+        // 1.恢复数据库库存
+        Boolean success = transactionTemplate.execute(status -> {
+            if (baseMapper.restoreStockBatch(lines) < lines.size()) {
+                status.setRollbackOnly();
+                return false;
+            }
+            return true;
+        });
+        if (!Boolean.TRUE.equals(success)) {
+            throw new BizIllegalException("恢复库存失败，商品不存在！");
+        }
+        // 2.数据库恢复成功后再把秒杀商品归还到内存库存
+        seckillStockManager.release(lines);
+        itemChangePublisher.publish(collectItemIds(lines), ItemChangeType.STOCK);
+    }
+
+    @Override
+    public StockResultDTO reserveStock(StockCommandDTO cmd) {
+        Long orderId = cmd.getOrderId();
+        // 1.已执行过的命令，返回记录的结果
+        StockReservation done = findReservation(orderId, StockAction.RESERVE);
+        if (done != null) {
+            return toResult(done);
+        }
+        Collection<OrderDetailDTO> lines = mergeLines(cmd.getItems());
+        // 2.秒杀商品扣减内存库存
+        List<OrderDetailDTO> reserved;
+        try {
+            reserved = seckillStockManager.reserve(lines);
+        } catch (BizIllegalException e) {
+            return recordFailure(orderId, StockAction.RESERVE, e.getMessage());
+        }
+        // 3.扣减数据库库存，与执行记录在同一个事务中提交，唯一键保证同一订单只扣减一次
+        Boolean success;
+        try {
+            success = transactionTemplate.execute(status -> {
+                stockReservationMapper.insert(newReservation(orderId, StockAction.RESERVE, true, null));
+                if (!lines.isEmpty() && baseMapper.deductStockBatch(lines) < lines.size()) {
+                    status.setRollbackOnly();
+                    return false;
+                }
+                return true;
+            });
+        } catch (DuplicateKeyException e) {
+            // 其它实例并发执行了同一命令，以它的结果为准
+            seckillStockManager.release(reserved);
+            return toResult(findReservation(orderId, StockAction.RESERVE));
+        } catch (RuntimeException e) {
+            seckillStockManager.release(reserved);
+            throw e;
+        }
+        if (!Boolean.TRUE.equals(success)) {
+            seckillStockManager.release(reserved);
+            return recordFailure(orderId, StockAction.RESERVE, "库存不足：" + describeShortages(lines));
+        }
+        if (!lines.isEmpty()) {
+            itemChangePublisher.publish(collectItemIds(lines), ItemChangeType.STOCK);
+        }
+        return StockResultDTO.success(orderId, StockAction.RESERVE);
+    }
+
+    @Override
+    public StockResultDTO cancelStockReservation(StockCommandDTO cmd) {
+        Long orderId = cmd.getOrderId();
+        // 1.已执行过的命令，返回记录的结果
+        StockReservation done = findReservation(orderId, StockAction.RESTORE);
+        if (done != null) {
+            return toResult(done);
+        }
+        // 2.预留失败的订单没有扣减过库存，不能归还。没有预留记录时先记录预留失败，
+        // 下单超时后才到达的预留命令不会再扣减；并发的预留已提交时以它的结果为准
+        StockReservation reservation = findReservation(orderId, StockAction.RESERVE);
+        boolean deducted = reservation == null
+                ? Boolean.TRUE.equals(recordFailure(orderId, StockAction.RESERVE, "订单已取消").getSuccess())
+                : Boolean.TRUE.equals(reservation.getSuccess());
+        Collection<OrderDetailDTO> lines = deducted ? mergeLines(cmd.getItems()) : CollUtils.emptyList();
+        // 3.恢复数据库库存，与执行记录在同一个事务中提交
+        Boolean success;
+        try {
+            success = transactionTemplate.execute(status -> {
+                stockReservationMapper.insert(newReservation(orderId, StockAction.RESTORE, true, null));
+                if (!lines.isEmpty() && baseMapper.restoreStockBatch(lines) < lines.size()) {
+                    status.setRollbackOnly();
+                    return false;
+                }
+                return true;
+            });
+        } catch (DuplicateKeyException e) {
+            return toResult(findReservation(orderId, StockAction.RESTORE));
+        }
+        if (!Boolean.TRUE.equals(success)) {
+            // 归还失败不记录，交易服务稍后重试
+            return StockResultDTO.fail(orderId, StockAction.RESTORE, "恢复库存失败，商品不存在！");
+        }
+        // 4.事务提交后再归还秒杀商品的内存库存
+        seckillStockManager.release(lines);
+        if (!lines.isEmpty()) {
+            itemChangePublisher.publish(collectItemIds(lines), ItemChangeType.STOCK);
+        }
+        return StockResultDTO.success(orderId, StockAction.RESTORE);
+    }
+
+    private StockReservation findReservation(Long orderId, StockAction action) {
+        return stockReservationMapper.selectByOrder(orderId, action.getValue());
+    }
+
+    /**
+     * 记录执行失败的预留命令，其它实例已并发记录了结果时以它的结果为准
+     */
+    private StockResultDTO recordFailure(Long orderId, StockAction action, String reason) {
+        try {
+            stockReservationMapper.insert(newReservation(orderId, action, false, StrUtil.maxLength(reason, 1000)));
+        } catch (DuplicateKeyException e) {
+            return toResult(findReservation(orderId, action));
         }
+        return StockResultDTO.fail(orderId, action, reason);
+    }
+
+    private static StockReservation newReservation(Long orderId, StockAction action, boolean success, String reason) {
+        return new StockReservation()
+                .setOrderId(orderId)
+                .setAction(action.getValue())
+                .setSuccess(success)
+                .setReason(reason);
+    }
+
+    private static StockResultDTO toResult(StockReservation reservation) {
+        StockAction action = reservation.getAction() == StockAction.RESERVE.getValue()
+                ? StockAction.RESERVE : StockAction.RESTORE;
+        return new StockResultDTO(reservation.getOrderId(), action, reservation.getSuccess(), reservation.getReason());
     }
 
     @Override
     public List<ItemDTO> queryItemByIds(Collection<Long> ids) {
+        return itemCache.getAll(ids, this::loadItemByIds);
+    }
+
+    @Override
+    public ItemDTO queryItemById(Long id) {
+        return itemCache.get(id, this::loadItemByIds);
+    }
+
+    @Override
+    public ItemSnapshotsDTO queryItemSnapshots(Collection<Long> ids) {
+        if (CollUtils.isEmpty(ids)) {
+            return ItemSnapshotsDTO.empty();
+        }
+        Set<Long> keys = new LinkedHashSet<>(ids);
+        // 1.查询缓存
+        Map<Long, ItemDTO> cached = itemCache.getAllPresent(keys);
+        // 2.未命中的只查询价格、库存、状态
+        Map<Long, Item> loaded = CollUtils.emptyMap();
+        if (cached.size() < keys.size()) {
+            List<Long> missing = keys.stream().filter(id -> !cached.containsKey(id)).collect(Collectors.toList());
+            loaded = lambdaQuery()
+                    .select(Item::getId, Item::getPrice, Item::getStock, Item::getStatus)
+                    .in(Item::getId, missing)
+                    .list()
+                    .stream()
+                    .collect(Collectors.toMap(Item::getId, Function.identity()));
+        }
+        // 3.按列组装
+        int n = cached.size() + loaded.size();
+        ItemSnapshotsDTO snapshots = new ItemSnapshotsDTO(new long[n], new int[n], new int[n], new int[n]);
+        int i = 0;
+        for (Long id : keys) {
+            ItemDTO item = cached.get(id);
+            Item po = loaded.get(id);
+            if (item != null) {
+                fillSnapshot(snapshots, i++, id, item.getPrice(), item.getStock(), item.getStatus());
+            } else if (po != null) {
+                fillSnapshot(snapshots, i++, id, po.getPrice(), po.getStock(), po.getStatus());
+            }
+        }
+        return snapshots;
+    }
+
+    private static void fillSnapshot(ItemSnapshotsDTO snapshots, int i, Long id, Integer price, Integer stock, Integer status) {
+        snapshots.getIds()[i] = id;
+        snapshots.getPrices()[i] = price == null ? 0 : price;
+        snapshots.getStocks()[i] = stock == null ? 0 : stock;
+        snapshots.getStatuses()[i] = status == null ? 0 : status;
+    }
+
+    private List<ItemDTO> loadItemByIds(Collection<Long> ids) {
         return BeanUtils.copyList(listByIds(ids), ItemDTO.class);
     }
+
+    /**
+     * 把同一商品的多个明细合并为一个，并校验数量
+     */
+    private Collection<OrderDetailDTO> mergeLines(List<OrderDetailDTO> items) {
+        if (CollUtils.isEmpty(items)) {
+            return CollUtils.emptyList();
+        }
+        Map<Long, OrderDetailDTO> lines = new TreeMap<>();
+        for (OrderDetailDTO item : items) {
+            if (item.getItemId() == null || item.getNum() == null || item.getNum() <= 0) {
+                throw new BadRequestException("商品id和数量不能为空，且数量必须大于0");
+            }
+            lines.merge(item.getItemId(), new OrderDetailDTO().setItemId(item.getItemId()).setNum(item.getNum()),
+                    (a, b) -> a.setNum(a.getNum() + b.getNum()));
+        }
+        return lines.values();
+    }
+
+    /**
+     * 查询库存不足的商品，拼接为提示信息
+     */
+    private String describeShortages(Collection<OrderDetailDTO> lines) {
+        Map<Long, Item> stocks = lambdaQuery()
+                .select(Item::getId, Item::getName, Item::getStock)
+                .in(Item::getId, collectItemIds(lines))
+                .list()
+                .stream()
+                .collect(Collectors.toMap(Item::getId, Function.identity()));
+        List<String> shortages = new ArrayList<>();
+        for (OrderDetailDTO line : lines) {
+            Item item = stocks.get(line.getItemId());
+            if (item == null) {
+                shortages.add(StrUtil.format("商品{}不存在", line.getItemId()));
+            } else if (item.getStock() < line.getNum()) {
+                shortages.add(StrUtil.format("{}(id:{})剩余{}件，需要{}件",
+                        item.getName(), item.getId(), item.getStock(), line.getNum()));
+            }
+        }
+        return String.join("；", shortages);
+    }
+
+    private List<Long> collectItemIds(Collection<OrderDetailDTO> items) {
+        return items.stream().map(OrderDetailDTO::getItemId).distinct().collect(Collectors.toList());
+    }
 }
@@ -0,0 +1,185 @@
+package com.hmall.item.suggest;
+
+import com.baomidou.mybatisplus.extension.conditions.query.LambdaQueryChainWrapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hmall.common.utils.CollUtils;
+import com.hmall.item.config.EsProperties;
+import com.hmall.item.domain.po.Item;
+import com.hmall.item.domain.vo.SuggestionVO;
+import com.hmall.item.service.IItemService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 搜索建议，在本实例内存中维护商品名称、品牌、分类的前缀索引，查询不访问ES和数据库。
+ * <p>
+ * 启动后在后台全量加载一次正常上架的商品，之后只通过商品变更消息增量维护：
+ * 变更的商品id先记录下来，定时按id回查数据库，上架的商品写入索引，其余的移除。
+ * 前缀的查询结果会被缓存，索引变化后清空缓存。
+ */
+@Slf4j
+@Component
+public class ItemSuggester {
+
+    private final IItemService itemService;
+    private final EsProperties.Suggest properties;
+    private final SuggestIndex index = new SuggestIndex();
+    private final Cache<String, List<SuggestionVO>> cache;
+    /**
+     * 待刷新的商品id
+     */
+    private final Set<Long> dirtyIds = ConcurrentHashMap.newKeySet();
+
+    public ItemSuggester(IItemService itemService, EsProperties esProperties) {
+        this.itemService = itemService;
+        this.properties = esProperties.getSuggest();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getCacheSize())
+                .expireAfterWrite(properties.getCacheTtl())
+                .build();
+    }
+
+    /**
+     * 查询搜索建议
+     *
+     * @param prefix 用户已输入的内容
+     * @return 以其开头的搜索词，按热度倒序
+     */
+    public List<SuggestionVO> suggest(String prefix) {
+        if (!Boolean.TRUE.equals(properties.getEnabled())) {
+            return List.of();
+        }
+        String key = SuggestIndex.normalize(prefix);
+        if (key == null) {
+            return List.of();
+        }
+        if (key.length() > properties.getMaxPrefixLength()) {
+            key = key.substring(0, properties.getMaxPrefixLength());
+        }
+        return cache.get(key, k -> index.suggest(k, properties.getSize()));
+    }
+
+    /**
+     * 标记商品需要刷新，会在下一个刷新周期生效
+     *
+     * @param ids 商品id集合
+     */
+    public void markDirty(Collection<Long> ids) {
+        if (!Boolean.TRUE.equals(properties.getEnabled()) || CollUtils.isEmpty(ids)) {
+            return;
+        }
+        dirtyIds.addAll(ids);
+    }
+
+    /**
+     * 应用启动后在后台全量加载，加载完成前返回的建议可能不完整
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startLoading() {
+        if (!Boolean.TRUE.equals(properties.getEnabled())) {
+            return;
+        }
+        Thread loader = new Thread(this::load, "item-suggest-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * 定时刷新变更过的商品
+     */
+    @Scheduled(fixedDelayString = "${hm.es.suggest.refresh-interval:1000}")
+    public void refresh() {
+        boolean changed = false;
+        while (!dirtyIds.isEmpty()) {
+            List<Long> ids = drain(properties.getBatchSize());
+            List<Item> items;
+            try {
+                items = selectColumns().in(Item::getId, ids).list();
+            } catch (Exception e) {
+                log.error("刷新搜索建议失败，{}个商品等待下次刷新", ids.size(), e);
+                dirtyIds.addAll(ids);
+                break;
+            }
+            // 查不到或不是上架状态的商品从索引中移除
+            Set<Long> found = new HashSet<>(items.size());
+            for (Item item : items) {
+                found.add(item.getId());
+                apply(item, false);
+            }
+            ids.stream().filter(id -> !found.contains(id)).forEach(index::remove);
+            changed = true;
+        }
+        if (changed) {
+            cache.invalidateAll();
+        }
+    }
+
+    private void load() {
+        long begin = System.currentTimeMillis();
+        long lastId = 0;
+        int count = 0;
+        try {
+            while (true) {
+                // 按id游标分页，避免深分页
+                List<Item> items = selectColumns()
+                        .eq(Item::getStatus, 1)
+                        .gt(Item::getId, lastId)
+                        .orderByAsc(Item::getId)
+                        .last("LIMIT " + properties.getBatchSize())
+                        .list();
+                if (items.isEmpty()) {
+                    break;
+                }
+                for (Item item : items) {
+                    apply(item, true);
+                }
+                count += items.size();
+                lastId = items.get(items.size() - 1).getId();
+            }
+        } catch (Exception e) {
+            log.error("搜索建议全量加载失败，已加载{}个商品，之后只增量维护", count, e);
+        }
+        cache.invalidateAll();
+        log.info("搜索建议全量加载完成，共{}个商品，{}个搜索词，耗时{}ms",
+                count, index.size(), System.currentTimeMillis() - begin);
+    }
+
+    private LambdaQueryChainWrapper<Item> selectColumns() {
+        return itemService.lambdaQuery()
+                .select(Item::getId, Item::getName, Item::getBrand, Item::getCategory, Item::getSold, Item::getStatus);
+    }
+
+    private void apply(Item item, boolean loading) {
+        if (item.getStatus() == null || item.getStatus() != 1) {
+            index.remove(item.getId());
+            return;
+        }
+        if (loading) {
+            index.putIfAbsent(item.getId(), item.getName(), item.getBrand(), item.getCategory(), item.getSold());
+        } else {
+            index.put(item.getId(), item.getName(), item.getBrand(), item.getCategory(), item.getSold());
+        }
+    }
+
+    private List<Long> drain(int max) {
+        List<Long> ids = new ArrayList<>(Math.min(max, dirtyIds.size()));
+        Iterator<Long> it = dirtyIds.iterator();
+        while (it.hasNext() && ids.size() < max) {
+            ids.add(it.next());
+            it.remove();
+        }
+        return ids;
+    }
+}
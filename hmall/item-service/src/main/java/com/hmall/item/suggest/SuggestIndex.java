@@ -0,0 +1,182 @@
+package com.hmall.item.suggest;
+
+import cn.hutool.core.util.StrUtil;
+import com.hmall.item.domain.vo.SuggestionVO;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * 基于有序跳表的搜索词前缀索引，搜索词来自商品名称、品牌、分类。
+ * <p>
+ * 搜索词规范化（去除首尾空白、合并连续空白、转小写）后作为key，前缀查询就是跳表上的一次范围扫描，
+ * 按权重取前N个。同一个搜索词可能来自多个商品，记录引用次数，最后一个商品移除时搜索词才会被删除。
+ * 权重为所有引用商品的销量+1之和，卖得多的商品及其品牌、分类排在前面。
+ * <p>
+ * 查询无锁，写操作串行执行，每个条目都是不可变对象，读到的总是完整的条目。
+ */
+public class SuggestIndex {
+
+    public static final String TYPE_NAME = "name";
+    public static final String TYPE_BRAND = "brand";
+    public static final String TYPE_CATEGORY = "category";
+
+    /**
+     * 搜索词与其来源类型之间的分隔符，小于任何可见字符，不影响前缀范围
+     */
+    private static final char SEPARATOR = '\u0000';
+
+    /**
+     * 排序规则，权重大的在前，权重相同时短的搜索词在前
+     */
+    private static final Comparator<Term> RANK = Comparator.<Term>comparingLong(t -> t.weight)
+            .thenComparing(t -> t.text.length(), Comparator.reverseOrder());
+
+    private final ConcurrentSkipListMap<String, Term> terms = new ConcurrentSkipListMap<>();
+    /**
+     * 每个商品贡献的搜索词，商品变化时据此撤销旧的贡献
+     */
+    private final Map<Long, Contribution> items = new ConcurrentHashMap<>();
+
+    /**
+     * 写入或替换商品贡献的搜索词
+     *
+     * @param id       商品id
+     * @param name     商品名称
+     * @param brand    品牌
+     * @param category 分类
+     * @param sold     销量
+     */
+    public synchronized void put(long id, String name, String brand, String category, Integer sold) {
+        remove(id);
+        long weight = (sold == null || sold < 0 ? 0 : sold) + 1L;
+        List<String> keys = new ArrayList<>(3);
+        addTerm(keys, name, TYPE_NAME, weight);
+        addTerm(keys, brand, TYPE_BRAND, weight);
+        addTerm(keys, category, TYPE_CATEGORY, weight);
+        items.put(id, new Contribution(keys.toArray(new String[0]), weight));
+    }
+
+    /**
+     * 仅当商品不在索引中时写入，用于全量加载，避免覆盖加载期间增量更新写入的新数据
+     */
+    public synchronized void putIfAbsent(long id, String name, String brand, String category, Integer sold) {
+        if (!items.containsKey(id)) {
+            put(id, name, brand, category, sold);
+        }
+    }
+
+    /**
+     * 移除商品贡献的搜索词
+     *
+     * @param id 商品id
+     */
+    public synchronized void remove(long id) {
+        Contribution old = items.remove(id);
+        if (old == null) {
+            return;
+        }
+        for (String key : old.keys) {
+            terms.computeIfPresent(key, (k, t) -> t.refs <= 1 ? null : new Term(t.text, t.type, t.refs - 1, t.weight - old.weight));
+        }
+    }
+
+    /**
+     * 查询以指定前缀开头的搜索词
+     *
+     * @param prefix 前缀，需要先规范化
+     * @param limit  最多返回的数量
+     * @return 搜索建议，按权重倒序
+     */
+    public List<SuggestionVO> suggest(String prefix, int limit) {
+        if (StrUtil.isEmpty(prefix) || limit <= 0) {
+            return List.of();
+        }
+        // 1.范围扫描，用小顶堆保留权重最大的limit个
+        NavigableMap<String, Term> range = terms.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        PriorityQueue<Term> top = new PriorityQueue<>(limit + 1, RANK);
+        for (Term term : range.values()) {
+            if (top.size() < limit) {
+                top.add(term);
+            } else if (RANK.compare(term, top.peek()) > 0) {
+                top.poll();
+                top.add(term);
+            }
+        }
+        // 2.按权重倒序返回
+        List<SuggestionVO> result = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            Term term = top.poll();
+            result.add(new SuggestionVO(term.text, term.type));
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * @return 搜索词数量
+     */
+    public int size() {
+        return terms.size();
+    }
+
+    /**
+     * 规范化搜索词：去除首尾空白、合并连续空白、转小写
+     *
+     * @param text 原始文本
+     * @return 规范化后的文本，为空白时返回null
+     */
+    public static String normalize(String text) {
+        if (StrUtil.isBlank(text)) {
+            return null;
+        }
+        return text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private void addTerm(List<String> keys, String text, String type, long weight) {
+        String normalized = normalize(text);
+        if (normalized == null) {
+            return;
+        }
+        String key = normalized + SEPARATOR + type;
+        if (keys.contains(key)) {
+            return;
+        }
+        keys.add(key);
+        String display = text.trim().replaceAll("\\s+", " ");
+        terms.merge(key, new Term(display, type, 1, weight),
+                (t, n) -> new Term(t.text, t.type, t.refs + 1, t.weight + weight));
+    }
+
+    private static class Term {
+        private final String text;
+        private final String type;
+        private final int refs;
+        private final long weight;
+
+        private Term(String text, String type, int refs, long weight) {
+            this.text = text;
+            this.type = type;
+            this.refs = refs;
+            this.weight = weight;
+        }
+    }
+
+    private static class Contribution {
+        private final String[] keys;
+        private final long weight;
+
+        private Contribution(String[] keys, long weight) {
+            this.keys = keys;
+            this.weight = weight;
+        }
+    }
+}
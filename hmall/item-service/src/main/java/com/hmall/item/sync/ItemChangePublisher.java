@@ -0,0 +1,64 @@
+package com.hmall.item.sync;
+
+import com.hmall.api.constants.ItemMQConstants;
+import com.hmall.api.dto.ItemChangeDTO;
+import com.hmall.api.enums.ItemChangeType;
+import com.hmall.common.utils.CollUtils;
+import com.hmall.common.utils.RabbitMqHelper;
+import com.hmall.item.cache.ItemCacheInvalidator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 商品变更消息发送者，所有对商品数据的写操作完成后都应该通过它发出通知。
+ * 发送通知的同时会删除商品缓存并广播给其它实例，存在事务时在事务提交后再删除一次，避免并发读把旧数据写回缓存。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ItemChangePublisher {
+
+    private final RabbitMqHelper rabbitMqHelper;
+    private final ItemCacheInvalidator itemCacheInvalidator;
+
+    public void publish(Long id, ItemChangeType type) {
+        publish(List.of(id), type);
+    }
+
+    public void publish(Collection<Long> ids, ItemChangeType type) {
+        if (CollUtils.isEmpty(ids)) {
+            return;
+        }
+        ItemChangeDTO msg = new ItemChangeDTO(new ArrayList<>(ids), type);
+        // 库存变更不删除热点缓存，热点商品的库存允许短暂的延迟
+        boolean keepPinned = type == ItemChangeType.STOCK;
+        itemCacheInvalidator.invalidate(msg.getIds(), keepPinned);
+        // 存在事务时，等事务提交后再发送，避免消费者读到未提交的数据
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    itemCacheInvalidator.invalidate(msg.getIds(), keepPinned);
+                    send(msg);
+                }
+            });
+            return;
+        }
+        send(msg);
+    }
+
+    private void send(ItemChangeDTO msg) {
+        try {
+            rabbitMqHelper.sendMessage(ItemMQConstants.EXCHANGE_NAME, ItemMQConstants.CHANGE_KEY, msg);
+        } catch (Exception e) {
+            log.error("发送商品变更消息失败，商品id：{}，变更类型：{}", msg.getIds(), msg.getType(), e);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.hmall.item.sync;
+
+import cn.hutool.json.JSONUtil;
+import com.hmall.api.enums.ItemChangeType;
+import com.hmall.common.utils.BeanUtils;
+import com.hmall.common.utils.CollUtils;
+import com.hmall.item.cache.ItemCacheInvalidator;
+import com.hmall.item.config.EsProperties;
+import com.hmall.item.domain.po.Item;
+import com.hmall.item.domain.po.ItemDoc;
+import com.hmall.item.service.IItemService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.rest.RestStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 商品索引库增量同步器。
+ * <p>
+ * 收到的商品变更只记录商品id，同一个商品在一个刷新周期内的多次变更会被合并，
+ * 刷新时按id回查数据库的最新数据，再以BulkRequest批量写入索引库。
+ * 全量重建索引库期间，变更会同时写入正在构建的新索引库。同步队列由多个实例竞争消费，
+ * 其它实例消费的变更只写入旧索引库，因此每个实例另外通过匿名队列收到所有变更，
+ * 正在重建的实例据此记录变更过的商品，在切换别名前后重放。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ItemIndexSyncer {
+
+    private final RestHighLevelClient client;
+    private final IItemService itemService;
+    private final EsProperties esProperties;
+    private final ItemCacheInvalidator itemCacheInvalidator;
+
+    /**
+     * 待同步的商品id，value表示是否有库存以外的变更，只有这类变更需要让搜索结果缓存失效
+     */
+    private final Map<Long, Boolean> dirtyIds = new ConcurrentHashMap<>();
+    /**
+     * 同步失败的商品id及其失败次数
+     */
+    private final Map<Long, Integer> failures = new ConcurrentHashMap<>();
+    /**
+     * 正在全量重建的新索引库，为空表示没有进行中的重建
+     */
+    private volatile String mirrorIndex;
+    /**
+     * 重建期间同步过的商品id
+     */
+    private final Set<Long> mirroredIds = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 标记商品需要同步，数据会在下一个刷新周期写入索引库
+     *
+     * @param ids  商品id集合
+     * @param type 变更类型
+     */
+    public void markDirty(Collection<Long> ids, ItemChangeType type) {
+        if (CollUtils.isEmpty(ids)) {
+            return;
+        }
+        boolean visible = type != ItemChangeType.STOCK;
+        for (Long id : ids) {
+            dirtyIds.merge(id, visible, Boolean::logicalOr);
+        }
+    }
+
+    /**
+     * 记录全量重建期间变更过的商品，没有进行中的重建时忽略
+     *
+     * @param ids 商品id集合
+     */
+    public void recordMirror(Collection<Long> ids) {
+        if (mirrorIndex == null || CollUtils.isEmpty(ids)) {
+            return;
+        }
+        mirroredIds.addAll(ids);
+    }
+
+    /**
+     * 开始向正在重建的新索引库同步变更
+     *
+     * @param index 新索引库名称
+     */
+    public synchronized void startMirror(String index) {
+        mirroredIds.clear();
+        mirrorIndex = index;
+    }
+
+    /**
+     * 将上次重放后变更过的商品重新写入一遍，覆盖全量导入时可能写入的旧数据
+     *
+     * @return 是否全部写入成功
+     */
+    public synchronized boolean replayMirror() {
+        List<Long> ids = new ArrayList<>(mirroredIds);
+        mirroredIds.removeAll(ids);
+        markDirty(ids, ItemChangeType.UPDATE);
+        flush();
+        return dirtyIds.isEmpty();
+    }
+
+    /**
+     * 停止向新索引库同步变更
+     */
+    public synchronized void stopMirror() {
+        mirrorIndex = null;
+        mirroredIds.clear();
+    }
+
+    /**
+     * 定时将待同步的商品批量写入索引库
+     */
+    @Scheduled(fixedDelayString = "${hm.es.sync.flush-interval:500}")
+    public synchronized void flush() {
+        while (!dirtyIds.isEmpty()) {
+            Map<Long, Boolean> batch = drain(esProperties.getSync().getBatchSize());
+            if (!flushBatch(batch)) {
+                // ES不可用，剩余数据等下个周期再同步
+                return;
+            }
+            // 索引库数据已变化，搜索结果缓存失效。只有库存变更的批次不失效，下单时库存以商品服务为准
+            if (batch.containsValue(true)) {
+                itemCacheInvalidator.invalidateSearch();
+            }
+        }
+    }
+
+    /**
+     * 局部更新商品的销量，只修改sold字段，不回查其它数据。
+     * 更新失败的商品转为完整同步；索引库中不存在的商品（如已下架）直接忽略
+     *
+     * @param soldMap 商品id与最新销量
+     */
+    public void updateSold(Map<Long, Integer> soldMap) {
+        if (CollUtils.isEmpty(soldMap)) {
+            return;
+        }
+        // 1.准备Request
+        String mirror = mirrorIndex;
+        BulkRequest request = new BulkRequest();
+        soldMap.forEach((id, sold) -> {
+            Map<String, Object> doc = Map.of("sold", sold);
+            request.add(new UpdateRequest(esProperties.getIndex(), id.toString()).doc(doc));
+            if (mirror != null) {
+                request.add(new UpdateRequest(mirror, id.toString()).doc(doc));
+            }
+        });
+        // 2.发送请求
+        BulkResponse response;
+        try {
+            response = client.bulk(request, RequestOptions.DEFAULT);
+        } catch (Exception e) {
+            log.error("商品销量局部更新失败，{}条数据转为完整同步", soldMap.size(), e);
+            markDirty(soldMap.keySet(), ItemChangeType.UPDATE);
+            return;
+        }
+        // 3.处理失败的条目
+        if (response.hasFailures()) {
+            for (BulkItemResponse item : response.getItems()) {
+                if (item.isFailed() && item.status() != RestStatus.NOT_FOUND) {
+                    log.warn("商品销量局部更新失败，商品id：{}，原因：{}", item.getId(), item.getFailureMessage());
+                    markDirty(List.of(Long.valueOf(item.getId())), ItemChangeType.UPDATE);
+                }
+            }
+        }
+    }
+
+    private Map<Long, Boolean> drain(int max) {
+        Map<Long, Boolean> batch = new LinkedHashMap<>();
+        Iterator<Long> it = dirtyIds.keySet().iterator();
+        while (it.hasNext() && batch.size() < max) {
+            Long id = it.next();
+            // 按key移除并取出最新的值，不会丢失并发合并的变更类型
+            Boolean visible = dirtyIds.remove(id);
+            if (visible != null) {
+                batch.put(id, visible);
+            }
+        }
+        return batch;
+    }
+
+    private boolean flushBatch(Map<Long, Boolean> batch) {
+        List<Long> ids = new ArrayList<>(batch.keySet());
+        // 1.查询商品最新数据
+        Map<Long, Item> itemMap = itemService.listByIds(ids).stream()
+                .collect(Collectors.toMap(Item::getId, Function.identity()));
+        // 2.准备Request，正常上架的商品写入索引库，其余的从索引库删除
+        String mirror = mirrorIndex;
+        BulkRequest request = new BulkRequest();
+        for (Long id : ids) {
+            Item item = itemMap.get(id);
+            if (item != null && item.getStatus() != null && item.getStatus() == 1) {
+                String source = JSONUtil.toJsonStr(BeanUtils.copyBean(item, ItemDoc.class));
+                request.add(new IndexRequest(esProperties.getIndex()).id(id.toString()).source(source, XContentType.JSON));
+                if (mirror != null) {
+                    request.add(new IndexRequest(mirror).id(id.toString()).source(source, XContentType.JSON));
+                }
+            } else {
+                request.add(new DeleteRequest(esProperties.getIndex(), id.toString()));
+                if (mirror != null) {
+                    request.add(new DeleteRequest(mirror, id.toString()));
+                }
+            }
+        }
+        // 3.发送请求
+        BulkResponse response;
+        try {
+            response = client.bulk(request, RequestOptions.DEFAULT);
+        } catch (Exception e) {
+            log.error("商品索引库同步失败，{}条数据等待重试", ids.size(), e);
+            retry(batch, ids);
+            return false;
+        }
+        // 4.处理失败的条目
+        Set<Long> failed = new HashSet<>();
+        if (response.hasFailures()) {
+            for (BulkItemResponse item : response.getItems()) {
+                if (item.isFailed()) {
+                    failed.add(Long.valueOf(item.getId()));
+                    log.warn("商品索引库同步失败，商品id：{}，原因：{}", item.getId(), item.getFailureMessage());
+                }
+            }
+        }
+        if (!failures.isEmpty()) {
+            ids.stream().filter(id -> !failed.contains(id)).forEach(failures::remove);
+        }
+        retry(batch, failed);
+        log.debug("商品索引库同步完成，共{}条数据", ids.size());
+        return true;
+    }
+
+    private void retry(Map<Long, Boolean> batch, Collection<Long> ids) {
+        int maxRetries = esProperties.getSync().getMaxRetries();
+        for (Long id : ids) {
+            int count = failures.merge(id, 1, Integer::sum);
+            if (count > maxRetries) {
+                failures.remove(id);
+                log.error("商品索引库同步重试次数耗尽，放弃同步，商品id：{}", id);
+                continue;
+            }
+            dirtyIds.merge(id, batch.getOrDefault(id, true), Boolean::logicalOr);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.hmall.item.cache;
+
+import com.hmall.item.config.ItemCacheProperties;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CountMinSketchTest {
+
+    @Test
+    void testEstimateNeverUnderCounts() {
+        CountMinSketch sketch = new CountMinSketch(64, 4);
+        for (long id = 1; id <= 1000; id++) {
+            for (int i = 0; i < id % 5; i++) {
+                sketch.add(id);
+            }
+        }
+        for (long id = 1; id <= 1000; id++) {
+            assertTrue(sketch.estimate(id) >= id % 5);
+        }
+    }
+
+    @Test
+    void testHotKeyStandsOut() {
+        CountMinSketch sketch = new CountMinSketch(1024, 4);
+        for (long id = 1; id <= 10000; id++) {
+            sketch.add(id);
+        }
+        long hot = 0;
+        for (int i = 0; i < 500; i++) {
+            hot = sketch.add(42L);
+        }
+        assertTrue(hot >= 501);
+        assertTrue(sketch.estimate(7L) < 100);
+    }
+
+    @Test
+    void testDecayHalvesCounters() {
+        CountMinSketch sketch = new CountMinSketch(16, 2);
+        for (int i = 0; i < 8; i++) {
+            sketch.add(1L);
+        }
+        sketch.decay();
+        assertEquals(4, sketch.estimate(1L));
+        sketch.decay();
+        sketch.decay();
+        sketch.decay();
+        assertEquals(0, sketch.estimate(1L));
+    }
+
+    @Test
+    void testDetectorCoolsDown() {
+        ItemCacheProperties.Hot properties = new ItemCacheProperties.Hot();
+        properties.setThreshold(10L);
+        HotItemDetector detector = new HotItemDetector(properties);
+        for (int i = 0; i < 9; i++) {
+            assertFalse(detector.record(1L));
+        }
+        assertTrue(detector.record(1L));
+
+        // 10 -> 5，仍不低于阈值的一半
+        detector.decay();
+        assertTrue(detector.isHot(1L));
+        // 5 -> 2，已冷却
+        detector.decay();
+        assertFalse(detector.isHot(1L));
+    }
+}
@@ -0,0 +1,150 @@
+package com.hmall.item.cache;
+
+import com.hmall.api.dto.ItemDTO;
+import com.hmall.item.config.EsProperties;
+import com.hmall.item.config.ItemCacheProperties;
+import com.hmall.item.domain.dto.ItemCacheInvalidationDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ItemCacheTest {
+
+    private final List<Collection<Long>> loads = new ArrayList<>();
+    private LocalItemCacheStore shared;
+    private ItemCache cache;
+
+    @BeforeEach
+    void setUp() {
+        ItemCacheProperties properties = new ItemCacheProperties();
+        properties.setSharedEnabled(true);
+        shared = new LocalItemCacheStore(Duration.ofMinutes(1));
+        cache = new ItemCache(properties, shared);
+    }
+
+    /**
+     * 模拟数据库查询，id为负数的商品不存在
+     */
+    private List<ItemDTO> load(Collection<Long> ids) {
+        loads.add(new ArrayList<>(ids));
+        return ids.stream().filter(id -> id > 0).map(id -> {
+            ItemDTO item = new ItemDTO();
+            item.setId(id);
+            return item;
+        }).collect(Collectors.toList());
+    }
+
+    @Test
+    void testOnlyMissesAreLoaded() {
+        cache.getAll(List.of(1L, 2L), this::load);
+        List<ItemDTO> items = cache.getAll(List.of(3L, 2L, 1L, 3L), this::load);
+
+        assertEquals(List.of(List.of(1L, 2L), List.of(3L)), loads);
+        assertEquals(List.of(3L, 2L, 1L), items.stream().map(ItemDTO::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void testMissingItemsAreSkipped() {
+        List<ItemDTO> items = cache.getAll(List.of(1L, -1L), this::load);
+
+        assertEquals(1, items.size());
+        assertNull(cache.get(-1L, this::load));
+    }
+
+    @Test
+    void testSharedStoreIsFilledAndUsed() {
+        cache.get(1L, this::load);
+        assertTrue(shared.getAll(List.of(1L)).containsKey(1L));
+
+        // 另一个实例的一级缓存为空，应命中二级缓存
+        ItemCache other = new ItemCache(new ItemCacheProperties(), shared);
+        assertNotNull(other.get(1L, ids -> fail("不应查询数据库")));
+    }
+
+    @Test
+    void testEvictRemovesBothTiers() {
+        cache.get(1L, this::load);
+        cache.evictAll(List.of(1L));
+
+        assertTrue(shared.getAll(List.of(1L)).isEmpty());
+        cache.get(1L, this::load);
+        assertEquals(2, loads.size());
+    }
+
+    @Test
+    void testHotItemSurvivesStockEviction() {
+        ItemCacheProperties properties = new ItemCacheProperties();
+        properties.getHot().setThreshold(3L);
+        ItemCache hotCache = new ItemCache(properties, null, new HotItemDetector(properties.getHot()));
+        for (int i = 0; i < 3; i++) {
+            hotCache.get(1L, this::load);
+        }
+        assertEquals(1, loads.size());
+        assertEquals(1, hotCache.hotItems().size());
+        assertTrue(hotCache.hotItems().get(0).getPinned());
+
+        // 库存变更保留热点缓存，其它变更删除热点缓存
+        hotCache.evictAll(List.of(1L), true);
+        hotCache.get(1L, this::load);
+        assertEquals(1, loads.size());
+        hotCache.evictAll(List.of(1L), false);
+        hotCache.get(1L, this::load);
+        assertEquals(2, loads.size());
+    }
+
+    @Test
+    void testEvictionDuringLoadIsNotOverwritten() {
+        // 查询数据库期间商品被删除，查到的旧数据不应回填缓存
+        cache.get(1L, ids -> {
+            cache.evictLocal(ids, false);
+            return load(ids);
+        });
+        cache.get(1L, this::load);
+        assertEquals(2, loads.size());
+        cache.get(1L, this::load);
+        assertEquals(2, loads.size());
+    }
+
+    @Test
+    void testMissedBroadcastClearsLocalCache() {
+        ItemCache localOnly = new ItemCache(new ItemCacheProperties(), null);
+        ItemCacheInvalidator invalidator = new ItemCacheInvalidator(localOnly, null, new ItemCacheProperties(),
+                new SearchResultCache(new EsProperties()));
+        invalidator.initReceivedSequences();
+        localOnly.getAll(List.of(1L, 2L), this::load);
+        invalidator.onInvalidation(new ItemCacheInvalidationDTO("other", 1L, List.of(1L), List.of(), false));
+        localOnly.getAll(List.of(1L, 2L), this::load);
+        assertEquals(List.of(List.of(1L, 2L), List.of(1L)), loads);
+
+        // 序号2的消息丢失，本地缓存全部失效
+        invalidator.onInvalidation(new ItemCacheInvalidationDTO("other", 3L, List.of(), List.of(), false));
+        localOnly.getAll(List.of(1L, 2L), this::load);
+        assertEquals(List.of(1L, 2L), loads.get(2));
+    }
+
+    @Test
+    void testMissedFirstBroadcastClearsLocalCache() {
+        ItemCache localOnly = new ItemCache(new ItemCacheProperties(), null);
+        ItemCacheInvalidator invalidator = new ItemCacheInvalidator(localOnly, null, new ItemCacheProperties(),
+                new SearchResultCache(new EsProperties()));
+        invalidator.initReceivedSequences();
+        localOnly.getAll(List.of(1L, 2L), this::load);
+
+        // 首次收到的消息序号是2，序号1的消息丢失，本地缓存全部失效
+        invalidator.onInvalidation(new ItemCacheInvalidationDTO("other", 2L, List.of(1L), List.of(), false));
+        localOnly.getAll(List.of(1L, 2L), this::load);
+        assertEquals(List.of(1L, 2L), loads.get(1));
+
+        // 之后连续的消息只删除指定的商品
+        invalidator.onInvalidation(new ItemCacheInvalidationDTO("other", 3L, List.of(1L), List.of(), false));
+        localOnly.getAll(List.of(1L, 2L), this::load);
+        assertEquals(List.of(1L), loads.get(2));
+    }
+}
@@ -0,0 +1,75 @@
+package com.hmall.item.cache;
+
+import com.hmall.api.dto.ItemDTO;
+import com.hmall.common.domain.PageDTO;
+import com.hmall.item.config.EsProperties;
+import com.hmall.item.domain.query.ItemPageQuery;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchResultCacheTest {
+
+    private final SearchResultCache cache = new SearchResultCache(new EsProperties());
+    private final AtomicInteger searches = new AtomicInteger();
+
+    private PageDTO<ItemDTO> search() {
+        searches.incrementAndGet();
+        return new PageDTO<>(0L, 0L, List.of());
+    }
+
+    private static ItemPageQuery query(String key) {
+        ItemPageQuery query = new ItemPageQuery();
+        query.setKey(key);
+        return query;
+    }
+
+    @Test
+    void testEquivalentQueriesShareEntry() {
+        cache.get(query("手机").normalize(), this::search);
+        // 规范化后关键字的空白被忽略；未指定排序字段时排序方向不影响结果
+        ItemPageQuery same = query(" 手机 ").normalize();
+        same.setIsAsc(false);
+        cache.get(same, this::search);
+        assertEquals(1, searches.get());
+
+        ItemPageQuery nextPage = query("手机");
+        nextPage.setPageNo(2);
+        cache.get(nextPage, this::search);
+        assertEquals(2, searches.get());
+        assertEquals(1, cache.stats().getHitCount());
+    }
+
+    @Test
+    void testVersionBumpInvalidates() {
+        cache.get(query("手机"), this::search);
+        cache.bumpVersion();
+        cache.get(query("手机"), this::search);
+        assertEquals(2, searches.get());
+    }
+
+    @Test
+    void testFailedSearchIsNotCached() {
+        assertNull(cache.get(query("手机"), () -> null));
+        cache.get(query("手机"), this::search);
+        assertEquals(1, searches.get());
+    }
+
+    @Test
+    void testNormalizedQueryMatchesItsKey() {
+        ItemPageQuery padded = query(null);
+        padded.setBrand("华为 ");
+        padded.setCategory(" ");
+        padded.normalize();
+        ItemPageQuery exact = query(null);
+        exact.setBrand("华为");
+
+        // 发给ES的条件和缓存key基于同一份值
+        assertEquals("华为", padded.getBrand());
+        assertNull(padded.getCategory());
+        assertEquals(exact.normalize().cacheKey(), padded.cacheKey());
+    }
+}
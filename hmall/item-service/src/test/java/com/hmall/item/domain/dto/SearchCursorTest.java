@@ -0,0 +1,36 @@
+package com.hmall.item.domain.dto;
+
+import com.hmall.common.exception.BadRequestException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchCursorTest {
+
+    @Test
+    void testEsCursorRoundTrip() {
+        String token = SearchCursor.es("abc", "pit-id", new Object[]{1.5f, 1700000000000L, "42"}).encode();
+        SearchCursor cursor = SearchCursor.decode(token, "abc");
+
+        assertEquals(SearchCursor.TYPE_ES, cursor.getType());
+        assertEquals("pit-id", cursor.getPit());
+        assertEquals(1.5, ((Number) cursor.getAfter()[0]).doubleValue());
+        assertEquals(1700000000000L, cursor.getAfter()[1]);
+        assertEquals("42", cursor.getAfter()[2]);
+    }
+
+    @Test
+    void testDbCursorRoundTrip() {
+        String token = SearchCursor.db("abc", "inner").encode();
+        assertEquals("inner", SearchCursor.decode(token, "abc").getCursor());
+        assertNull(SearchCursor.decode(" ", "abc"));
+    }
+
+    @Test
+    void testInvalidCursorIsRejected() {
+        assertThrows(BadRequestException.class, () -> SearchCursor.decode("not-a-cursor", "abc"));
+        String token = SearchCursor.db("abc", "inner").encode();
+        // 查询条件变化后游标不能继续使用
+        assertThrows(BadRequestException.class, () -> SearchCursor.decode(token, "other"));
+    }
+}
@@ -0,0 +1,78 @@
+package com.hmall.item.importer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ItemImportReaderTest {
+
+    private static List<ItemImportRow> readAll(ItemImportFormat format, String content) throws Exception {
+        List<ItemImportRow> rows = new ArrayList<>();
+        try (ItemImportReader reader = new ItemImportReader(format, new BufferedReader(new StringReader(content)), new ObjectMapper())) {
+            ItemImportRow row;
+            while ((row = reader.next()) != null) {
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    @Test
+    void testNdjsonReportsBadLinesAndSkipsBlankLines() throws Exception {
+        String content = "{\"name\":\"手机\",\"price\":100,\"stock\":5}\n"
+                + "\n"
+                + "{\"name\":\"手机\",\"price\":\n"
+                + "{\"id\":3,\"stock\":-1}\n"
+                + "{\"id\":4,\"price\":200}\n";
+        List<ItemImportRow> rows = readAll(ItemImportFormat.NDJSON, content);
+
+        assertEquals(4, rows.size());
+        assertTrue(rows.get(0).isOk());
+        assertEquals("手机", rows.get(0).getItem().getName());
+        // 空行计入行号但不返回
+        assertFalse(rows.get(1).isOk());
+        assertEquals(3, rows.get(1).getLine());
+        assertFalse(rows.get(2).isOk());
+        assertEquals(4, rows.get(2).getLine());
+        assertTrue(rows.get(3).isOk());
+        assertEquals(4L, rows.get(3).getItem().getId());
+    }
+
+    @Test
+    void testCsvMapsColumnsByHeader() throws Exception {
+        String content = "name,price,stock,unknown,id\n"
+                + "手机,100,5,x,\n"
+                + "电脑,abc,1,x,\n"
+                + ",300,,x,7\n"
+                + ",300,,x,\n";
+        List<ItemImportRow> rows = readAll(ItemImportFormat.CSV, content);
+
+        assertEquals(4, rows.size());
+        assertTrue(rows.get(0).isOk());
+        assertEquals(2, rows.get(0).getLine());
+        assertEquals(100, rows.get(0).getItem().getPrice());
+        assertNull(rows.get(0).getItem().getId());
+        assertFalse(rows.get(1).isOk());
+        assertEquals(3, rows.get(1).getLine());
+        // 有id的行只更新出现的字段，不要求name
+        assertTrue(rows.get(2).isOk());
+        assertEquals(7L, rows.get(2).getItem().getId());
+        assertNull(rows.get(2).getItem().getStock());
+        // 没有id的行必须有name
+        assertFalse(rows.get(3).isOk());
+    }
+
+    @Test
+    void testFormatInferredFromContentType() {
+        assertEquals(ItemImportFormat.CSV, ItemImportFormat.of(null, "text/csv; charset=UTF-8"));
+        assertEquals(ItemImportFormat.NDJSON, ItemImportFormat.of(null, "application/x-ndjson"));
+        assertEquals(ItemImportFormat.CSV, ItemImportFormat.of("csv", "application/x-ndjson"));
+        assertThrows(RuntimeException.class, () -> ItemImportFormat.of("xml", null));
+    }
+}
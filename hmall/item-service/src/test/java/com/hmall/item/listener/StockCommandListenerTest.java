@@ -0,0 +1,54 @@
+package com.hmall.item.listener;
+
+import com.hmall.api.constants.StockMQConstants;
+import com.hmall.api.dto.OrderDetailDTO;
+import com.hmall.api.dto.StockCommandDTO;
+import com.hmall.api.dto.StockResultDTO;
+import com.hmall.api.enums.StockAction;
+import com.hmall.common.utils.RabbitMqHelper;
+import com.hmall.item.service.IItemService;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class StockCommandListenerTest {
+
+    private final IItemService itemService = mock(IItemService.class);
+    private final RabbitMqHelper rabbitMqHelper = mock(RabbitMqHelper.class);
+    private final StockCommandListener listener = new StockCommandListener(itemService, rabbitMqHelper);
+
+    private final StockCommandDTO cmd = new StockCommandDTO(1L, List.of(new OrderDetailDTO().setItemId(10L).setNum(2)));
+
+    @Test
+    void testReserveRepliesResult() {
+        StockResultDTO result = StockResultDTO.fail(1L, StockAction.RESERVE, "库存不足");
+        when(itemService.reserveStock(cmd)).thenReturn(result);
+
+        listener.listenReserve(cmd);
+
+        verify(rabbitMqHelper).sendMessage(StockMQConstants.EXCHANGE_NAME, StockMQConstants.RESULT_KEY, result);
+    }
+
+    @Test
+    void testRestoreRepliesResult() {
+        StockResultDTO result = StockResultDTO.success(1L, StockAction.RESTORE);
+        when(itemService.cancelStockReservation(cmd)).thenReturn(result);
+
+        listener.listenRestore(cmd);
+
+        verify(rabbitMqHelper).sendMessage(StockMQConstants.EXCHANGE_NAME, StockMQConstants.RESULT_KEY, result);
+    }
+
+    @Test
+    void testUnexpectedErrorIsNotReplied() {
+        // 抛出异常后消息重新投递，不能回复结果
+        when(itemService.reserveStock(cmd)).thenThrow(new IllegalStateException("数据库不可用"));
+
+        assertThrows(IllegalStateException.class, () -> listener.listenReserve(cmd));
+        verify(rabbitMqHelper, never()).sendMessage(any(), any(), any());
+    }
+}
@@ -0,0 +1,124 @@
+package com.hmall.item.seckill;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.hmall.api.dto.OrderDetailDTO;
+import com.hmall.common.exception.BizIllegalException;
+import com.hmall.item.config.SeckillProperties;
+import com.hmall.item.domain.po.Item;
+import com.hmall.item.domain.po.ItemSeckill;
+import com.hmall.item.domain.vo.SeckillStockVO;
+import com.hmall.item.mapper.ItemMapper;
+import com.hmall.item.mapper.ItemSeckillMapper;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SeckillStockManagerTest {
+
+    private final ItemMapper itemMapper = mock(ItemMapper.class);
+    private final ItemSeckillMapper seckillMapper = mock(ItemSeckillMapper.class);
+    private SeckillStockManager manager;
+
+    @BeforeAll
+    static void initTableInfo() {
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), Item.class);
+    }
+
+    @BeforeEach
+    void setUp() {
+        SeckillProperties properties = new SeckillProperties();
+        properties.setBuckets(4);
+        manager = new SeckillStockManager(itemMapper, seckillMapper, properties);
+        when(itemMapper.selectOne(any())).thenAnswer(inv -> new Item().setId(0L).setStock(10));
+    }
+
+    @Test
+    void testLoadRejectsItemAlreadyRegistered() {
+        manager.load(1L, null);
+        when(seckillMapper.insert(any())).thenThrow(new DuplicateKeyException("Duplicate entry"));
+
+        assertThrows(BizIllegalException.class, () -> manager.load(1L, null));
+        verify(seckillMapper, times(2)).insert(any());
+    }
+
+    @Test
+    void testReserveFailureReturnsPartialReservation() {
+        when(itemMapper.selectOne(any())).thenAnswer(inv -> new Item().setId(0L).setStock(2));
+        manager.load(1L, null);
+        when(itemMapper.selectOne(any())).thenAnswer(inv -> new Item().setId(0L).setStock(10));
+        manager.load(2L, null);
+
+        assertThrows(BizIllegalException.class, () -> manager.reserve(List.of(line(2L, 3), line(1L, 3))));
+
+        Map<Long, SeckillStockVO> stocks = stocksById();
+        assertEquals(2L, stocks.get(1L).getRemaining());
+        assertEquals(10L, stocks.get(2L).getRemaining());
+        // 非秒杀商品不扣减内存库存
+        assertEquals(List.of(line(2L, 3)), manager.reserve(List.of(line(2L, 3), line(3L, 1))));
+    }
+
+    @Test
+    void testSyncResetsRemainingToDbStock() {
+        manager.load(1L, null);
+        manager.reserve(List.of(line(1L, 3)));
+        assertEquals(7L, stocksById().get(1L).getRemaining());
+
+        // 其它实例又扣减了2件，数据库库存是准确值
+        when(seckillMapper.selectWithStock()).thenReturn(List.of(registered(1L, 5)));
+        manager.sync();
+
+        assertEquals(5L, stocksById().get(1L).getRemaining());
+        assertEquals(5L, stocksById().get(1L).getStock());
+    }
+
+    @Test
+    void testSyncLoadsItemsRegisteredByOtherInstances() {
+        when(seckillMapper.selectWithStock()).thenReturn(List.of(registered(1L, 3)));
+
+        manager.sync();
+
+        assertTrue(manager.contains(1L));
+        assertThrows(BizIllegalException.class, () -> manager.reserve(List.of(line(1L, 4))));
+        verifyNoInteractions(itemMapper);
+    }
+
+    @Test
+    void testUnregisteredItemsStopInMemoryDeduction() {
+        manager.load(1L, null);
+        manager.load(2L, null);
+        // 商品1在其它实例上结束了秒杀
+        when(seckillMapper.selectWithStock()).thenReturn(List.of(registered(2L, 10)));
+
+        manager.sync();
+
+        assertFalse(manager.contains(1L));
+        assertTrue(manager.reserve(List.of(line(1L, 20))).isEmpty());
+
+        manager.unload(2L);
+        verify(seckillMapper).deleteById(2L);
+        assertTrue(manager.list().isEmpty());
+    }
+
+    private Map<Long, SeckillStockVO> stocksById() {
+        return manager.list().stream().collect(Collectors.toMap(SeckillStockVO::getItemId, vo -> vo));
+    }
+
+    private static ItemSeckill registered(Long itemId, int stock) {
+        return new ItemSeckill().setItemId(itemId).setBuckets(4).setStock(stock);
+    }
+
+    private static OrderDetailDTO line(Long itemId, int num) {
+        return new OrderDetailDTO().setItemId(itemId).setNum(num);
+    }
+}
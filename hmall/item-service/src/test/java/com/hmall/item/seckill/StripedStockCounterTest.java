@@ -0,0 +1,117 @@
+package com.hmall.item.seckill;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StripedStockCounterTest {
+
+    @Test
+    void testStockIsSpreadAcrossBuckets() {
+        StripedStockCounter counter = new StripedStockCounter(10, 4);
+
+        assertEquals(10, counter.sum());
+        assertEquals(4, counter.buckets());
+    }
+
+    @Test
+    void testReserveGathersFromSeveralBuckets() {
+        // 4个桶各有2～3件，单个桶都不够5件
+        StripedStockCounter counter = new StripedStockCounter(10, 4);
+
+        assertTrue(counter.tryReserve(0, 5));
+        assertEquals(5, counter.sum());
+        assertFalse(counter.tryReserve(1, 6));
+        assertEquals(5, counter.sum());
+        assertTrue(counter.tryReserve(3, 5));
+        assertEquals(0, counter.sum());
+    }
+
+    @Test
+    void testReleaseReturnsStock() {
+        StripedStockCounter counter = new StripedStockCounter(3, 2);
+
+        assertTrue(counter.tryReserve(0, 3));
+        counter.release(1, 2);
+
+        assertEquals(2, counter.sum());
+        assertTrue(counter.tryReserve(0, 2));
+    }
+
+    @Test
+    void testConcurrentReserveNeverOversells() throws Exception {
+        int total = 10000;
+        int threads = 16;
+        StripedStockCounter counter = new StripedStockCounter(total, 8);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            int bucket = i;
+            futures.add(executor.submit(() -> {
+                start.await();
+                int reserved = 0;
+                for (int j = 0; j < 2000; j++) {
+                    int num = j % 3 + 1;
+                    if (counter.tryReserve(bucket, num)) {
+                        reserved += num;
+                    }
+                }
+                return reserved;
+            }));
+        }
+        start.countDown();
+        int reserved = 0;
+        for (Future<Integer> future : futures) {
+            reserved += future.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(total, reserved + counter.sum());
+        assertTrue(counter.sum() < 3);
+    }
+
+    @Test
+    void testConcurrentGatherSucceedsWhenTotalIsEnough() throws Exception {
+        // 16个桶各有1件，8个线程反复扣减2件再归还，单个桶常常不够，但总库存始终够所有线程同时持有
+        int threads = 8;
+        StripedStockCounter counter = new StripedStockCounter(16, 16);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            int bucket = i * 2;
+            futures.add(executor.submit(() -> {
+                barrier.await();
+                int failures = 0;
+                for (int j = 0; j < 20000; j++) {
+                    if (counter.tryReserve(bucket, 2)) {
+                        counter.release(bucket + j % 2, 2);
+                    } else {
+                        failures++;
+                    }
+                }
+                return failures;
+            }));
+        }
+        int failures = 0;
+        for (Future<Integer> future : futures) {
+            failures += future.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(0, failures, "总库存足够时不能误报库存不足");
+        assertEquals(16, counter.sum());
+    }
+}
@@ -0,0 +1,166 @@
+package com.hmall.item.service.impl;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.hmall.api.dto.OrderDetailDTO;
+import com.hmall.api.dto.StockCommandDTO;
+import com.hmall.api.dto.StockResultDTO;
+import com.hmall.common.exception.BizIllegalException;
+import com.hmall.item.cache.ItemCache;
+import com.hmall.item.domain.po.Item;
+import com.hmall.item.domain.po.StockReservation;
+import com.hmall.item.mapper.ItemMapper;
+import com.hmall.item.mapper.StockReservationMapper;
+import com.hmall.item.seckill.SeckillStockManager;
+import com.hmall.item.sync.ItemChangePublisher;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class StockReservationTest {
+
+    private final ItemMapper itemMapper = mock(ItemMapper.class);
+    private final StockReservationMapper reservationMapper = mock(StockReservationMapper.class);
+    private final SeckillStockManager seckillStockManager = mock(SeckillStockManager.class);
+    /**
+     * 模拟stock_reservation表，key为订单id和命令
+     */
+    private final Map<String, StockReservation> table = new HashMap<>();
+    private ItemServiceImpl itemService;
+
+    private final StockCommandDTO cmd = new StockCommandDTO(1L, List.of(new OrderDetailDTO().setItemId(10L).setNum(2)));
+
+    @BeforeAll
+    static void initTableInfo() {
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), Item.class);
+    }
+
+    @BeforeEach
+    void setUp() {
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        itemService = new ItemServiceImpl(mock(ItemChangePublisher.class), mock(ItemCache.class), seckillStockManager,
+                new TransactionTemplate(transactionManager), reservationMapper);
+        ReflectionTestUtils.setField(itemService, "baseMapper", itemMapper);
+
+        when(seckillStockManager.reserve(any())).thenReturn(List.of());
+        when(itemMapper.deductStockBatch(anyCollection())).thenAnswer(inv -> ((Collection<?>) inv.getArgument(0)).size());
+        when(itemMapper.restoreStockBatch(anyCollection())).thenAnswer(inv -> ((Collection<?>) inv.getArgument(0)).size());
+        when(reservationMapper.insert(any())).thenAnswer(inv -> {
+            StockReservation r = inv.getArgument(0);
+            if (table.putIfAbsent(r.getOrderId() + ":" + r.getAction(), r) != null) {
+                throw new DuplicateKeyException("Duplicate entry");
+            }
+            return 1;
+        });
+        when(reservationMapper.selectByOrder(anyLong(), anyInt()))
+                .thenAnswer(inv -> table.get(inv.getArgument(0) + ":" + inv.getArgument(1)));
+    }
+
+    @Test
+    void testReserveDeductsOnlyOnce() {
+        StockResultDTO first = itemService.reserveStock(cmd);
+        StockResultDTO second = itemService.reserveStock(cmd);
+
+        assertTrue(first.getSuccess());
+        assertTrue(second.getSuccess());
+        verify(itemMapper, times(1)).deductStockBatch(anyCollection());
+    }
+
+    @Test
+    void testRejectedReservationIsReplayedAndNeverRestored() {
+        when(seckillStockManager.reserve(any())).thenThrow(new BizIllegalException("库存不足"));
+
+        StockResultDTO first = itemService.reserveStock(cmd);
+        // 库存补充后重发的命令也不能成功，交易服务已经结束了流程
+        reset(seckillStockManager);
+        StockResultDTO second = itemService.reserveStock(cmd);
+        StockResultDTO restored = itemService.cancelStockReservation(cmd);
+
+        assertFalse(first.getSuccess());
+        assertFalse(second.getSuccess());
+        assertEquals("库存不足", second.getReason());
+        assertTrue(restored.getSuccess());
+        verify(itemMapper, never()).deductStockBatch(anyCollection());
+        verify(itemMapper, never()).restoreStockBatch(anyCollection());
+    }
+
+    @Test
+    void testRestoreRunsOnlyOnce() {
+        itemService.reserveStock(cmd);
+
+        assertTrue(itemService.cancelStockReservation(cmd).getSuccess());
+        assertTrue(itemService.cancelStockReservation(cmd).getSuccess());
+        verify(itemMapper, times(1)).restoreStockBatch(anyCollection());
+    }
+
+    @Test
+    void testFailedRestoreCanBeRetried() {
+        itemService.reserveStock(cmd);
+        when(itemMapper.restoreStockBatch(anyCollection())).thenReturn(0);
+
+        assertFalse(itemService.cancelStockReservation(cmd).getSuccess());
+        // 模拟事务回滚，失败的归还没有留下记录
+        table.remove("1:2");
+        when(itemMapper.restoreStockBatch(anyCollection())).thenReturn(1);
+        assertTrue(itemService.cancelStockReservation(cmd).getSuccess());
+    }
+
+    @Test
+    void testCancelBeforeReserveBlocksLateReservation() {
+        // 下单超时后先归还，预留命令之后才到达
+        StockResultDTO restored = itemService.cancelStockReservation(cmd);
+        StockResultDTO reserved = itemService.reserveStock(cmd);
+
+        assertTrue(restored.getSuccess());
+        assertFalse(reserved.getSuccess());
+        verify(itemMapper, never()).restoreStockBatch(anyCollection());
+        verify(itemMapper, never()).deductStockBatch(anyCollection());
+    }
+
+    @Test
+    void testConcurrentDuplicateReplaysRecordedResult() {
+        // 其它实例已提交了同一命令的记录
+        table.put("1:1", new StockReservation().setOrderId(1L).setAction(1).setSuccess(true));
+        when(reservationMapper.selectByOrder(anyLong(), anyInt())).thenReturn(null)
+                .thenAnswer(inv -> table.get(inv.getArgument(0) + ":" + inv.getArgument(1)));
+
+        StockResultDTO result = itemService.reserveStock(cmd);
+
+        assertTrue(result.getSuccess());
+        verify(seckillStockManager).release(List.of());
+    }
+
+    @Test
+    void testFailedDbDeductReleasesSeckillStock() {
+        // 秒杀商品的内存库存扣减成功，但数据库库存已被其它实例扣完
+        List<OrderDetailDTO> reserved = List.of(new OrderDetailDTO().setItemId(10L).setNum(2));
+        when(seckillStockManager.reserve(any())).thenReturn(reserved);
+        // 模拟事务回滚，执行记录没有留下
+        when(itemMapper.deductStockBatch(anyCollection())).thenAnswer(inv -> {
+            table.remove("1:1");
+            return 0;
+        });
+
+        StockResultDTO result = itemService.reserveStock(cmd);
+
+        assertFalse(result.getSuccess());
+        assertTrue(result.getReason().startsWith("库存不足"));
+        verify(seckillStockManager).release(reserved);
+    }
+}
@@ -0,0 +1,52 @@
+package com.hmall.item.suggest;
+
+import com.hmall.item.domain.vo.SuggestionVO;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SuggestIndexTest {
+
+    private final SuggestIndex index = new SuggestIndex();
+
+    private List<String> texts(String prefix, int limit) {
+        return index.suggest(SuggestIndex.normalize(prefix), limit).stream()
+                .map(SuggestionVO::getText)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void testSuggestByPrefixOrderedByWeight() {
+        index.put(1L, "华为 Mate60", "华为", "手机", 10);
+        index.put(2L, "华为  P60", "华为", "手机", 100);
+        index.put(3L, "小米14", "小米", "手机", 50);
+
+        // 品牌被两个商品引用，权重为两者之和
+        assertEquals(List.of("华为", "华为 P60", "华为 Mate60"), texts("华为", 10));
+        assertEquals(List.of("华为", "华为 P60"), texts(" 华为 ", 2));
+        // 大小写不敏感
+        assertEquals(List.of("华为 Mate60"), texts("华为 m", 10));
+        assertTrue(texts("苹果", 10).isEmpty());
+    }
+
+    @Test
+    void testRemoveAndReplaceUpdatesTerms() {
+        index.put(1L, "华为 Mate60", "华为", "手机", 10);
+        index.put(2L, "华为 P60", "华为", "手机", 100);
+
+        index.remove(2L);
+        assertEquals(List.of("华为", "华为 Mate60"), texts("华为", 10));
+
+        // 修改名称后旧名称不再出现
+        index.put(1L, "荣耀 Magic6", "荣耀", "手机", 10);
+        assertTrue(texts("华为", 10).isEmpty());
+        assertEquals(List.of("荣耀", "荣耀 Magic6"), texts("荣耀", 10));
+        // 全量加载不会覆盖增量写入的数据
+        index.putIfAbsent(1L, "华为 Mate60", "华为", "手机", 10);
+        assertTrue(texts("华为", 10).isEmpty());
+        assertEquals(3, index.size());
+    }
+}
@@ -1,9 +1,12 @@
 package com.hmall.pay.controller;
 
 import com.hmall.api.dto.PayOrderDTO;
+import com.hmall.common.domain.CursorPageDTO;
+import com.hmall.common.domain.PageQuery;
 import com.hmall.common.exception.BizIllegalException;
 
 import com.hmall.common.utils.BeanUtils;
+import com.hmall.common.utils.CursorPages;
 import com.hmall.pay.domain.dto.PayApplyDTO;
 import com.hmall.pay.domain.dto.PayOrderFormDTO;
 import com.hmall.pay.domain.po.PayOrder;
@@ -32,6 +35,13 @@ public class PayController {
         return BeanUtils.copyList(payOrderService.list(), PayOrderVO.class);
     }
 
+    @ApiOperation("游标分页查询支付单，按创建时间倒序")
+    @GetMapping("/scroll")
+    public CursorPageDTO<PayOrderVO> scrollPayOrders(PageQuery query){
+        // 支付单id由雪花算法生成，随创建时间递增，按id倒序即按创建时间倒序
+        return CursorPages.page(payOrderService.lambdaQuery(), query, PayOrder::getId, false).convert(PayOrderVO.class);
+    }
+
     @ApiOperation("生成支付单")
     @PostMapping
     public String applyPayOrder(@RequestBody PayApplyDTO applyDTO){
@@ -5,11 +5,13 @@ import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.openfeign.EnableFeignClients;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 // 开启feign客户端,指定feign位置并指定全局生效的配置类
 @EnableFeignClients(basePackages = "com.hmall.api.client",defaultConfiguration = DefaultFeignConfig.class)
 @SpringBootApplication
 @MapperScan("com.hmall.trade.mapper")
+@EnableScheduling
 public class TradeApplication {
 
     public static void main(String[] args) {
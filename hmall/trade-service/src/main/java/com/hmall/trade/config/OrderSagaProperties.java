@@ -0,0 +1,33 @@
+package com.hmall.trade.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "hm.trade.saga")
+public class OrderSagaProperties {
+    /**
+     * 是否以消息驱动的流程下单，代替Seata全局事务
+     */
+    private Boolean enabled = false;
+    /**
+     * 未支付订单的超时时长，超时后关闭订单并归还库存
+     */
+    private Duration payTimeout = Duration.ofMinutes(15);
+    /**
+     * 流程停留在中间状态超过该时长，认为消息丢失，重新发送当前步骤的消息
+     */
+    private Duration stepTimeout = Duration.ofSeconds(30);
+    /**
+     * 归还库存失败的流程，间隔该时长后重新归还
+     */
+    private Duration compensateRetryInterval = Duration.ofMinutes(10);
+    /**
+     * 每次恢复的流程数量上限
+     */
+    private Integer recoverBatchSize = 100;
+}
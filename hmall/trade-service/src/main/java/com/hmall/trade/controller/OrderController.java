@@ -1,8 +1,15 @@
 package com.hmall.trade.controller;
 
+import com.hmall.common.domain.CursorPageDTO;
+import com.hmall.common.domain.PageQuery;
 import com.hmall.common.utils.BeanUtils;
+import com.hmall.common.utils.CursorPages;
+import com.hmall.common.utils.UserContext;
+import com.hmall.trade.config.OrderSagaProperties;
 import com.hmall.trade.domain.dto.OrderFormDTO;
+import com.hmall.trade.domain.po.Order;
 import com.hmall.trade.domain.vo.OrderVO;
+import com.hmall.trade.service.IOrderSagaService;
 import com.hmall.trade.service.IOrderService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiImplicitParam;
@@ -17,6 +24,8 @@ import org.springframework.web.bind.annotation.*;
 @RequiredArgsConstructor
 public class OrderController {
     private final IOrderService orderService;
+    private final IOrderSagaService orderSagaService;
+    private final OrderSagaProperties sagaProperties;
 
     @ApiOperation("根据id查询订单")
     @GetMapping("{id}")
@@ -24,9 +33,21 @@ public class OrderController {
         return BeanUtils.copyBean(orderService.getById(orderId), OrderVO.class);
     }
 
+    @ApiOperation("游标分页查询当前用户的订单，按创建时间倒序")
+    @GetMapping("/scroll")
+    public CursorPageDTO<OrderVO> scrollMyOrders(PageQuery query) {
+        // 订单id由雪花算法生成，随创建时间递增，按id倒序即按创建时间倒序
+        return CursorPages.page(orderService.lambdaQuery().eq(Order::getUserId, UserContext.getUser()),
+                query, Order::getId, false).convert(OrderVO.class);
+    }
+
     @ApiOperation("创建订单")
     @PostMapping
     public Long createOrder(@RequestBody OrderFormDTO orderFormDTO){
+        if (sagaProperties.getEnabled()) {
+            // 消息驱动的下单流程，订单在库存预留成功后才能查询到
+            return orderSagaService.createOrder(orderFormDTO);
+        }
         return orderService.createOrder(orderFormDTO);
     }
 
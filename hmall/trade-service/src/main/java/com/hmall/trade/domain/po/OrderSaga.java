@@ -0,0 +1,71 @@
+package com.hmall.trade.domain.po;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.experimental.Accessors;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * <p>
+ * 下单流程状态表
+ * </p>
+ */
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Accessors(chain = true)
+@TableName("order_saga")
+public class OrderSaga implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 订单id
+     */
+    @TableId(value = "id", type = IdType.INPUT)
+    private Long id;
+
+    /**
+     * 用户id
+     */
+    private Long userId;
+
+    /**
+     * 总金额，单位为分
+     */
+    private Integer totalFee;
+
+    /**
+     * 支付类型，1、支付宝，2、微信，3、扣减余额
+     */
+    private Integer paymentType;
+
+    /**
+     * 订单明细，JSON格式
+     */
+    private String details;
+
+    /**
+     * 流程状态，见{@link com.hmall.trade.enums.OrderSagaStatus}
+     */
+    private Integer status;
+
+    /**
+     * 失败原因
+     */
+    private String reason;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createTime;
+
+    /**
+     * 更新时间
+     */
+    private LocalDateTime updateTime;
+}
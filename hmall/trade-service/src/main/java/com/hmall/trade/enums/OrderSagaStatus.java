@@ -0,0 +1,29 @@
+package com.hmall.trade.enums;
+
+import lombok.Getter;
+
+@Getter
+public enum OrderSagaStatus {
+    STOCK_RESERVING(1, "预留库存中"),
+    ORDER_CREATED(2, "订单已创建"),
+    COMPLETED(3, "已完成"),
+    STOCK_REJECTED(4, "库存不足"),
+    COMPENSATING(5, "归还库存中"),
+    COMPENSATED(6, "已归还库存"),
+    COMPENSATE_FAILED(7, "归还库存失败"),
+    ;
+    private final int value;
+    private final String desc;
+
+    OrderSagaStatus(int value, String desc) {
+        this.value = value;
+        this.desc = desc;
+    }
+
+    public boolean equalsValue(Integer value){
+        if (value == null) {
+            return false;
+        }
+        return getValue() == value;
+    }
+}
@@ -2,8 +2,10 @@ package com.hmall.trade.listener;
 
 import com.hmall.api.client.PayClient;
 import com.hmall.api.dto.PayOrderDTO;
+import com.hmall.trade.config.OrderSagaProperties;
 import com.hmall.trade.constants.MQConstants;
 import com.hmall.trade.domain.po.Order;
+import com.hmall.trade.service.IOrderSagaService;
 import com.hmall.trade.service.IOrderService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.amqp.rabbit.annotation.Exchange;
@@ -18,6 +20,8 @@ public class OrderDelayMessageListener {
 
     private final IOrderService orderService;
     private final PayClient payClient;
+    private final IOrderSagaService orderSagaService;
+    private final OrderSagaProperties sagaProperties;
 
     @RabbitListener(bindings = @QueueBinding(
             value = @Queue(name = MQConstants.DELAY_ORDER_QUEUE_NAME),
@@ -40,7 +44,11 @@ public class OrderDelayMessageListener {
             orderService.markOrderPaySuccess(orderId);
         }else{
             // TODO 4.2.未支付，取消订单，恢复库存
-            orderService.cancelOrder(orderId);
+            if (sagaProperties.getEnabled()) {
+                orderSagaService.cancelOrder(orderId);
+            } else {
+                orderService.cancelOrder(orderId);
+            }
         }
     }
 }
\ No newline at end of file
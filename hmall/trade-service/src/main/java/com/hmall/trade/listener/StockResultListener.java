@@ -0,0 +1,31 @@
+package com.hmall.trade.listener;
+
+import com.hmall.api.constants.StockMQConstants;
+import com.hmall.api.dto.StockResultDTO;
+import com.hmall.trade.service.IOrderSagaService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.amqp.rabbit.annotation.Exchange;
+import org.springframework.amqp.rabbit.annotation.Queue;
+import org.springframework.amqp.rabbit.annotation.QueueBinding;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class StockResultListener {
+
+    private final IOrderSagaService orderSagaService;
+
+    /**
+     * 监听商品服务回复的库存命令结果，推进下单流程
+     * @param result 库存命令结果
+     */
+    @RabbitListener(bindings = @QueueBinding(
+            value = @Queue(name = StockMQConstants.RESULT_QUEUE_NAME, durable = "true"),
+            exchange = @Exchange(name = StockMQConstants.EXCHANGE_NAME),
+            key = StockMQConstants.RESULT_KEY
+    ))
+    public void listenStockResult(StockResultDTO result){
+        orderSagaService.handleStockResult(result);
+    }
+}
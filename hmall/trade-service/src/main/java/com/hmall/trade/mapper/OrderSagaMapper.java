@@ -0,0 +1,34 @@
+package com.hmall.trade.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.hmall.trade.domain.po.OrderSaga;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.Collection;
+
+/**
+ * <p>
+ *  下单流程状态 Mapper 接口
+ * </p>
+ */
+public interface OrderSagaMapper extends BaseMapper<OrderSaga> {
+
+    /**
+     * 只有流程处于指定状态时才推进到新状态
+     *
+     * @param id     流程id，即订单id
+     * @param from   允许推进的当前状态
+     * @param to     新状态
+     * @param reason 失败原因，为null时不修改
+     * @return 更新的行数，0表示当前状态不符
+     */
+    @Update({"<script>",
+            "UPDATE order_saga SET status = #{to}",
+            "<if test='reason != null'>, reason = #{reason}</if>",
+            "WHERE id = #{id} AND status IN",
+            "<foreach collection='from' item='s' open='(' separator=',' close=')'>#{s}</foreach>",
+            "</script>"})
+    int transit(@Param("id") Long id, @Param("from") Collection<Integer> from,
+                @Param("to") Integer to, @Param("reason") String reason);
+}
@@ -0,0 +1,36 @@
+package com.hmall.trade.service;
+
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.hmall.api.dto.StockResultDTO;
+import com.hmall.trade.domain.dto.OrderFormDTO;
+import com.hmall.trade.domain.po.OrderSaga;
+
+/**
+ * <p>
+ *  消息驱动的下单流程，每一步都是本地事务，步骤之间通过消息衔接，失败时执行补偿
+ * </p>
+ */
+public interface IOrderSagaService extends IService<OrderSaga> {
+
+    /**
+     * 开始下单流程：记录流程状态并发送预留库存命令，订单在库存预留成功后写入
+     *
+     * @param orderFormDTO 订单表单DTO
+     * @return 订单ID
+     */
+    Long createOrder(OrderFormDTO orderFormDTO);
+
+    /**
+     * 处理商品服务回复的库存命令结果，推进流程
+     *
+     * @param result 库存命令结果
+     */
+    void handleStockResult(StockResultDTO result);
+
+    /**
+     * 关闭超时未支付的订单，并发送归还库存命令
+     *
+     * @param orderId 订单id
+     */
+    void cancelOrder(Long orderId);
+}
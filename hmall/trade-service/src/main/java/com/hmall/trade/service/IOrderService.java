@@ -20,4 +20,12 @@ public interface IOrderService extends IService<Order> {
     void markOrderPaySuccess(Long orderId);
 
     void cancelOrder(Long orderId);
+
+    /**
+     * 关闭未支付的订单，与支付成功互斥
+     *
+     * @param orderId 订单id
+     * @return 订单由未支付变为关闭时返回true，订单不存在或状态已变更返回false
+     */
+    boolean closeUnpaidOrder(Long orderId);
 }
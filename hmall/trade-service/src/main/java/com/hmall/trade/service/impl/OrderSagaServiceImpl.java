@@ -0,0 +1,295 @@
+package com.hmall.trade.service.impl;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.baomidou.mybatisplus.core.toolkit.IdWorker;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmall.api.batch.ItemQueryBatcher;
+import com.hmall.api.constants.CartMQConstants;
+import com.hmall.api.constants.StockMQConstants;
+import com.hmall.api.dto.CartCleanDTO;
+import com.hmall.api.dto.ItemDTO;
+import com.hmall.api.dto.OrderDetailDTO;
+import com.hmall.api.dto.StockCommandDTO;
+import com.hmall.api.dto.StockResultDTO;
+import com.hmall.api.enums.StockAction;
+import com.hmall.common.exception.BizIllegalException;
+import com.hmall.common.utils.RabbitMqHelper;
+import com.hmall.common.utils.UserContext;
+import com.hmall.trade.config.OrderSagaProperties;
+import com.hmall.trade.constants.MQConstants;
+import com.hmall.trade.domain.dto.OrderFormDTO;
+import com.hmall.trade.domain.po.Order;
+import com.hmall.trade.domain.po.OrderDetail;
+import com.hmall.trade.domain.po.OrderSaga;
+import com.hmall.trade.enums.OrderSagaStatus;
+import com.hmall.trade.mapper.OrderSagaMapper;
+import com.hmall.trade.service.IOrderDetailService;
+import com.hmall.trade.service.IOrderSagaService;
+import com.hmall.trade.service.IOrderService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 消息驱动的下单流程。
+ * <p>
+ * 下单依次经过：预留库存 -> 写入订单 -> 清理购物车、发送超时检测消息。流程状态保存在order_saga表中，
+ * 每一步只执行本地事务并用条件更新推进状态，重复的消息不会重复推进；写入订单失败或订单超时未支付时，
+ * 发送归还库存命令进行补偿。不需要Seata协调者，也不持有全局锁。
+ * <p>
+ * 停留在中间状态超时的流程由定时任务重发当前步骤的消息，归还库存失败的流程定期重试；
+ * 商品服务在stock_reservation表中按订单id记录库存命令，重复的命令只会执行一次。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OrderSagaServiceImpl extends ServiceImpl<OrderSagaMapper, OrderSaga> implements IOrderSagaService {
+
+    private final IOrderService orderService;
+    private final IOrderDetailService detailService;
+    private final ItemQueryBatcher itemQueryBatcher;
+    private final RabbitMqHelper rabbitMqHelper;
+    private final TransactionTemplate transactionTemplate;
+    private final OrderSagaProperties sagaProperties;
+
+    @Override
+    public Long createOrder(OrderFormDTO orderFormDTO) {
+        // 1.查询商品
+        List<OrderDetailDTO> detailDTOS = orderFormDTO.getDetails();
+        Map<Long, Integer> itemNumMap = detailDTOS.stream()
+                .collect(Collectors.toMap(OrderDetailDTO::getItemId, OrderDetailDTO::getNum));
+        Set<Long> itemIds = itemNumMap.keySet();
+        List<ItemDTO> items = itemQueryBatcher.queryItemByIds(itemIds);
+        OrderServiceImpl.checkItems(items, itemIds);
+        // 2.记录流程状态，订单数据先保存在流程中，库存预留成功后再写入订单表
+        Long orderId = IdWorker.getId();
+        OrderSaga saga = new OrderSaga()
+                .setId(orderId)
+                .setUserId(UserContext.getUser())
+                .setTotalFee(OrderServiceImpl.totalFee(items, itemNumMap))
+                .setPaymentType(orderFormDTO.getPaymentType())
+                .setDetails(JSONUtil.toJsonStr(OrderServiceImpl.buildDetails(orderId, items, itemNumMap)))
+                .setStatus(OrderSagaStatus.STOCK_RESERVING.getValue());
+        save(saga);
+        // 3.发送预留库存命令
+        sendStockCommand(saga, StockMQConstants.RESERVE_KEY);
+        return orderId;
+    }
+
+    @Override
+    public void handleStockResult(StockResultDTO result) {
+        OrderSaga saga = getById(result.getOrderId());
+        if (saga == null) {
+            return;
+        }
+        if (result.getAction() == StockAction.RESERVE) {
+            onStockReserved(saga, result);
+        } else {
+            onStockRestored(saga, result);
+        }
+    }
+
+    private void onStockReserved(OrderSaga saga, StockResultDTO result) {
+        // 1.判断流程状态，重复的结果不做处理
+        if (!OrderSagaStatus.STOCK_RESERVING.equalsValue(saga.getStatus())) {
+            return;
+        }
+        if (!Boolean.TRUE.equals(result.getSuccess())) {
+            // 库存不足，没有扣减任何库存，流程直接结束
+            transit(saga.getId(), OrderSagaStatus.STOCK_RESERVING, OrderSagaStatus.STOCK_REJECTED, result.getReason());
+            return;
+        }
+        // 2.在一个本地事务中写入订单、订单详情并推进流程状态
+        List<OrderDetail> details = parseDetails(saga);
+        Boolean created;
+        try {
+            created = transactionTemplate.execute(status -> {
+                if (!transit(saga.getId(), OrderSagaStatus.STOCK_RESERVING, OrderSagaStatus.ORDER_CREATED, null)) {
+                    return false;
+                }
+                orderService.save(toOrder(saga));
+                detailService.saveBatch(details);
+                return true;
+            });
+        } catch (RuntimeException e) {
+            // 3.写入订单失败，补偿：归还已预留的库存
+            log.error("写入订单失败，归还库存，order_id={}", saga.getId(), e);
+            if (transit(saga.getId(), OrderSagaStatus.STOCK_RESERVING, OrderSagaStatus.COMPENSATING, "写入订单失败")) {
+                sendStockCommand(saga, StockMQConstants.RESTORE_KEY);
+            }
+            return;
+        }
+        if (Boolean.TRUE.equals(created)) {
+            finish(saga, details);
+        }
+    }
+
+    private void onStockRestored(OrderSaga saga, StockResultDTO result) {
+        if (!OrderSagaStatus.COMPENSATING.equalsValue(saga.getStatus())) {
+            return;
+        }
+        OrderSagaStatus to = Boolean.TRUE.equals(result.getSuccess())
+                ? OrderSagaStatus.COMPENSATED : OrderSagaStatus.COMPENSATE_FAILED;
+        transit(saga.getId(), OrderSagaStatus.COMPENSATING, to, result.getReason());
+    }
+
+    /**
+     * 订单已写入，清理购物车并发送超时检测消息。两条消息都可以重复发送：购物车清理按订单id去重，
+     * 超时检测只处理未支付的订单
+     */
+    private void finish(OrderSaga saga, List<OrderDetail> details) {
+        try {
+            // 1.清理购物车
+            List<Long> itemIds = details.stream().map(OrderDetail::getItemId).collect(Collectors.toList());
+            rabbitMqHelper.sendMessage(CartMQConstants.EXCHANGE_NAME, CartMQConstants.CLEAN_KEY,
+                    new CartCleanDTO(saga.getId(), saga.getUserId(), itemIds));
+            // 2.发送延迟消息，检测订单支付状态
+            rabbitMqHelper.sendDelayMessage(MQConstants.DELAY_EXCHANGE_NAME, MQConstants.DELAY_ORDER_KEY,
+                    saga.getId(), (int) sagaProperties.getPayTimeout().toMillis());
+        } catch (Exception e) {
+            log.error("发送下单后续消息失败，等待重发，order_id={}", saga.getId(), e);
+            return;
+        }
+        // 3.流程结束
+        transit(saga.getId(), OrderSagaStatus.ORDER_CREATED, OrderSagaStatus.COMPLETED, null);
+    }
+
+    @Override
+    public void cancelOrder(Long orderId) {
+        OrderSaga saga = transactionTemplate.execute(status -> {
+            // 1.关闭未支付的订单
+            if (!orderService.closeUnpaidOrder(orderId)) {
+                return null;
+            }
+            // 2.流程进入补偿状态，开启流程前创建的订单没有流程记录，根据订单补充一条
+            OrderSaga s = getById(orderId);
+            if (s == null) {
+                s = fromOrder(orderId);
+                save(s);
+                return s;
+            }
+            if (!transit(orderId, List.of(OrderSagaStatus.ORDER_CREATED, OrderSagaStatus.COMPLETED),
+                    OrderSagaStatus.COMPENSATING, null)) {
+                // 订单存在时流程只可能是这两个状态，否则回滚关闭订单，留待排查
+                throw new BizIllegalException(StrUtil.format("下单流程状态异常，无法关闭订单，order_id={}, status={}",
+                        orderId, s.getStatus()));
+            }
+            return s;
+        });
+        if (saga == null) {
+            // 订单不存在或状态已变更，无需处理
+            return;
+        }
+        // 3.发送归还库存命令
+        sendStockCommand(saga, StockMQConstants.RESTORE_KEY);
+    }
+
+    /**
+     * 定时重发停留在中间状态超时的流程的消息，多个实例通过条件更新抢占同一流程
+     */
+    @Scheduled(fixedDelayString = "${hm.trade.saga.recover-interval:10000}")
+    public void recover() {
+        if (!sagaProperties.getEnabled()) {
+            return;
+        }
+        // 1.停留在中间状态超时的流程，重发当前步骤的消息
+        LocalDateTime deadline = LocalDateTime.now().minus(sagaProperties.getStepTimeout());
+        List<OrderSaga> sagas = lambdaQuery()
+                .in(OrderSaga::getStatus, OrderSagaStatus.STOCK_RESERVING.getValue(),
+                        OrderSagaStatus.ORDER_CREATED.getValue(), OrderSagaStatus.COMPENSATING.getValue())
+                .lt(OrderSaga::getUpdateTime, deadline)
+                .last("LIMIT " + sagaProperties.getRecoverBatchSize())
+                .list();
+        for (OrderSaga saga : sagas) {
+            boolean claimed = lambdaUpdate()
+                    .set(OrderSaga::getUpdateTime, LocalDateTime.now())
+                    .eq(OrderSaga::getId, saga.getId())
+                    .eq(OrderSaga::getStatus, saga.getStatus())
+                    .eq(OrderSaga::getUpdateTime, saga.getUpdateTime())
+                    .update();
+            if (!claimed) {
+                continue;
+            }
+            log.warn("下单流程超时，重发消息，order_id={}, status={}", saga.getId(), saga.getStatus());
+            if (OrderSagaStatus.STOCK_RESERVING.equalsValue(saga.getStatus())) {
+                sendStockCommand(saga, StockMQConstants.RESERVE_KEY);
+            } else if (OrderSagaStatus.ORDER_CREATED.equalsValue(saga.getStatus())) {
+                finish(saga, parseDetails(saga));
+            } else {
+                sendStockCommand(saga, StockMQConstants.RESTORE_KEY);
+            }
+        }
+        // 2.归还库存失败的流程，间隔较长时间后重新归还
+        LocalDateTime retryDeadline = LocalDateTime.now().minus(sagaProperties.getCompensateRetryInterval());
+        List<OrderSaga> failed = lambdaQuery()
+                .eq(OrderSaga::getStatus, OrderSagaStatus.COMPENSATE_FAILED.getValue())
+                .lt(OrderSaga::getUpdateTime, retryDeadline)
+                .last("LIMIT " + sagaProperties.getRecoverBatchSize())
+                .list();
+        for (OrderSaga saga : failed) {
+            if (transit(saga.getId(), OrderSagaStatus.COMPENSATE_FAILED, OrderSagaStatus.COMPENSATING, null)) {
+                log.warn("重新归还库存，order_id={}, 上次失败原因：{}", saga.getId(), saga.getReason());
+                sendStockCommand(saga, StockMQConstants.RESTORE_KEY);
+            }
+        }
+    }
+
+    private boolean transit(Long sagaId, OrderSagaStatus from, OrderSagaStatus to, String reason) {
+        return transit(sagaId, List.of(from), to, reason);
+    }
+
+    private boolean transit(Long sagaId, Collection<OrderSagaStatus> from, OrderSagaStatus to, String reason) {
+        List<Integer> values = from.stream().map(OrderSagaStatus::getValue).collect(Collectors.toList());
+        return baseMapper.transit(sagaId, values, to.getValue(), reason) > 0;
+    }
+
+    private void sendStockCommand(OrderSaga saga, String routingKey) {
+        List<OrderDetailDTO> items = parseDetails(saga).stream()
+                .map(detail -> new OrderDetailDTO().setItemId(detail.getItemId()).setNum(detail.getNum()))
+                .collect(Collectors.toList());
+        try {
+            rabbitMqHelper.sendMessage(StockMQConstants.EXCHANGE_NAME, routingKey, new StockCommandDTO(saga.getId(), items));
+        } catch (Exception e) {
+            // 流程状态已保存，超时后由定时任务重发
+            log.error("发送库存命令失败，等待重发，order_id={}, key={}", saga.getId(), routingKey, e);
+        }
+    }
+
+    private List<OrderDetail> parseDetails(OrderSaga saga) {
+        return JSONUtil.toList(saga.getDetails(), OrderDetail.class);
+    }
+
+    private Order toOrder(OrderSaga saga) {
+        Order order = new Order();
+        order.setId(saga.getId());
+        order.setTotalFee(saga.getTotalFee());
+        order.setPaymentType(saga.getPaymentType());
+        order.setUserId(saga.getUserId());
+        order.setStatus(1);
+        return order;
+    }
+
+    private OrderSaga fromOrder(Long orderId) {
+        Order order = orderService.getById(orderId);
+        List<OrderDetail> details = detailService.lambdaQuery()
+                .eq(OrderDetail::getOrderId, orderId)
+                .list();
+        return new OrderSaga()
+                .setId(orderId)
+                .setUserId(order.getUserId())
+                .setTotalFee(order.getTotalFee())
+                .setPaymentType(order.getPaymentType())
+                .setDetails(JSONUtil.toJsonStr(details))
+                .setStatus(OrderSagaStatus.COMPENSATING.getValue());
+    }
+}
@@ -1,11 +1,18 @@
 package com.hmall.trade.service.impl;
 
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
-import com.hmall.api.client.CartClient;
+import com.hmall.api.batch.ItemQueryBatcher;
 import com.hmall.api.client.ItemClient;
+import com.hmall.api.constants.CartMQConstants;
+import com.hmall.api.constants.ItemMQConstants;
+import com.hmall.api.dto.CartCleanDTO;
 import com.hmall.api.dto.ItemDTO;
+import com.hmall.api.dto.ItemSoldDTO;
 import com.hmall.api.dto.OrderDetailDTO;
+import com.hmall.api.dto.StockCommandDTO;
+import com.hmall.api.dto.StockResultDTO;
 import com.hmall.common.exception.BadRequestException;
+import com.hmall.common.exception.BizIllegalException;
 import com.hmall.common.utils.UserContext;
 import com.hmall.trade.constants.MQConstants;
 import com.hmall.trade.domain.dto.OrderFormDTO;
@@ -14,7 +21,10 @@ import com.hmall.trade.domain.po.OrderDetail;
 import com.hmall.trade.mapper.OrderMapper;
 import com.hmall.trade.service.IOrderDetailService;
 import com.hmall.trade.service.IOrderService;
+import io.seata.core.context.RootContext;
 import io.seata.spring.annotation.GlobalTransactional;
+import io.seata.tm.api.transaction.TransactionHookAdapter;
+import io.seata.tm.api.transaction.TransactionHookManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
@@ -24,6 +34,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -38,8 +49,8 @@ import java.util.stream.Collectors;
 public class OrderServiceImpl extends ServiceImpl<OrderMapper, Order> implements IOrderService {
 
     private final ItemClient itemClient;
+    private final ItemQueryBatcher itemQueryBatcher;
     private final IOrderDetailService detailService;
-    private final CartClient cartClient;
     private final RabbitTemplate rabbitTemplate;
 
     /**
@@ -48,7 +59,7 @@ public class OrderServiceImpl extends ServiceImpl<OrderMapper, Order> implements
      * @param orderFormDTO 订单表单DTO
      * @return 订单ID
      * @throws BadRequestException 如果商品不存在
-     * @throws RuntimeException 如果库存不足
+     * @throws BizIllegalException 如果库存不足
      * @GlobalTransactional 全局事务注解
      */
     @Override
@@ -63,16 +74,10 @@ public class OrderServiceImpl extends ServiceImpl<OrderMapper, Order> implements
                 .collect(Collectors.toMap(OrderDetailDTO::getItemId, OrderDetailDTO::getNum));
         Set<Long> itemIds = itemNumMap.keySet();
         // 1.3.查询商品
-        List<ItemDTO> items = itemClient.queryItemByIds(itemIds);
-        if (items == null || items.size() < itemIds.size()) {
-            throw new BadRequestException("商品不存在");
-        }
+        List<ItemDTO> items = itemQueryBatcher.queryItemByIds(itemIds);
+        checkItems(items, itemIds);
         // 1.4.基于商品价格、购买数量计算商品总价：totalFee
-        int total = 0;
-        for (ItemDTO item : items) {
-            total += item.getPrice() * itemNumMap.get(item.getId());
-        }
-        order.setTotalFee(total);
+        order.setTotalFee(totalFee(items, itemNumMap));
         // 1.5.其它属性
         order.setPaymentType(orderFormDTO.getPaymentType());
         order.setUserId(UserContext.getUser());
@@ -84,28 +89,79 @@ public class OrderServiceImpl extends ServiceImpl<OrderMapper, Order> implements
         List<OrderDetail> details = buildDetails(order.getId(), items, itemNumMap);
         detailService.saveBatch(details);
 
-        // 3.清理购物车商品
-        cartClient.deleteCartItemByIds(itemIds);
+        // 3.清理购物车商品，不影响订单的原子性，等全局事务提交后再异步清理
+        sendCartClean(order.getId(), order.getUserId(), itemIds);
 
-        // 4.扣减库存
+        // 4.按订单扣减库存，商品服务在本地事务中一次性扣减，不参与全局事务，因此必须是最后一个可能失败的远程调用
+        StockCommandDTO stockCmd = new StockCommandDTO(order.getId(), detailDTOS);
+        StockResultDTO stockResult;
         try {
-            itemClient.deductStock(detailDTOS);
+            stockResult = itemClient.reserveStock(stockCmd);
         } catch (Exception e) {
-            throw new RuntimeException("库存不足！");
+            // 超时等情况下商品服务可能已经扣减，订单会随全局事务回滚，按订单归还。没有扣减过的订单不会被归还
+            cancelStockReservation(stockCmd);
+            throw new BizIllegalException("商品服务繁忙，请稍后再试");
+        }
+        if (!Boolean.TRUE.equals(stockResult.getSuccess())) {
+            throw new BizIllegalException(stockResult.getReason());
         }
         // 5.发送延迟消息，检测订单支付状态
-        rabbitTemplate.convertAndSend(
-                MQConstants.DELAY_EXCHANGE_NAME,
-                MQConstants.DELAY_ORDER_KEY,
-                order.getId(),
-                message -> {
-//                     message.getMessageProperties().setDelay(900000);
-                     message.getMessageProperties().setDelay(10000);  // 测试用
-                     return message;
-                });
+        try {
+            rabbitTemplate.convertAndSend(
+                    MQConstants.DELAY_EXCHANGE_NAME,
+                    MQConstants.DELAY_ORDER_KEY,
+                    order.getId(),
+                    message -> {
+//                         message.getMessageProperties().setDelay(900000);
+                         message.getMessageProperties().setDelay(10000);  // 测试用
+                         return message;
+                    });
+        } catch (Exception e) {
+            // 订单会随全局事务回滚，已扣减的库存需要手动恢复
+            cancelStockReservation(stockCmd);
+            throw e;
+        }
         return order.getId();
     }
 
+    /**
+     * 按订单归还库存，商品服务按订单去重，重复归还或归还没有扣减过的订单都不会改变库存
+     */
+    private void cancelStockReservation(StockCommandDTO cmd) {
+        try {
+            StockResultDTO result = itemClient.cancelStockReservation(cmd);
+            if (!Boolean.TRUE.equals(result.getSuccess())) {
+                log.error("恢复库存失败，order_id={}，原因：{}", cmd.getOrderId(), result.getReason());
+            }
+        } catch (Exception e) {
+            log.error("恢复库存异常，order_id={}", cmd.getOrderId(), e);
+        }
+    }
+
+    private void sendCartClean(Long orderId, Long userId, Collection<Long> itemIds) {
+        CartCleanDTO msg = new CartCleanDTO(orderId, userId, new ArrayList<>(itemIds));
+        if (!RootContext.inGlobalTransaction()) {
+            doSendCartClean(msg);
+            return;
+        }
+        // 全局事务回滚时订单不存在，不能清理购物车
+        TransactionHookManager.registerHook(new TransactionHookAdapter() {
+            @Override
+            public void afterCommit() {
+                doSendCartClean(msg);
+            }
+        });
+    }
+
+    private void doSendCartClean(CartCleanDTO msg) {
+        try {
+            rabbitTemplate.convertAndSend(CartMQConstants.EXCHANGE_NAME, CartMQConstants.CLEAN_KEY, msg);
+        } catch (Exception e) {
+            // 购物车清理失败不影响下单，用户可以手动删除
+            log.error("发送购物车清理消息失败，order_id={}", msg.getOrderId(), e);
+        }
+    }
+
     @Override
     public void markOrderPaySuccess(Long orderId) {
 //        Order order = new Order();
@@ -131,12 +187,33 @@ public class OrderServiceImpl extends ServiceImpl<OrderMapper, Order> implements
 
         // 合并判断+更新，防止极小概率下的线程安全问题
         // UPDATE `order` SET status = ? , pay_time = ? WHERE id = ? AND status = 1
-        lambdaUpdate()
+        boolean success = lambdaUpdate()
                 .set(Order::getStatus, 2)
                 .set(Order::getPayTime, LocalDateTime.now())
                 .eq(Order::getId, orderId)
                 .eq(Order::getStatus, 1)
                 .update();
+        if (!success) {
+            // 订单不存在或已处理过，不能重复累计销量
+            return;
+        }
+        // 通知商品服务累加销量
+        sendItemSold(orderId);
+    }
+
+    private void sendItemSold(Long orderId) {
+        List<OrderDetailDTO> items = detailService.lambdaQuery()
+                .eq(OrderDetail::getOrderId, orderId)
+                .list()
+                .stream()
+                .map(detail -> new OrderDetailDTO().setItemId(detail.getItemId()).setNum(detail.getNum()))
+                .collect(Collectors.toList());
+        try {
+            rabbitTemplate.convertAndSend(ItemMQConstants.EXCHANGE_NAME, ItemMQConstants.SOLD_KEY, new ItemSoldDTO(orderId, items));
+        } catch (Exception e) {
+            // 销量只用于排序展示，发送失败不影响订单支付
+            log.error("发送商品销量消息失败，order_id={}", orderId, e);
+        }
     }
 
     @Override
@@ -155,13 +232,7 @@ public class OrderServiceImpl extends ServiceImpl<OrderMapper, Order> implements
         }
 
         // 3.标记订单已关闭
-        boolean success = lambdaUpdate()
-                .set(Order::getStatus, 5) // 设置订单状态为关闭
-                .set(Order::getCloseTime, LocalDateTime.now())
-                .eq(Order::getId, orderId)
-                .eq(Order::getStatus, 1) // 乐观锁,确保状态是未支付
-                .update();
-        if (!success) {
+        if (!closeUnpaidOrder(orderId)) {
             // 订单状态已变更,无需处理
             return;
         }
@@ -180,15 +251,43 @@ public class OrderServiceImpl extends ServiceImpl<OrderMapper, Order> implements
             detailDTOs.add(dto);
         }
 
-        // 6.恢复库存
-        try {
-            itemClient.restoreStock(detailDTOs);
-        } catch (Exception e) {
-            log.error("恢复库存异常，order_id={}", orderId, e);
+        // 6.按订单恢复库存，重复的关单消息不会重复恢复
+        cancelStockReservation(new StockCommandDTO(orderId, detailDTOs));
+    }
+
+    @Override
+    public boolean closeUnpaidOrder(Long orderId) {
+        return lambdaUpdate()
+                .set(Order::getStatus, 5) // 设置订单状态为关闭
+                .set(Order::getCloseTime, LocalDateTime.now())
+                .eq(Order::getId, orderId)
+                .eq(Order::getStatus, 1) // 乐观锁,确保状态是未支付
+                .update();
+    }
+
+    /**
+     * 校验下单商品。价格和库存以商品服务的最新数据为准，商品服务不可用时返回的旧数据不能用于下单
+     */
+    static void checkItems(List<ItemDTO> items, Set<Long> itemIds) {
+        if (items == null || items.size() < itemIds.size()) {
+            throw new BadRequestException("商品不存在");
+        }
+        for (ItemDTO item : items) {
+            if (Boolean.TRUE.equals(item.getStale())) {
+                throw new BizIllegalException("商品服务繁忙，请稍后再试");
+            }
+        }
+    }
+
+    static int totalFee(List<ItemDTO> items, Map<Long, Integer> numMap) {
+        int total = 0;
+        for (ItemDTO item : items) {
+            total += item.getPrice() * numMap.get(item.getId());
         }
+        return total;
     }
 
-    private List<OrderDetail> buildDetails(Long orderId, List<ItemDTO> items, Map<Long, Integer> numMap) {
+    static List<OrderDetail> buildDetails(Long orderId, List<ItemDTO> items, Map<Long, Integer> numMap) {
         List<OrderDetail> details = new ArrayList<>(items.size());
         for (ItemDTO item : items) {
             OrderDetail detail = new OrderDetail();
@@ -0,0 +1,240 @@
+package com.hmall.trade.service.impl;
+
+import com.hmall.api.batch.ItemQueryBatcher;
+import com.hmall.api.constants.CartMQConstants;
+import com.hmall.api.constants.StockMQConstants;
+import com.hmall.api.dto.ItemDTO;
+import com.hmall.api.dto.OrderDetailDTO;
+import com.hmall.api.dto.StockCommandDTO;
+import com.hmall.api.dto.StockResultDTO;
+import com.hmall.api.enums.StockAction;
+import com.hmall.common.exception.BizIllegalException;
+import com.hmall.common.utils.RabbitMqHelper;
+import com.hmall.common.utils.UserContext;
+import com.hmall.trade.config.OrderSagaProperties;
+import com.hmall.trade.constants.MQConstants;
+import com.hmall.trade.domain.dto.OrderFormDTO;
+import com.hmall.trade.domain.po.Order;
+import com.hmall.trade.domain.po.OrderSaga;
+import com.hmall.trade.enums.OrderSagaStatus;
+import com.hmall.trade.mapper.OrderSagaMapper;
+import com.hmall.trade.service.IOrderDetailService;
+import com.hmall.trade.service.IOrderService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class OrderSagaServiceImplTest {
+
+    private final IOrderService orderService = mock(IOrderService.class);
+    private final IOrderDetailService detailService = mock(IOrderDetailService.class);
+    private final ItemQueryBatcher itemQueryBatcher = mock(ItemQueryBatcher.class);
+    private final RabbitMqHelper rabbitMqHelper = mock(RabbitMqHelper.class);
+    private final OrderSagaMapper sagaMapper = mock(OrderSagaMapper.class);
+    /**
+     * 模拟order_saga表
+     */
+    private final Map<Long, OrderSaga> table = new HashMap<>();
+    private OrderSagaServiceImpl sagaService;
+
+    @BeforeEach
+    void setUp() {
+        // 事务回滚时恢复流程状态
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        Map<Long, Integer> snapshot = new HashMap<>();
+        when(transactionManager.getTransaction(any())).thenAnswer(inv -> {
+            snapshot.clear();
+            table.forEach((id, saga) -> snapshot.put(id, saga.getStatus()));
+            return new SimpleTransactionStatus();
+        });
+        doAnswer(inv -> {
+            table.keySet().retainAll(snapshot.keySet());
+            table.forEach((id, saga) -> saga.setStatus(snapshot.get(id)));
+            return null;
+        }).when(transactionManager).rollback(any());
+        sagaService = new OrderSagaServiceImpl(orderService, detailService, itemQueryBatcher, rabbitMqHelper,
+                new TransactionTemplate(transactionManager), new OrderSagaProperties());
+        ReflectionTestUtils.setField(sagaService, "baseMapper", sagaMapper);
+
+        when(sagaMapper.insert(any())).thenAnswer(inv -> {
+            OrderSaga saga = inv.getArgument(0);
+            table.put(saga.getId(), saga);
+            return 1;
+        });
+        when(sagaMapper.selectById(any())).thenAnswer(inv -> copy(table.get((Long) inv.getArgument(0))));
+        when(sagaMapper.transit(anyLong(), anyCollection(), anyInt(), any())).thenAnswer(inv -> {
+            OrderSaga saga = table.get((Long) inv.getArgument(0));
+            Collection<Integer> from = inv.getArgument(1);
+            if (saga == null || !from.contains(saga.getStatus())) {
+                return 0;
+            }
+            saga.setStatus(inv.getArgument(2));
+            if (inv.getArgument(3) != null) {
+                saga.setReason(inv.getArgument(3));
+            }
+            return 1;
+        });
+        when(itemQueryBatcher.queryItemByIds(any())).thenReturn(List.of(item(10L, 100), item(20L, 50)));
+        UserContext.setUser(1L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        UserContext.removeUser();
+    }
+
+    @Test
+    void testCreateOrderOnlyReservesStock() {
+        Long orderId = sagaService.createOrder(form());
+
+        OrderSaga saga = table.get(orderId);
+        assertEquals(OrderSagaStatus.STOCK_RESERVING.getValue(), saga.getStatus());
+        assertEquals(100 * 2 + 50, saga.getTotalFee());
+        verify(rabbitMqHelper).sendMessage(eq(StockMQConstants.EXCHANGE_NAME), eq(StockMQConstants.RESERVE_KEY),
+                argThat(cmd -> cmd instanceof StockCommandDTO && orderId.equals(((StockCommandDTO) cmd).getOrderId())
+                        && ((StockCommandDTO) cmd).getItems().size() == 2));
+        verify(orderService, never()).save(any());
+    }
+
+    @Test
+    void testCreateOrderRejectsStaleItems() {
+        ItemDTO stale = item(20L, 50);
+        stale.setStale(true);
+        when(itemQueryBatcher.queryItemByIds(any())).thenReturn(List.of(item(10L, 100), stale));
+
+        assertThrows(BizIllegalException.class, () -> sagaService.createOrder(form()));
+        assertTrue(table.isEmpty());
+        verifyNoInteractions(rabbitMqHelper);
+    }
+
+    @Test
+    void testReservedStockCreatesOrderOnce() {
+        Long orderId = sagaService.createOrder(form());
+
+        sagaService.handleStockResult(StockResultDTO.success(orderId, StockAction.RESERVE));
+        // 重复投递的结果不能再次写入订单
+        sagaService.handleStockResult(StockResultDTO.success(orderId, StockAction.RESERVE));
+
+        assertEquals(OrderSagaStatus.COMPLETED.getValue(), table.get(orderId).getStatus());
+        verify(orderService, times(1)).save(argThat(order -> orderId.equals(order.getId()) && order.getTotalFee() == 250));
+        verify(detailService, times(1)).saveBatch(argThat(details -> details.size() == 2));
+        verify(rabbitMqHelper, times(1)).sendMessage(eq(CartMQConstants.EXCHANGE_NAME), eq(CartMQConstants.CLEAN_KEY), any());
+        verify(rabbitMqHelper, times(1)).sendDelayMessage(eq(MQConstants.DELAY_EXCHANGE_NAME),
+                eq(MQConstants.DELAY_ORDER_KEY), eq(orderId), anyInt());
+    }
+
+    @Test
+    void testRejectedStockEndsSaga() {
+        Long orderId = sagaService.createOrder(form());
+
+        sagaService.handleStockResult(StockResultDTO.fail(orderId, StockAction.RESERVE, "库存不足"));
+
+        OrderSaga saga = table.get(orderId);
+        assertEquals(OrderSagaStatus.STOCK_REJECTED.getValue(), saga.getStatus());
+        assertEquals("库存不足", saga.getReason());
+        verify(orderService, never()).save(any());
+        verify(rabbitMqHelper, never()).sendMessage(any(), eq(StockMQConstants.RESTORE_KEY), any());
+    }
+
+    @Test
+    void testFailedOrderWriteIsCompensated() {
+        Long orderId = sagaService.createOrder(form());
+        when(orderService.save(any())).thenThrow(new IllegalStateException("数据库不可用"));
+
+        sagaService.handleStockResult(StockResultDTO.success(orderId, StockAction.RESERVE));
+
+        assertEquals(OrderSagaStatus.COMPENSATING.getValue(), table.get(orderId).getStatus());
+        verify(rabbitMqHelper).sendMessage(eq(StockMQConstants.EXCHANGE_NAME), eq(StockMQConstants.RESTORE_KEY), any());
+    }
+
+    @Test
+    void testCancelCompensatesCompletedSaga() {
+        Long orderId = completedOrder();
+        when(orderService.closeUnpaidOrder(orderId)).thenReturn(true);
+
+        sagaService.cancelOrder(orderId);
+        assertEquals(OrderSagaStatus.COMPENSATING.getValue(), table.get(orderId).getStatus());
+        verify(rabbitMqHelper).sendMessage(eq(StockMQConstants.EXCHANGE_NAME), eq(StockMQConstants.RESTORE_KEY), any());
+
+        sagaService.handleStockResult(StockResultDTO.success(orderId, StockAction.RESTORE));
+        assertEquals(OrderSagaStatus.COMPENSATED.getValue(), table.get(orderId).getStatus());
+    }
+
+    @Test
+    void testFailedRestoreIsMarked() {
+        Long orderId = completedOrder();
+        when(orderService.closeUnpaidOrder(orderId)).thenReturn(true);
+        sagaService.cancelOrder(orderId);
+
+        sagaService.handleStockResult(StockResultDTO.fail(orderId, StockAction.RESTORE, "商品不存在"));
+
+        assertEquals(OrderSagaStatus.COMPENSATE_FAILED.getValue(), table.get(orderId).getStatus());
+    }
+
+    @Test
+    void testCancelRequiresCreatedOrCompletedSaga() {
+        Long orderId = sagaService.createOrder(form());
+        sagaService.handleStockResult(StockResultDTO.fail(orderId, StockAction.RESERVE, "库存不足"));
+        when(orderService.closeUnpaidOrder(orderId)).thenReturn(true);
+
+        // 流程已失败时不能归还库存，关闭订单随事务回滚
+        assertThrows(BizIllegalException.class, () -> sagaService.cancelOrder(orderId));
+        assertEquals(OrderSagaStatus.STOCK_REJECTED.getValue(), table.get(orderId).getStatus());
+        verify(rabbitMqHelper, never()).sendMessage(any(), eq(StockMQConstants.RESTORE_KEY), any());
+    }
+
+    @Test
+    void testCancelSkipsOrderThatIsNoLongerUnpaid() {
+        Long orderId = completedOrder();
+        when(orderService.closeUnpaidOrder(orderId)).thenReturn(false);
+
+        sagaService.cancelOrder(orderId);
+
+        assertEquals(OrderSagaStatus.COMPLETED.getValue(), table.get(orderId).getStatus());
+        verify(rabbitMqHelper, never()).sendMessage(any(), eq(StockMQConstants.RESTORE_KEY), any());
+    }
+
+    private Long completedOrder() {
+        Long orderId = sagaService.createOrder(form());
+        sagaService.handleStockResult(StockResultDTO.success(orderId, StockAction.RESERVE));
+        assertEquals(OrderSagaStatus.COMPLETED.getValue(), table.get(orderId).getStatus());
+        return orderId;
+    }
+
+    private static OrderFormDTO form() {
+        OrderFormDTO form = new OrderFormDTO();
+        form.setPaymentType(3);
+        form.setDetails(List.of(new OrderDetailDTO().setItemId(10L).setNum(2), new OrderDetailDTO().setItemId(20L).setNum(1)));
+        return form;
+    }
+
+    private static ItemDTO item(Long id, int price) {
+        ItemDTO item = new ItemDTO();
+        item.setId(id);
+        item.setName("商品" + id);
+        item.setPrice(price);
+        return item;
+    }
+
+    private static OrderSaga copy(OrderSaga saga) {
+        if (saga == null) {
+            return null;
+        }
+        return new OrderSaga().setId(saga.getId()).setUserId(saga.getUserId()).setTotalFee(saga.getTotalFee())
+                .setPaymentType(saga.getPaymentType()).setDetails(saga.getDetails())
+                .setStatus(saga.getStatus()).setReason(saga.getReason());
+    }
+}
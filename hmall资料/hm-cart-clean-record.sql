@@ -0,0 +1,19 @@
+-- --------------------------------------------------------
+-- 购物车服务下单后清理购物车的订单处理记录表，在已有的hm-cart库中执行
+-- --------------------------------------------------------
+
+/*!40101 SET @OLD_CHARACTER_SET_CLIENT=@@CHARACTER_SET_CLIENT */;
+/*!40101 SET NAMES utf8 */;
+/*!50503 SET NAMES utf8mb4 */;
+
+USE `hm-cart`;
+
+-- 导出  表 hmall.cart_clean_record 结构
+CREATE TABLE IF NOT EXISTS `cart_clean_record` (
+  `order_id` bigint NOT NULL COMMENT '已清理购物车的订单id',
+  `create_time` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '清理时间',
+  PRIMARY KEY (`order_id`) USING BTREE,
+  KEY `idx_create_time` (`create_time`) USING BTREE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 ROW_FORMAT=COMPACT COMMENT='购物车清理记录表';
+
+/*!40101 SET CHARACTER_SET_CLIENT=@OLD_CHARACTER_SET_CLIENT */;
@@ -0,0 +1,19 @@
+-- --------------------------------------------------------
+-- 商品服务秒杀商品的登记表，在已有的hm-item库中执行
+-- --------------------------------------------------------
+
+/*!40101 SET @OLD_CHARACTER_SET_CLIENT=@@CHARACTER_SET_CLIENT */;
+/*!40101 SET NAMES utf8 */;
+/*!50503 SET NAMES utf8mb4 */;
+
+USE `hm-item`;
+
+-- 导出  表 hmall.item_seckill 结构
+CREATE TABLE IF NOT EXISTS `item_seckill` (
+  `item_id` bigint NOT NULL COMMENT '商品id',
+  `buckets` int NOT NULL COMMENT '内存库存的分桶数量',
+  `create_time` timestamp NULL DEFAULT CURRENT_TIMESTAMP COMMENT '加入秒杀的时间',
+  PRIMARY KEY (`item_id`) USING BTREE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 ROW_FORMAT=COMPACT COMMENT='秒杀商品登记表';
+
+/*!40101 SET CHARACTER_SET_CLIENT=@OLD_CHARACTER_SET_CLIENT */;
@@ -0,0 +1,23 @@
+-- --------------------------------------------------------
+-- 商品服务下单流程使用的库存命令执行记录表，在已有的hm-item库中执行
+-- --------------------------------------------------------
+
+/*!40101 SET @OLD_CHARACTER_SET_CLIENT=@@CHARACTER_SET_CLIENT */;
+/*!40101 SET NAMES utf8 */;
+/*!50503 SET NAMES utf8mb4 */;
+
+USE `hm-item`;
+
+-- 导出  表 hmall.stock_reservation 结构
+CREATE TABLE IF NOT EXISTS `stock_reservation` (
+  `id` bigint NOT NULL AUTO_INCREMENT COMMENT '记录id',
+  `order_id` bigint NOT NULL COMMENT '订单id',
+  `action` tinyint NOT NULL COMMENT '命令，1、预留库存 2、归还库存',
+  `success` tinyint(1) NOT NULL COMMENT '是否执行成功',
+  `reason` varchar(1024) DEFAULT NULL COMMENT '失败原因',
+  `create_time` timestamp NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  PRIMARY KEY (`id`) USING BTREE,
+  UNIQUE KEY `key_order_action` (`order_id`,`action`) USING BTREE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 ROW_FORMAT=COMPACT COMMENT='库存命令执行记录表';
+
+/*!40101 SET CHARACTER_SET_CLIENT=@OLD_CHARACTER_SET_CLIENT */;
@@ -34,7 +34,8 @@ CREATE TABLE IF NOT EXISTS `order` (
   `comment_time` timestamp NULL DEFAULT NULL COMMENT '评价时间',
   `update_time` timestamp NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
   PRIMARY KEY (`id`) USING BTREE,
-  KEY `multi_key_status_time` (`status`,`create_time`) USING BTREE
+  KEY `multi_key_status_time` (`status`,`create_time`) USING BTREE,
+  KEY `key_user_id` (`user_id`) USING BTREE
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb3 COLLATE=utf8_bin ROW_FORMAT=COMPACT;
 
 -- 正在导出表  hmall.order 的数据：~6 rows (大约)
@@ -98,6 +99,21 @@ DELETE FROM `order_logistics`;
 INSERT INTO `order_logistics` (`order_id`, `logistics_number`, `logistics_company`, `contact`, `mobile`, `province`, `city`, `town`, `street`, `create_time`, `update_time`) VALUES
 	(123865420, '', '', '李四', '13838411438', '上海', '上海', '浦东新区', '航头镇', '2021-07-28 11:07:01', '2021-07-28 11:07:01');
 
+-- 导出  表 hmall.order_saga 结构
+CREATE TABLE IF NOT EXISTS `order_saga` (
+  `id` bigint NOT NULL COMMENT '订单id',
+  `user_id` bigint NOT NULL COMMENT '用户id',
+  `total_fee` int NOT NULL DEFAULT '0' COMMENT '总金额，单位为分',
+  `payment_type` tinyint(1) unsigned zerofill NOT NULL COMMENT '支付类型，1、支付宝，2、微信，3、扣减余额',
+  `details` text NOT NULL COMMENT '订单明细，JSON格式',
+  `status` tinyint NOT NULL COMMENT '流程状态，1、预留库存中 2、订单已创建 3、已完成 4、库存不足 5、归还库存中 6、已归还库存 7、归还库存失败',
+  `reason` varchar(256) DEFAULT NULL COMMENT '失败原因',
+  `create_time` timestamp NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `update_time` timestamp NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`id`) USING BTREE,
+  KEY `multi_key_status_time` (`status`,`update_time`) USING BTREE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 ROW_FORMAT=COMPACT COMMENT='下单流程状态表';
+
 /*!40103 SET TIME_ZONE=IFNULL(@OLD_TIME_ZONE, 'system') */;
 /*!40101 SET SQL_MODE=IFNULL(@OLD_SQL_MODE, '') */;
 /*!40014 SET FOREIGN_KEY_CHECKS=IFNULL(@OLD_FOREIGN_KEY_CHECKS, 1) */;